@@ -0,0 +1,278 @@
+package com.mitchseymour.thrift.parser;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A non-blocking front end to {@link ThriftParser}, e.g. for servers that must not parse
+ * on their request threads.
+ *
+ * Files are read with asynchronous file I/O, and parsing happens on a dedicated pool.
+ * Requests for an input that is already being parsed share the in-flight parse. Every
+ * caller gets its own future, so cancelling one caller does not affect the others; the
+ * parse itself is cancelled once all of its callers have cancelled. At most
+ * {@code maxPending} parses are queued or running at any time, and further requests fail
+ * immediately with a {@link RejectedExecutionException} so that callers can shed load.
+ */
+public class AsyncThriftParser implements Closeable {
+
+    private final ExecutorService pool;
+    private final boolean ownPool;
+    private final Semaphore pending;
+    private final ConcurrentHashMap<Object, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public AsyncThriftParser() {
+        this(Runtime.getRuntime().availableProcessors(), 1024);
+    }
+
+    public AsyncThriftParser(int threads, int maxPending) {
+        this(Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "thrift-parser-async");
+            thread.setDaemon(true);
+            return thread;
+        }), maxPending, true);
+    }
+
+    /**
+     * Parses on the given pool, which is not shut down when this parser is closed.
+     */
+    public AsyncThriftParser(ExecutorService pool, int maxPending) {
+        this(pool, maxPending, false);
+    }
+
+    private AsyncThriftParser(ExecutorService pool, int maxPending, boolean ownPool) {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException(String.format("Invalid maxPending: %d", maxPending));
+        }
+        this.pool = pool;
+        this.ownPool = ownPool;
+        this.pending = new Semaphore(maxPending);
+    }
+
+    /**
+     * Parses an IDL string, resolving includes from the classpath root like
+     * {@link ThriftParser#applyAst(String)}.
+     */
+    public CompletableFuture<DocumentNode> parse(String idl) {
+        return request(new InputKey(idl), inFlight -> submit(inFlight, () -> {
+            ParseResult result = ThriftParser.parseString(idl);
+            if (!result.document.isPresent()) {
+                throw new ParseException("Could not parse document", result.diagnostics);
+            }
+            return result.document.get();
+        }));
+    }
+
+    /**
+     * Reads and parses a file. Includes are resolved relative to the file, falling back
+     * to the classpath root.
+     */
+    public CompletableFuture<DocumentNode> parse(Path file) {
+        Path key = file.toAbsolutePath().normalize();
+        return request(key, inFlight -> readAsync(key).whenComplete((bytes, error) -> {
+            if (error != null) {
+                inFlight.result.completeExceptionally(error);
+            } else {
+                submit(inFlight, () -> {
+                    ParseResult result = ThriftParser.parseContent(
+                            key, new String(bytes, StandardCharsets.UTF_8), new ThriftParser.IncludeCache());
+                    if (!result.document.isPresent()) {
+                        throw new ParseException(String.format("Could not parse %s", file), result.diagnostics);
+                    }
+                    return result.document.get();
+                });
+            }
+        }));
+    }
+
+    /** The number of distinct inputs currently being read or parsed */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Shuts down the pool if this parser created it. The parses it had not finished are
+     * cancelled, and their callers complete with a {@link CancellationException}.
+     */
+    @Override
+    public void close() {
+        if (ownPool) {
+            pool.shutdownNow();
+            // tasks that never started are dropped by the pool, so nothing else completes them
+            for (InFlight parse : inFlight.values()) {
+                parse.result.cancel(false);
+            }
+        }
+    }
+
+    //================================================================================
+    // Internals
+    //================================================================================
+
+    private CompletableFuture<DocumentNode> request(Object key, Consumer<InFlight> start) {
+        CompletableFuture<DocumentNode> caller = new CompletableFuture<>();
+        while (true) {
+            InFlight existing = inFlight.get(key);
+            if (existing != null && existing.join(caller)) {
+                return caller;
+            }
+            if (existing != null) {
+                // the existing parse is being torn down, so start over
+                inFlight.remove(key, existing);
+                continue;
+            }
+            if (!pending.tryAcquire()) {
+                caller.completeExceptionally(new RejectedExecutionException("Too many pending parses"));
+                return caller;
+            }
+            InFlight created = new InFlight(key);
+            if (inFlight.putIfAbsent(key, created) != null) {
+                pending.release();
+                continue;
+            }
+            created.join(caller);
+            try {
+                start.accept(created);
+            } catch (RuntimeException e) {
+                created.result.completeExceptionally(e);
+            }
+            return caller;
+        }
+    }
+
+    private void submit(InFlight inFlight, Callable<DocumentNode> parse) {
+        try {
+            inFlight.task = pool.submit(() -> {
+                try {
+                    inFlight.result.complete(parse.call());
+                } catch (Throwable e) {
+                    inFlight.result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.result.completeExceptionally(e);
+        }
+    }
+
+    private static CompletableFuture<byte[]> readAsync(Path file) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IOException(String.format("File too large: %s", file));
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            channel.read(buffer, 0, buffer, new CompletionHandler<Integer, ByteBuffer>() {
+                @Override
+                public void completed(Integer read, ByteBuffer attachment) {
+                    if (read >= 0 && buffer.hasRemaining()) {
+                        channel.read(buffer, buffer.position(), buffer, this);
+                        return;
+                    }
+                    closeQuietly(channel);
+                    // the file may have shrunk since its size was taken
+                    future.complete(buffer.hasRemaining()
+                            ? Arrays.copyOf(buffer.array(), buffer.position())
+                            : buffer.array());
+                }
+
+                @Override
+                public void failed(Throwable error, ByteBuffer attachment) {
+                    closeQuietly(channel);
+                    future.completeExceptionally(error);
+                }
+            });
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static void closeQuietly(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to read
+        }
+    }
+
+    private static class InputKey {
+        final String idl;
+
+        InputKey(String idl) {
+            this.idl = idl;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return InputKey.class.isInstance(other) && idl.equals(((InputKey) other).idl);
+        }
+
+        @Override
+        public int hashCode() {
+            return idl.hashCode();
+        }
+    }
+
+    /**
+     * A parse shared by one or more callers.
+     */
+    private class InFlight {
+        final Object key;
+        final CompletableFuture<DocumentNode> result = new CompletableFuture<>();
+        final AtomicInteger callers = new AtomicInteger();
+        volatile Future<?> task;
+
+        InFlight(Object key) {
+            this.key = key;
+            // the result completes exactly once, whether parsed, failed or cancelled
+            result.whenComplete((document, error) -> {
+                inFlight.remove(key, this);
+                pending.release();
+            });
+        }
+
+        // returns false if the parse was already abandoned by all of its callers
+        boolean join(CompletableFuture<DocumentNode> caller) {
+            int count;
+            do {
+                count = callers.get();
+                if (count < 0) {
+                    return false;
+                }
+            } while (!callers.compareAndSet(count, count + 1));
+
+            result.whenComplete((document, error) -> {
+                if (error != null) {
+                    caller.completeExceptionally(error);
+                } else {
+                    caller.complete(document);
+                }
+            });
+            caller.whenComplete((document, error) -> {
+                if (caller.isCancelled() && callers.decrementAndGet() == 0 && callers.compareAndSet(0, -1)) {
+                    Future<?> task = this.task;
+                    if (task != null) {
+                        task.cancel(true);
+                    }
+                    result.cancel(false);
+                }
+            });
+            return true;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.mitchseymour.thrift.parser;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DefinitionNode;
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import org.parboiled.errors.ErrorUtils;
+import org.parboiled.errors.ParseError;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parses a set of files concurrently and publishes their top-level definitions, tagged with
+ * the file they come from, as soon as each file is parsed. Consumers pull definitions by
+ * requesting them, and parsing stops while {@code bufferSize} definitions are waiting for
+ * demand, so a slow consumer throttles parsing instead of the definitions piling up.
+ *
+ * <pre>
+ * new DefinitionPublisher(files).subscribe(new DefinitionPublisher.Subscriber() {
+ *     Subscription subscription;
+ *
+ *     public void onSubscribe(Subscription subscription) {
+ *         this.subscription = subscription;
+ *         subscription.request(1);
+ *     }
+ *
+ *     public void onNext(Item item) {
+ *         index(item.file, item.definition);
+ *         subscription.request(1);
+ *     }
+ *     ...
+ * });
+ * </pre>
+ *
+ * The {@link Subscriber} and {@link Subscription} interfaces have the methods and rules of
+ * the Reactive Streams (and {@code java.util.concurrent.Flow}) interfaces of the same names,
+ * so they adapt to either with a thin wrapper. Every subscriber gets its own pass over the
+ * files, parsed on the executor and with the parallelism of the {@link ParseOptions}.
+ *
+ * Includes are not resolved: a definition is published once, with the file it is defined
+ * in. The definitions of a file are published in source order, but the files are published
+ * in the order they finish parsing. The first file that cannot be read or parsed fails the
+ * stream with its error, e.g. a {@link ParseException}.
+ */
+public class DefinitionPublisher {
+
+    private final List<Path> files;
+    private final ParseOptions options;
+    private final int bufferSize;
+
+    public DefinitionPublisher(Collection<Path> files) {
+        this(files, new ParseOptions(), 256);
+    }
+
+    /**
+     * @param bufferSize the number of parsed definitions that may wait for demand before
+     *                   parsing stops
+     */
+    public DefinitionPublisher(Collection<Path> files, ParseOptions options, int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException(String.format("Invalid bufferSize: %d", bufferSize));
+        }
+        this.files = new ArrayList<>(files);
+        this.options = options;
+        this.bufferSize = bufferSize;
+    }
+
+    public void subscribe(Subscriber subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        new Publication(subscriber).start();
+    }
+
+    /** A definition and the file it was parsed from */
+    public static class Item {
+        public final Path file;
+        public final DefinitionNode definition;
+
+        Item(Path file, DefinitionNode definition) {
+            this.file = file;
+            this.definition = definition;
+        }
+
+        public String toString() {
+            return String.format("%s: %s", file, definition.value);
+        }
+    }
+
+    public interface Subscriber {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(Item item);
+
+        void onError(Throwable error);
+
+        void onComplete();
+    }
+
+    public interface Subscription {
+        /** Asks for up to n more items; n must be positive */
+        void request(long n);
+
+        void cancel();
+    }
+
+    //================================================================================
+    // Internals
+    //================================================================================
+
+    /**
+     * One subscriber's pass over the files. Parser tasks take a permit from {@code space} for
+     * every definition they queue, and the drain loop, which is the only code that calls the
+     * subscriber, gives it back once the definition is delivered.
+     */
+    private class Publication implements Subscription {
+        final Subscriber subscriber;
+        final Queue<Item> queue = new ConcurrentLinkedQueue<>();
+        final Semaphore space = new Semaphore(bufferSize);
+        final AtomicLong demand = new AtomicLong();
+        final AtomicInteger drains = new AtomicInteger();
+        final AtomicInteger nextFile = new AtomicInteger();
+        final AtomicInteger runningTasks = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final List<Future<?>> tasks = new CopyOnWriteArrayList<>();
+        final AtomicBoolean terminated = new AtomicBoolean();
+        volatile boolean cancelled;
+        volatile boolean done;
+        ExecutorService ownExecutor;
+
+        Publication(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void start() {
+            subscriber.onSubscribe(this);
+            int count = Math.min(options.parallelism(), files.size());
+            if (count == 0) {
+                done = true;
+                drain();
+                return;
+            }
+            ExecutorService executor = options.executor();
+            if (executor == null) {
+                executor = ownExecutor = Executors.newFixedThreadPool(count, runnable -> {
+                    Thread thread = new Thread(runnable, "thrift-parser-publisher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            runningTasks.set(count);
+            try {
+                for (int i = 0; i < count && !stopped(); i++) {
+                    tasks.add(executor.submit(this::parseFiles));
+                }
+            } catch (RejectedExecutionException e) {
+                fail(e);
+            }
+            if (stopped()) {
+                // cancelled or failed while the tasks were submitted
+                stopTasks();
+            }
+        }
+
+        // a parser task: parses the next file until there are none left
+        void parseFiles() {
+            try {
+                int index;
+                while (!stopped() && (index = nextFile.getAndIncrement()) < files.size()) {
+                    Path file = files.get(index);
+                    for (DefinitionNode definition : parse(file).definitions) {
+                        if (stopped()) {
+                            return;
+                        }
+                        space.acquire();
+                        queue.offer(new Item(file, definition));
+                        drain();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // cancelled
+            } catch (Throwable e) {
+                fail(e);
+            } finally {
+                if (runningTasks.decrementAndGet() == 0) {
+                    done = true;
+                    drain();
+                }
+            }
+        }
+
+        DocumentNode parse(Path file) throws Exception {
+            String idl = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            List<ParseError> errors = new ArrayList<>();
+            Optional<DocumentNode> document = ThriftParser.parseDocument(
+                    file.toString(), idl, options.memoizeMismatches(), errors);
+            if (!document.isPresent() || !errors.isEmpty()) {
+                List<String> diagnostics = new ArrayList<>();
+                for (ParseError parseError : errors) {
+                    diagnostics.add(ErrorUtils.printParseError(parseError));
+                }
+                throw new ParseException(String.format("Could not parse %s", file), diagnostics);
+            }
+            return document.get();
+        }
+
+        boolean stopped() {
+            return cancelled || error.get() != null;
+        }
+
+        void fail(Throwable e) {
+            if (error.compareAndSet(null, e)) {
+                stopTasks();
+                drain();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException(String.format("Invalid request: %d", n)));
+                return;
+            }
+            long current;
+            do {
+                current = demand.get();
+                if (current == Long.MAX_VALUE) {
+                    return;
+                }
+            } while (!demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                stopTasks();
+                drain();
+            }
+        }
+
+        void stopTasks() {
+            for (Future<?> task : tasks) {
+                task.cancel(true);
+            }
+            // wakes the tasks that are waiting for space, in case they were not interrupted
+            space.release(options.parallelism());
+            if (ownExecutor != null) {
+                ownExecutor.shutdownNow();
+            }
+        }
+
+        // delivers queued items while there is demand; only one thread drains at a time
+        void drain() {
+            if (drains.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                long requested = demand.get();
+                long emitted = 0;
+                while (true) {
+                    if (cancelled || terminated.get()) {
+                        queue.clear();
+                        break;
+                    }
+                    Throwable failure = error.get();
+                    if (failure != null) {
+                        terminate();
+                        subscriber.onError(failure);
+                        break;
+                    }
+                    boolean finished = done;
+                    if (finished && queue.isEmpty()) {
+                        terminate();
+                        subscriber.onComplete();
+                        break;
+                    }
+                    if (emitted == requested) {
+                        break;
+                    }
+                    Item item = queue.poll();
+                    if (item == null) {
+                        break;
+                    }
+                    space.release();
+                    emitted++;
+                    try {
+                        subscriber.onNext(item);
+                    } catch (RuntimeException e) {
+                        // a subscriber that throws is treated as cancelled
+                        cancel();
+                        throw e;
+                    }
+                }
+                if (emitted != 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+                missed = drains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        void terminate() {
+            terminated.set(true);
+            queue.clear();
+            if (ownExecutor != null) {
+                ownExecutor.shutdown();
+            }
+        }
+    }
+}
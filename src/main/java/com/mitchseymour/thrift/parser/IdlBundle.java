@@ -0,0 +1,103 @@
+package com.mitchseymour.thrift.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The IDL files of a zip or jar archive, parsed without extracting them. The archive is opened
+ * once as a zip file system, whose central directory is read when it is opened, and the
+ * {@code .thrift} entries are listed once. Entries are read straight from the archive, and
+ * includes are resolved inside it like files on disk, relative to the including entry and in
+ * the include directories of the {@link ParseOptions#includeResolver}, which may be
+ * directories of the archive:
+ *
+ * <pre>
+ * try (IdlBundle bundle = IdlBundle.open(Paths.get("schemas.zip"))) {
+ *     List&lt;ParseResult&gt; results = bundle.parseAll(
+ *             new ParseOptions().includeResolver(new IncludeResolver(bundle.path("shared"))));
+ * }
+ * </pre>
+ *
+ * The paths of the entries, and of the results, belong to the archive and can no longer be
+ * read once the bundle is closed.
+ */
+public class IdlBundle implements Closeable {
+
+    private final Path archive;
+    private final FileSystem fileSystem;
+    private final List<Path> files;
+
+    private IdlBundle(Path archive, FileSystem fileSystem, List<Path> files) {
+        this.archive = archive;
+        this.fileSystem = fileSystem;
+        this.files = files;
+    }
+
+    public static IdlBundle open(Path archive) throws IOException {
+        FileSystem fileSystem = FileSystems.newFileSystem(archive, (ClassLoader) null);
+        try {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(fileSystem.getPath("/"))) {
+                files = walk
+                        .filter(file -> file.toString().endsWith(".thrift") && Files.isRegularFile(file))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            return new IdlBundle(archive, fileSystem, Collections.unmodifiableList(files));
+        } catch (IOException | RuntimeException e) {
+            fileSystem.close();
+            throw e;
+        }
+    }
+
+    /** The archive the bundle was opened from */
+    public Path archive() {
+        return archive;
+    }
+
+    /** The .thrift entries of the archive, sorted by path */
+    public List<Path> files() {
+        return files;
+    }
+
+    /** The path of an entry or directory of the archive, e.g. "shared/base.thrift" */
+    public Path path(String entry) {
+        return fileSystem.getPath("/").resolve(entry);
+    }
+
+    /**
+     * Parses every .thrift entry like {@link ThriftParser#parseAll}, in parallel and parsing
+     * every included entry once.
+     *
+     * @return one result per entry, in the order of {@link #files()}
+     */
+    public List<ParseResult> parseAll(ParseOptions options) throws InterruptedException {
+        return ThriftParser.parseAll(files, options);
+    }
+
+    public List<ParseResult> parseAll() throws InterruptedException {
+        return parseAll(new ParseOptions());
+    }
+
+    /** Parses one entry and its includes */
+    public ParseResult parse(String entry, ParseOptions options) {
+        return ThriftParser.parseFile(path(entry), options);
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileSystem.close();
+    }
+
+    public String toString() {
+        return String.format("IdlBundle: %s (%d files)", archive, files.size());
+    }
+}
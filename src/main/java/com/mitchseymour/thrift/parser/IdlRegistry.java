@@ -0,0 +1,317 @@
+package com.mitchseymour.thrift.parser;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the parsed IDL files of a directory tree up to date as they change. The tree is parsed
+ * once when the registry starts, and a {@link WatchService} reports changes after that. Only
+ * the changed files and the files that include them, directly or through other files, are
+ * parsed again; unchanged includes are taken from the previous parse. Every update publishes a
+ * new immutable {@link Snapshot} of frozen documents, so readers never block and never see a
+ * partial update:
+ *
+ * <pre>
+ * try (IdlRegistry registry = new IdlRegistry(Paths.get("idl"), new ParseOptions())) {
+ *     registry.start();
+ *     Optional&lt;DocumentNode&gt; monkeys = registry.snapshot().document(Paths.get("idl/monkeys.thrift"));
+ * }
+ * </pre>
+ *
+ * Changes that arrive together, e.g. when a version control checkout rewrites many files, are
+ * applied as one update once no change was reported for {@link #QUIET_MILLIS}. If the watch
+ * service loses events, the whole tree is parsed again. A file that had an include that was not
+ * found is parsed again whenever a file is created, since it may be the missing include. If
+ * an update fails, e.g. because a directory cannot be read, the whole tree is parsed again and
+ * the error is kept in {@link #failure()}; the registry keeps watching.
+ */
+public class IdlRegistry implements Closeable {
+
+    /** How long the registry waits for more changes before it applies the ones it has */
+    static final long QUIET_MILLIS = 50;
+
+    private final Path root;
+    private final ParseOptions options;
+    private volatile Snapshot snapshot = new Snapshot(0, Collections.emptyMap(), Collections.emptyMap());
+    // the files with an include that was not found, which only the watch thread updates after start
+    private Set<Path> unresolved = new HashSet<>();
+    private WatchService watcher;
+    private Thread thread;
+    private volatile Exception failure;
+
+    /**
+     * An immutable view of the parsed files at one point in time, with the include graph
+     * between them. Paths are absolute and normalized.
+     */
+    public static final class Snapshot {
+        /** Incremented with every update, starting at 1 for the initial parse */
+        public final long version;
+        /** The result of every file of the tree */
+        public final Map<Path, ParseResult> results;
+        private final Map<Path, Set<Path>> includes;
+        private final Map<Path, Set<Path>> includedBy;
+
+        Snapshot(long version, Map<Path, ParseResult> results, Map<Path, Set<Path>> includes) {
+            this.version = version;
+            this.results = Collections.unmodifiableMap(results);
+            this.includes = Collections.unmodifiableMap(includes);
+            Map<Path, Set<Path>> includedBy = new HashMap<>();
+            for (Map.Entry<Path, Set<Path>> entry : includes.entrySet()) {
+                for (Path include : entry.getValue()) {
+                    includedBy.computeIfAbsent(include, file -> new HashSet<>()).add(entry.getKey());
+                }
+            }
+            this.includedBy = Collections.unmodifiableMap(includedBy);
+        }
+
+        /** The document of a file with its includes, if the file is in the tree and was parsed */
+        public Optional<DocumentNode> document(Path file) {
+            ParseResult result = results.get(file.toAbsolutePath().normalize());
+            return result == null ? Optional.empty() : result.document;
+        }
+
+        /** The files a file includes directly */
+        public Set<Path> includes(Path file) {
+            return unmodifiable(includes.get(file.toAbsolutePath().normalize()));
+        }
+
+        /** The files that include a file directly */
+        public Set<Path> includedBy(Path file) {
+            return unmodifiable(includedBy.get(file.toAbsolutePath().normalize()));
+        }
+
+        private static Set<Path> unmodifiable(Set<Path> files) {
+            return files == null ? Collections.emptySet() : Collections.unmodifiableSet(files);
+        }
+
+        public String toString() {
+            return String.format("Snapshot %d: %d files", version, results.size());
+        }
+    }
+
+    public IdlRegistry(Path root, ParseOptions options) {
+        this.root = root.toAbsolutePath().normalize();
+        // documents of snapshots are shared by all readers
+        this.options = options.copy().freeze(true);
+    }
+
+    /** The latest snapshot, which is empty until the registry has started */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /** The last error of the watch thread, after which it parsed the whole tree again */
+    public Optional<Exception> failure() {
+        return Optional.ofNullable(failure);
+    }
+
+    /** Parses the tree and starts watching it. The first snapshot is published before this returns. */
+    public synchronized void start() throws IOException, InterruptedException {
+        if (watcher != null) {
+            throw new IllegalStateException("Already started");
+        }
+        watcher = root.getFileSystem().newWatchService();
+        try {
+            reload();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            watcher.close();
+            throw e;
+        }
+        thread = new Thread(this::watch, "thrift-registry");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stops watching. The last snapshot stays readable. */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            thread.interrupt();
+        }
+    }
+
+    //================================================================================
+    // Internals
+    //================================================================================
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                try {
+                    Set<Path> changed = new HashSet<>();
+                    boolean overflow = poll(key, changed);
+                    // wait until the changes stop, so that a burst is applied as one update
+                    while ((key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                        overflow |= poll(key, changed);
+                    }
+                    if (overflow) {
+                        reload();
+                    } else if (!changed.isEmpty()) {
+                        update(changed);
+                    }
+                } catch (IOException | UncheckedIOException e) {
+                    failure = e;
+                    recover();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // closed
+        }
+    }
+
+    // changes may have been missed, so the whole tree is registered and parsed again
+    private void recover() throws InterruptedException {
+        try {
+            reload();
+        } catch (IOException | UncheckedIOException e) {
+            // the next change tries again
+            e.addSuppressed(failure);
+            failure = e;
+        }
+    }
+
+    // collects the changed files of a key, and returns whether events were lost
+    private boolean poll(WatchKey key, Set<Path> changed) throws IOException {
+        try {
+            return pollEvents(key, (Path) key.watchable(), changed);
+        } finally {
+            // keeps the key reporting, even if the events could not be handled
+            key.reset();
+        }
+    }
+
+    private boolean pollEvents(WatchKey key, Path directory, Set<Path> changed) throws IOException {
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (path.toString().endsWith(".thrift")) {
+                changed.add(path);
+            } else if (event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                // files may have been created in the directory before it was registered
+                changed.addAll(register(path));
+            } else if (event.kind() == ENTRY_DELETE) {
+                // a directory that was moved away reports no events for its files
+                for (Path file : snapshot.results.keySet()) {
+                    if (file.startsWith(path)) {
+                        changed.add(file);
+                    }
+                }
+            }
+        }
+        return overflow;
+    }
+
+    // registers the directories of a tree and returns its IDL files. Every directory is registered
+    // before it is listed, so a file created in it meanwhile is either listed or reported.
+    private List<Path> register(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attributes) throws IOException {
+                try {
+                    path.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                    return FileVisitResult.CONTINUE;
+                } catch (NoSuchFileException e) {
+                    // removed again
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+                if (path.toString().endsWith(".thrift") && Files.isRegularFile(path)) {
+                    files.add(path);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path path, IOException e) throws IOException {
+                if (NoSuchFileException.class.isInstance(e)) {
+                    // removed again
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+        return files;
+    }
+
+    private void reload() throws IOException, InterruptedException {
+        List<Path> files = register(root);
+        ThriftParser.IncludeCache includes = new ThriftParser.IncludeCache();
+        List<ParseResult> parsed = ThriftParser.parseAll(files, options, includes);
+
+        Map<Path, ParseResult> results = new HashMap<>();
+        for (ParseResult result : parsed) {
+            results.put(result.path, result);
+        }
+        Map<Path, Set<Path>> dependencies = new HashMap<>();
+        includes.dependencies().forEach((file, included) -> dependencies.put(file, new HashSet<>(included)));
+        unresolved = new HashSet<>(includes.unresolved());
+        snapshot = new Snapshot(snapshot.version + 1, results, dependencies);
+    }
+
+    private void update(Set<Path> changed) throws InterruptedException {
+        Snapshot previous = snapshot;
+        Map<Path, ParseResult> results = new HashMap<>(previous.results);
+        Map<Path, Set<Path>> dependencies = new HashMap<>(previous.includes);
+
+        // the changed files and everything that includes them
+        Set<Path> affected = new HashSet<>();
+        Deque<Path> pending = new ArrayDeque<>(changed);
+        boolean created = false;
+        for (Path file : changed) {
+            created |= !results.containsKey(file);
+        }
+        if (created) {
+            pending.addAll(unresolved);
+        }
+        while (!pending.isEmpty()) {
+            Path file = pending.poll();
+            if (affected.add(file)) {
+                pending.addAll(previous.includedBy(file));
+            }
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (Path file : affected) {
+            results.remove(file);
+            dependencies.remove(file);
+            unresolved.remove(file);
+            if (Files.isRegularFile(file) && file.startsWith(root)) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+
+        // unchanged includes are not parsed again, unless they had problems that may be gone now
+        ThriftParser.IncludeCache includes = new ThriftParser.IncludeCache();
+        for (ParseResult result : results.values()) {
+            if (result.succeeded()) {
+                includes.put(result);
+            }
+        }
+        for (ParseResult result : ThriftParser.parseAll(files, options, includes)) {
+            results.put(result.path, result);
+        }
+        includes.dependencies().forEach((file, included) -> dependencies.put(file, new HashSet<>(included)));
+        unresolved.addAll(includes.unresolved());
+        snapshot = new Snapshot(previous.version + 1, results, dependencies);
+    }
+}
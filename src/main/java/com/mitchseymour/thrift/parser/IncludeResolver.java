@@ -0,0 +1,151 @@
+package com.mitchseymour.thrift.parser;
+
+import com.mitchseymour.thrift.parser.metrics.FlightRecorderEvents;
+import com.mitchseymour.thrift.parser.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds included files on the filesystem, first relative to the directory of the including
+ * file and then in each include directory in order, like the {@code -I} option of the Thrift
+ * compiler:
+ *
+ * <pre>
+ * ParseOptions options = new ParseOptions().includeResolver(new IncludeResolver(Paths.get("idl/shared")));
+ * ParseResult result = ThriftParser.parseFile(Paths.get("idl/monkeys.thrift"), options);
+ * </pre>
+ *
+ * Resolved paths and file contents are cached, so a long-lived process that parses the same
+ * files again only stats them. A cached resolution is checked with a single stat of the file
+ * it found, and is resolved again if that file is gone; a file created earlier on the search
+ * path later is not noticed until {@link #clear()}. Cached contents are read again when the
+ * modification time or size of the file changed. Includes that are not found are not cached.
+ *
+ * Resolvers are thread safe, and are meant to be shared by all the parses of a process.
+ */
+public class IncludeResolver {
+
+    private final List<Path> roots;
+    // resolved includes by including directory and include, as "directory\0include"
+    private final ConcurrentHashMap<String, Path> resolved = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, Content> contents = new ConcurrentHashMap<>();
+
+    private static class Content {
+        final FileTime lastModified;
+        final long size;
+        final String text;
+
+        Content(FileTime lastModified, long size, String text) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.text = text;
+        }
+    }
+
+    public IncludeResolver(Path... roots) {
+        this(Arrays.asList(roots));
+    }
+
+    public IncludeResolver(List<Path> roots) {
+        List<Path> absolute = new ArrayList<>(roots.size());
+        for (Path root : roots) {
+            absolute.add(root.toAbsolutePath().normalize());
+        }
+        this.roots = Collections.unmodifiableList(absolute);
+    }
+
+    /** The include directories, searched in order after the directory of the including file */
+    public List<Path> roots() {
+        return roots;
+    }
+
+    /**
+     * Resolves an include of the given file to the absolute, normalized path of an existing
+     * file. The including file may be null for a document that was not read from a file, in
+     * which case only the include directories are searched.
+     */
+    public Optional<Path> resolve(Path includingFile, String include) throws IOException {
+        Path directory = includingFile == null ? null : includingFile.toAbsolutePath().getParent();
+        String key = directory + "\0" + include;
+        Path path = resolved.get(key);
+        if (path != null) {
+            if (Files.isRegularFile(path)) {
+                return Optional.of(path);
+            }
+            resolved.remove(key, path);
+            evict(path);
+        }
+        path = search(directory, include);
+        if (path == null) {
+            return Optional.empty();
+        }
+        resolved.put(key, path);
+        return Optional.of(path);
+    }
+
+    /**
+     * Reads a file as UTF-8, from the cache if its modification time and size did not change
+     * since it was last read.
+     */
+    public String read(Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            evict(path);
+            throw e;
+        }
+        Content content = contents.get(path);
+        if (content != null) {
+            if (content.lastModified.equals(attributes.lastModifiedTime()) && content.size == attributes.size()) {
+                return content.text;
+            }
+            evict(path);
+        }
+        // the attributes are taken before reading, so a change while reading is seen next time
+        long start = Metrics.start();
+        String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        Metrics.stop(Metrics.READ, start);
+        Metrics.get().record(Metrics.READ_CHARS, text.length());
+        contents.put(path, new Content(attributes.lastModifiedTime(), attributes.size(), text));
+        return text;
+    }
+
+    /** Forgets all resolved includes and file contents */
+    public void clear() {
+        resolved.clear();
+        contents.clear();
+    }
+
+    private Path search(Path directory, String include) {
+        if (directory != null) {
+            Path candidate = directory.resolve(include).normalize();
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        for (Path root : roots) {
+            Path candidate = root.resolve(include).normalize();
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void evict(Path path) {
+        if (contents.remove(path) != null) {
+            Metrics.get().count(Metrics.INCLUDE_CACHE_EVICTION, 1);
+            FlightRecorderEvents.INCLUDE_CACHE_EVICTION.emit(path.toString());
+        }
+    }
+}
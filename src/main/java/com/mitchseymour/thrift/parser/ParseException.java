@@ -0,0 +1,16 @@
+package com.mitchseymour.thrift.parser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when a document could not be parsed.
+ */
+public class ParseException extends RuntimeException {
+    public final List<String> diagnostics;
+
+    public ParseException(String message, List<String> diagnostics) {
+        super(diagnostics.isEmpty() ? message : String.format("%s: %s", message, diagnostics));
+        this.diagnostics = Collections.unmodifiableList(diagnostics);
+    }
+}
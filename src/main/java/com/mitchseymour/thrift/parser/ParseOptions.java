@@ -0,0 +1,96 @@
+package com.mitchseymour.thrift.parser;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Options for {@link ThriftParser#parseAll} and {@link ThriftParser#parseFile}.
+ */
+public class ParseOptions {
+
+    private ExecutorService executor;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private boolean memoizeMismatches = false;
+    private IncludeResolver includeResolver;
+    private boolean freeze = false;
+
+    /**
+     * The executor to parse on, e.g. a fixed pool of platform threads or, on newer JVMs,
+     * a virtual thread per task executor. The executor is not shut down after parsing.
+     * By default a pool of {@link #parallelism()} daemon threads is created for each call.
+     */
+    public ParseOptions executor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * The maximum number of files parsed at the same time, regardless of how many
+     * threads the executor has.
+     */
+    public ParseOptions parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(String.format("Invalid parallelism: %d", parallelism));
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Memoizes the mismatches of the grammar rules that are most often retried at the same
+     * position, bounding backtracking at the cost of a lookup per rule invocation.
+     */
+    public ParseOptions memoizeMismatches(boolean memoizeMismatches) {
+        this.memoizeMismatches = memoizeMismatches;
+        return this;
+    }
+
+    public boolean memoizeMismatches() {
+        return memoizeMismatches;
+    }
+
+    /**
+     * Finds includes in the given include directories after the directory of the including
+     * file, and reads files through its cache. By default includes are only looked up relative
+     * to the including file, and files are read every time. Includes that are not found on the
+     * filesystem are looked up on the classpath root either way.
+     */
+    public ParseOptions includeResolver(IncludeResolver includeResolver) {
+        this.includeResolver = includeResolver;
+        return this;
+    }
+
+    public IncludeResolver includeResolver() {
+        return includeResolver;
+    }
+
+    /**
+     * Produces {@link com.mitchseymour.thrift.parser.ast.Nodes.FrozenDocumentNode frozen}
+     * documents, which threads can share without copies. Includes are then merged into a
+     * document by sharing the lists of the included documents rather than copying them.
+     */
+    public ParseOptions freeze(boolean freeze) {
+        this.freeze = freeze;
+        return this;
+    }
+
+    public boolean freeze() {
+        return freeze;
+    }
+
+    ParseOptions copy() {
+        return new ParseOptions()
+                .executor(executor)
+                .parallelism(parallelism)
+                .memoizeMismatches(memoizeMismatches)
+                .includeResolver(includeResolver)
+                .freeze(freeze);
+    }
+}
@@ -0,0 +1,39 @@
+package com.mitchseymour.thrift.parser;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The outcome of parsing one file with {@link ThriftParser#parseAll}.
+ */
+public class ParseResult {
+    public final Path path;
+    public final Optional<DocumentNode> document;
+    /** Parse errors, missing includes and other problems, one message per entry */
+    public final List<String> diagnostics;
+    public final long durationNanos;
+
+    ParseResult(Path path, Optional<DocumentNode> document, List<String> diagnostics, long durationNanos) {
+        this.path = path;
+        this.document = document;
+        this.diagnostics = Collections.unmodifiableList(diagnostics);
+        this.durationNanos = durationNanos;
+    }
+
+    static ParseResult failed(Path path, Throwable cause) {
+        return new ParseResult(path, Optional.empty(),
+                Collections.singletonList(String.format("%s: %s", path, cause)), 0);
+    }
+
+    public boolean succeeded() {
+        return document.isPresent() && diagnostics.isEmpty();
+    }
+
+    public String toString() {
+        return String.format("%s: %s", path, succeeded() ? "ok" : diagnostics);
+    }
+}
@@ -0,0 +1,119 @@
+package com.mitchseymour.thrift.parser;
+
+import org.parboiled.BaseParser;
+import org.parboiled.Parboiled;
+import org.parboiled.transform.ParserTransformer;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates parsers from parser classes that were generated at build time, when they are on the
+ * classpath. Parboiled extends every parser class with generated bytecode the first time a
+ * parser is created, which takes most of the startup time of a short-lived process such as a
+ * command line tool. Parboiled only generates a class that is not loaded yet, so loading the
+ * generated classes from the classpath first skips the generation entirely.
+ *
+ * The classes are generated by {@link #main}, which the Gradle build runs after compiling:
+ *
+ * <pre>
+ * java -cp ... com.mitchseymour.thrift.parser.ParserClasses build/generated-parsers
+ * </pre>
+ *
+ * Without them, parsers are generated at runtime as before.
+ */
+public final class ParserClasses {
+
+    /** The parsers of this library, by class name, since some of them are not public */
+    static final String[] PARSERS = {
+            "com.mitchseymour.thrift.parser.ThriftIdl",
+            "com.mitchseymour.thrift.parser.ast.ThriftAst",
+            "com.mitchseymour.thrift.parser.ast.MemoizingThriftAst"};
+
+    private static final String SUFFIX = "$$parboiled";
+
+    private ParserClasses() {
+    }
+
+    /** Creates a parser like {@link Parboiled#createParser}, from its generated class if there is one */
+    public static <P extends BaseParser<V>, V> P createParser(Class<P> parserClass, Object... constructorArgs) {
+        isGenerated(parserClass);
+        return Parboiled.createParser(parserClass, constructorArgs);
+    }
+
+    /** Whether the class of the parser was generated at build time, loading it if it was */
+    public static boolean isGenerated(Class<?> parserClass) {
+        try {
+            Class.forName(parserClass.getName() + SUFFIX, false, parserClass.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Generates the class files of a parser: the extended parser class and the classes of its
+     * actions and action variables, keyed by their internal names. Must run in a JVM that has
+     * not created the parser yet, since Parboiled does not regenerate loaded classes.
+     */
+    static Map<String, byte[]> generate(Class<?> parserClass) throws Exception {
+        Method extend = ParserTransformer.class.getDeclaredMethod("extendParserClass", Class.class);
+        extend.setAccessible(true);
+        Object classNode = extend.invoke(null, parserClass);
+
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        classes.put(parserClass.getName().replace('.', '/') + SUFFIX, (byte[]) invoke(classNode, "getClassCode"));
+        for (Object ruleMethod : ((Map<?, ?>) invoke(classNode, "getRuleMethods")).values()) {
+            for (Object group : (List<?>) invoke(ruleMethod, "getGroups")) {
+                byte[] code = (byte[]) invoke(group, "getGroupClassCode");
+                // null if the class was already generated for another parser, e.g. a parent parser
+                if (code != null) {
+                    Object type = invoke(group, "getGroupClassType");
+                    classes.put((String) invoke(type, "getInternalName"), code);
+                }
+            }
+        }
+        return classes;
+    }
+
+    // the generator classes of Parboiled are package-private
+    private static Object invoke(Object target, String method) throws Exception {
+        Method m = target.getClass().getMethod(method);
+        m.setAccessible(true);
+        return m.invoke(target);
+    }
+
+    static int write(Collection<Map<String, byte[]>> parsers, Path directory) throws IOException {
+        int count = 0;
+        for (Map<String, byte[]> classes : parsers) {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                Path file = directory.resolve(entry.getKey() + ".class");
+                Files.createDirectories(file.getParent());
+                Files.write(file, entry.getValue());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Writes the generated classes of all parsers of this library to the given directory */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: ParserClasses <output directory>");
+            System.exit(2);
+        }
+        Map<String, Map<String, byte[]>> parsers = new LinkedHashMap<>();
+        for (String parser : PARSERS) {
+            parsers.put(parser, generate(Class.forName(parser)));
+        }
+        int count = write(parsers.values(), Paths.get(args[0]));
+        System.out.println(String.format("Generated %d classes for %d parsers in %s", count, parsers.size(), args[0]));
+    }
+}
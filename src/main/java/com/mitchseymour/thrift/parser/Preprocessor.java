@@ -1,11 +1,47 @@
 package com.mitchseymour.thrift.parser;
 
+import com.mitchseymour.thrift.parser.metrics.Metrics;
+
 public class Preprocessor {
 
+    /**
+     * Replaces comments with whitespace, so they separate tokens and keep their line breaks.
+     * Literals are copied as they are, even if they contain "//" or "/*". An unterminated block
+     * comment is kept, so that parsing fails on it.
+     */
     public static String stripComments(String input) {
-        String multiComment = "(?s)/\\*.*?\\*/";
-        String trailingComment = "//.*\\n";
-        return input.replaceAll(multiComment, "").replaceAll(trailingComment, "\n");
+        long start = Metrics.start();
+        int length = input.length();
+        StringBuilder stripped = new StringBuilder(length);
+        int i = 0;
+        while (i < length) {
+            char c = input.charAt(i);
+            char next = i + 1 < length ? input.charAt(i + 1) : 0;
+            if (c == '"' || c == '\'') {
+                int end = input.indexOf(c, i + 1);
+                end = end < 0 ? length : end + 1;
+                stripped.append(input, i, end);
+                i = end;
+            } else if (c == '/' && next == '/') {
+                while (i < length && input.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && next == '*' && input.indexOf("*/", i + 2) >= 0) {
+                int end = input.indexOf("*/", i + 2);
+                stripped.append(' ');
+                for (int j = i + 2; j < end; j++) {
+                    if (input.charAt(j) == '\n') {
+                        stripped.append('\n');
+                    }
+                }
+                i = end + 2;
+            } else {
+                stripped.append(c);
+                i++;
+            }
+        }
+        Metrics.stop(Metrics.PREPROCESS, start);
+        return stripped.toString();
     }
 
 }
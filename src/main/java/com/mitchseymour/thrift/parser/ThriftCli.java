@@ -0,0 +1,346 @@
+package com.mitchseymour.thrift.parser;
+
+import com.mitchseymour.thrift.parser.ast.AstJson;
+import com.mitchseymour.thrift.parser.json.JsonWriter;
+import com.mitchseymour.thrift.parser.metrics.InMemoryMetrics;
+import com.mitchseymour.thrift.parser.metrics.Metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command line entry point for checking, dumping and reformatting IDL files in bulk.
+ *
+ * <pre>
+ * java -cp ... com.mitchseymour.thrift.parser.ThriftCli validate --stats idl/
+ * </pre>
+ *
+ * Files are processed in parallel, and the output of every file is written as soon as it and
+ * all files before it are done, so the output is in the order of the files. The exit status
+ * is 0 if every file passed, 1 if any did not and 2 if the command line is invalid.
+ */
+public class ThriftCli {
+
+    static final int OK = 0;
+    static final int FAILED = 1;
+    static final int USAGE = 2;
+
+    private static final String USAGE_TEXT = String.join("\n",
+            "Usage: ThriftCli <command> [options] <file or directory>...",
+            "",
+            "Commands:",
+            "  validate           check the syntax of every file, without resolving includes",
+            "  dump               print the AST of every file, including its includes",
+            "  format             reformat every file in place",
+            "",
+            "Options:",
+            "  --format text|json the output of dump, where json prints one object per line",
+            "  --check            with format, only list the files that are not formatted",
+            "  --include <dir>    with dump, a directory to search for includes, which may be repeated",
+            "  --threads <n>      the number of files processed at a time",
+            "  --stats            print the time spent in every phase to stderr",
+            "",
+            "Directories are searched for .thrift files.");
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    private String command;
+    private boolean json;
+    private boolean check;
+    private boolean stats;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private final List<Path> paths = new ArrayList<>();
+    private final List<Path> includeDirectories = new ArrayList<>();
+
+    ThriftCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        System.exit(new ThriftCli(System.out, System.err).run(args));
+    }
+
+    int run(String[] args) {
+        try {
+            parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE_TEXT);
+            return USAGE;
+        }
+        List<Path> files;
+        try {
+            files = findFiles();
+        } catch (IOException e) {
+            err.println(String.format("Cannot list files: %s", e));
+            return USAGE;
+        }
+
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        if (stats) {
+            Metrics.register(metrics);
+        }
+        try {
+            long start = System.nanoTime();
+            Summary summary = process(files, task());
+            if (stats) {
+                double seconds = (System.nanoTime() - start) / 1e9;
+                err.println(String.format("%d files, %d failed, %d bytes in %.3fs (%.1f files/s, %.1f MB/s)",
+                        summary.files, summary.failed, summary.bytes.get(), seconds,
+                        summary.files / seconds, summary.bytes.get() / seconds / 1e6));
+                err.print(metrics);
+            }
+            return summary.failed == 0 ? OK : FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FAILED;
+        } finally {
+            if (stats) {
+                Metrics.register(null);
+            }
+        }
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--format":
+                    String format = value(args, ++i, arg);
+                    if (!format.equals("text") && !format.equals("json")) {
+                        throw new IllegalArgumentException(String.format("Unknown format: %s", format));
+                    }
+                    json = format.equals("json");
+                    break;
+                case "--check":
+                    check = true;
+                    break;
+                case "--include":
+                    includeDirectories.add(Paths.get(value(args, ++i, arg)));
+                    break;
+                case "--threads":
+                    try {
+                        threads = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        threads = 0;
+                    }
+                    if (threads < 1) {
+                        throw new IllegalArgumentException(String.format("Invalid --threads: %s", args[i]));
+                    }
+                    break;
+                case "--stats":
+                    stats = true;
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException(String.format("Unknown option: %s", arg));
+                    } else if (command == null) {
+                        command = arg;
+                    } else {
+                        paths.add(Paths.get(arg));
+                    }
+            }
+        }
+        if (command == null) {
+            throw new IllegalArgumentException("Missing command");
+        }
+        if (!Arrays.asList("validate", "dump", "format").contains(command)) {
+            throw new IllegalArgumentException(String.format("Unknown command: %s", command));
+        }
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("Missing files");
+        }
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(String.format("Missing value of %s", option));
+        }
+        return args[i];
+    }
+
+    private List<Path> findFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    files.addAll(walk
+                            .filter(file -> Files.isRegularFile(file) && file.toString().endsWith(".thrift"))
+                            .sorted()
+                            .collect(Collectors.toList()));
+                }
+            } else if (Files.isRegularFile(path)) {
+                files.add(path);
+            } else {
+                throw new IOException(String.format("No such file or directory: %s", path));
+            }
+        }
+        return files;
+    }
+
+    //================================================================================
+    // Commands
+    //================================================================================
+
+    /** Processes one file, returning whether it passed and what to print */
+    private interface Task {
+        Outcome run(Path file, byte[] content) throws Exception;
+    }
+
+    private static class Outcome {
+        final boolean passed;
+        final byte[] output;
+
+        Outcome(boolean passed, String output) {
+            this(passed, output.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Outcome(boolean passed, byte[] output) {
+            this.passed = passed;
+            this.output = output;
+        }
+    }
+
+    private static class Summary {
+        int files;
+        int failed;
+        final AtomicLong bytes = new AtomicLong();
+    }
+
+    private Task task() {
+        switch (command) {
+            case "validate":
+                return validate();
+            case "dump":
+                return dump();
+            default:
+                return format();
+        }
+    }
+
+    private Task validate() {
+        ThreadLocal<ThriftValidator> validators = ThreadLocal.withInitial(ThriftValidator::new);
+        return (file, content) -> {
+            ThriftValidator validator = validators.get();
+            if (validator.validate(content)) {
+                return new Outcome(true, "");
+            }
+            return new Outcome(false, String.format("%s:%d:%d: %s%n",
+                    file, validator.errorLine(), validator.errorColumn(), validator.errorMessage()));
+        };
+    }
+
+    private Task dump() {
+        ThriftParser.IncludeCache includes = new ThriftParser.IncludeCache();
+        ParseOptions options = new ParseOptions().includeResolver(new IncludeResolver(includeDirectories));
+        return (file, content) -> {
+            ParseResult result = ThriftParser.parseContent(
+                    file, new String(content, StandardCharsets.UTF_8), includes, options);
+            if (json) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                JsonWriter writer = new JsonWriter(buffer);
+                writer.beginObject().name("file").value(file.toString());
+                if (result.document.isPresent()) {
+                    writer.name("document");
+                    AstJson.write(result.document.get(), writer);
+                }
+                writer.name("diagnostics").beginArray();
+                for (String diagnostic : result.diagnostics) {
+                    writer.value(diagnostic);
+                }
+                writer.endArray().endObject().newline();
+                writer.flush();
+                return new Outcome(result.succeeded(), buffer.toByteArray());
+            }
+            StringBuilder text = new StringBuilder(String.format("# %s%n", file));
+            result.document.ifPresent(document -> text.append(document.printTree()));
+            for (String diagnostic : result.diagnostics) {
+                text.append(String.format("%s%n", diagnostic));
+            }
+            return new Outcome(result.succeeded(), text.toString());
+        };
+    }
+
+    private Task format() {
+        ThreadLocal<ThriftFormatter> formatters = ThreadLocal.withInitial(ThriftFormatter::new);
+        return (file, content) -> {
+            byte[] formatted;
+            try {
+                formatted = formatters.get().format(content);
+            } catch (ParseException e) {
+                return new Outcome(false, String.format("%s: %s%n", file, e.diagnostics.get(0)));
+            }
+            if (Arrays.equals(content, formatted)) {
+                return new Outcome(true, "");
+            }
+            if (check) {
+                return new Outcome(false, String.format("%s: not formatted%n", file));
+            }
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temporary, formatted);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new Outcome(true, String.format("%s: formatted%n", file));
+        };
+    }
+
+    //================================================================================
+    // Internals
+    //================================================================================
+
+    private Summary process(List<Path> files, Task task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "thrift-cli");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Summary summary = new Summary();
+        try {
+            // a window of files in flight, so that the output of a file is not held for long
+            Deque<Future<Outcome>> window = new ArrayDeque<>();
+            Iterator<Path> pending = files.iterator();
+            Iterator<Path> done = files.iterator();
+            while (pending.hasNext() || !window.isEmpty()) {
+                while (pending.hasNext() && window.size() < threads * 4) {
+                    Path file = pending.next();
+                    window.add(executor.submit(() -> {
+                        long start = Metrics.start();
+                        byte[] content = Files.readAllBytes(file);
+                        Metrics.stop(Metrics.READ, start);
+                        Metrics.get().record(Metrics.READ_CHARS, content.length);
+                        summary.bytes.addAndGet(content.length);
+                        return task.run(file, content);
+                    }));
+                }
+                Path file = done.next();
+                Outcome outcome;
+                try {
+                    outcome = window.poll().get();
+                } catch (ExecutionException e) {
+                    outcome = new Outcome(false, String.format("%s: %s%n", file, e.getCause()));
+                }
+                summary.files++;
+                if (!outcome.passed) {
+                    summary.failed++;
+                }
+                out.write(outcome.output, 0, outcome.output.length);
+            }
+            out.flush();
+            return summary;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package com.mitchseymour.thrift.parser;
+
+import static com.mitchseymour.thrift.parser.Token.*;
+
+import com.mitchseymour.thrift.parser.metrics.Metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * Reformats IDL in a canonical layout: one header, definition, field, enum value or function
+ * per line, members indented by four spaces, and single spaces between tokens. Only the
+ * whitespace between tokens changes, so comments and separators are kept, and so are single
+ * blank lines between members and definitions. Definitions with a body are always separated
+ * by a blank line.
+ *
+ * <pre>
+ * String formatted = new ThriftFormatter().format(idl);
+ * </pre>
+ *
+ * Formatting is idempotent. Input that does not validate is not formatted; a
+ * {@link ParseException} reports the first error. Not thread safe.
+ */
+public final class ThriftFormatter {
+
+    private static final String INDENT = "    ";
+    private static final byte[] SMALLTALK = "smalltalk.".getBytes(StandardCharsets.US_ASCII);
+
+    // the whitespace before a token
+    private static final int GLUE = 0;
+    private static final int SPACE = 1;
+    private static final int LINE = 2;
+    private static final int BLANK_LINE = 3;
+
+    private final ThriftValidator validator = new ThriftValidator();
+    private final ThriftLexer lexer = new ThriftLexer().comments(true);
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private byte[] input;
+    private int[] kinds;
+    private int[] starts;
+    private int[] ends;
+    // the current token, which is never a comment, and the last token written
+    private int token;
+    private int written;
+    private int kind;
+    private int depth;
+    private boolean lineStart;
+    private boolean breakLine;
+
+    public String format(String idl) {
+        return new String(format(idl.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+
+    /** Formats UTF-8 encoded IDL */
+    public byte[] format(byte[] input) {
+        if (!validator.validate(input)) {
+            throw new ParseException("Cannot format invalid IDL",
+                    Collections.singletonList(validator.errorMessage()));
+        }
+        long start = Metrics.start();
+        this.input = input;
+        lexer.tokenize(input);
+        kinds = lexer.kinds();
+        starts = lexer.starts();
+        ends = lexer.ends();
+        out.reset();
+        token = -1;
+        written = -1;
+        depth = 0;
+        lineStart = true;
+        breakLine = false;
+        next();
+
+        document();
+        comments(LINE);
+        if (out.size() > 0) {
+            out.write('\n');
+        }
+        this.input = null;
+        Metrics.stop(Metrics.FORMAT, start);
+        return out.toByteArray();
+    }
+
+    //================================================================================
+    // Grammar
+    //================================================================================
+
+    // the grammar of the ThriftValidator, which the input has passed; where the grammar allows
+    // no whitespace between tokens, none is written
+
+    private void document() {
+        boolean header = false;
+        while (kind == INCLUDE || kind == CPP_INCLUDE || kind == NAMESPACE) {
+            header();
+            header = true;
+        }
+        boolean body = header;
+        while (kind != EOF) {
+            boolean hasBody = kind != CONST && kind != TYPEDEF;
+            definition(body || hasBody ? BLANK_LINE : LINE);
+            body = hasBody;
+        }
+    }
+
+    private void header() {
+        boolean namespace = kind == NAMESPACE;
+        emit(LINE);
+        emit(SPACE);
+        if (!namespace) {
+            return;
+        }
+        if (startsWith(written, SMALLTALK)) {
+            // the name of a smalltalk scope follows it without whitespace, and the name of a
+            // 'smalltalk.category' may contain '-', which the lexer splits
+            while (kind != EOF && starts[token] == ends[written]) {
+                emit(GLUE);
+            }
+        } else {
+            emit(SPACE);
+        }
+    }
+
+    private void definition(int before) {
+        switch (kind) {
+            case CONST:
+                emit(before);
+                fieldType(SPACE);
+                emit(SPACE);
+                emit(SPACE);
+                constValue(SPACE);
+                separator();
+                break;
+            case TYPEDEF:
+                emit(before);
+                fieldType(SPACE);
+                emit(SPACE);
+                break;
+            case ENUM:
+            case SENUM:
+                emit(before);
+                emit(SPACE);
+                open();
+                while (kind != RBRACE) {
+                    emit(LINE);
+                    if (kind == EQUALS) {
+                        emit(SPACE);
+                        emit(SPACE);
+                    }
+                    separator();
+                }
+                close();
+                break;
+            case SERVICE:
+                emit(before);
+                emit(SPACE);
+                if (kind == EXTENDS) {
+                    emit(SPACE);
+                    emit(SPACE);
+                }
+                open();
+                while (kind != RBRACE) {
+                    function();
+                }
+                close();
+                break;
+            default:
+                // struct, union or exception
+                emit(before);
+                emit(SPACE);
+                if (kind == XSD_ALL) {
+                    emit(SPACE);
+                }
+                open();
+                while (kind != RBRACE) {
+                    field(LINE);
+                }
+                close();
+        }
+    }
+
+    private void open() {
+        emit(SPACE);
+        depth++;
+    }
+
+    private void close() {
+        // comments before the closing brace belong to the body
+        comments(LINE);
+        depth--;
+        emit(kinds[written] == LBRACE ? GLUE : LINE);
+    }
+
+    private void function() {
+        int before = LINE;
+        if (kind == ONEWAY) {
+            emit(LINE);
+            before = SPACE;
+        }
+        fieldType(before);
+        emit(SPACE);
+        arguments(GLUE);
+        // otherwise 'throws' is the type of the next function
+        if (kind == THROWS && lookahead(1) == LPAREN) {
+            emit(SPACE);
+            arguments(SPACE);
+        }
+        separator();
+    }
+
+    private void arguments(int before) {
+        emit(before);
+        int next = GLUE;
+        while (kind != RPAREN) {
+            field(next);
+            next = SPACE;
+        }
+        emit(GLUE);
+    }
+
+    private void field(int before) {
+        if (kind == INT_CONSTANT) {
+            emit(before);
+            emit(GLUE);
+            before = SPACE;
+        }
+        if (kind == REQUIRED || kind == OPTIONAL) {
+            emit(before);
+            before = SPACE;
+        }
+        fieldType(before);
+        emit(SPACE);
+        if (kind == EQUALS) {
+            emit(SPACE);
+            constValue(SPACE);
+        }
+        separator();
+    }
+
+    private void fieldType(int before) {
+        if (!container()) {
+            emit(before);
+            return;
+        }
+        switch (kind) {
+            case MAP:
+            case SET:
+                boolean map = kind == MAP;
+                emit(before);
+                emit(cppType() ? SPACE : GLUE);
+                fieldType(GLUE);
+                if (map) {
+                    emit(GLUE);
+                    fieldType(SPACE);
+                }
+                emit(GLUE);
+                break;
+            case LIST:
+                emit(before);
+                emit(GLUE);
+                fieldType(GLUE);
+                emit(GLUE);
+                cppType();
+        }
+    }
+
+    // whether 'map', 'set' or 'list' start a container type, rather than name a type
+    private boolean container() {
+        if (kind != MAP && kind != SET && kind != LIST) {
+            return false;
+        }
+        return lookahead(1) == LT
+                || kind != LIST && lookahead(1) == CPP_TYPE && lookahead(2) == LITERAL && lookahead(3) == LT;
+    }
+
+    private boolean cppType() {
+        // otherwise 'cpp_type' is the name after the type
+        if (kind != CPP_TYPE || lookahead(1) != LITERAL) {
+            return false;
+        }
+        emit(SPACE);
+        emit(SPACE);
+        return true;
+    }
+
+    private void constValue(int before) {
+        switch (kind) {
+            case LBRACKET:
+                emit(before);
+                int next = GLUE;
+                while (kind != RBRACKET) {
+                    constValue(next);
+                    separator();
+                    next = SPACE;
+                }
+                emit(GLUE);
+                break;
+            case LBRACE:
+                emit(before);
+                next = GLUE;
+                while (kind != RBRACE) {
+                    constValue(next);
+                    emit(GLUE);
+                    constValue(SPACE);
+                    separator();
+                    next = SPACE;
+                }
+                emit(GLUE);
+                break;
+            default:
+                emit(before);
+        }
+    }
+
+    private void separator() {
+        if (kind == COMMA || kind == SEMICOLON) {
+            emit(GLUE);
+        }
+    }
+
+    //================================================================================
+    // Output
+    //================================================================================
+
+    // moves to the next token that is not a comment
+    private void next() {
+        do {
+            token++;
+        } while (kinds[token] == COMMENT);
+        kind = kinds[token];
+    }
+
+    // the kind of a later token that is not a comment, counting the current token as 0
+    private int lookahead(int count) {
+        int ahead = token;
+        while (count > 0 && kinds[ahead] != EOF) {
+            ahead++;
+            if (kinds[ahead] != COMMENT) {
+                count--;
+            }
+        }
+        return kinds[ahead];
+    }
+
+    // writes the current token after the given whitespace, and moves to the next token
+    private void emit(int before) {
+        if (comments(before) && before == BLANK_LINE) {
+            // the blank line went before the comments, which belong to the token
+            before = LINE;
+        }
+        if (breakLine && before < LINE) {
+            before = LINE;
+        }
+        if (before == LINE && blankLineBefore(token) && kinds[written] != LBRACE && kind != RBRACE) {
+            before = BLANK_LINE;
+        }
+        whitespace(before);
+        write(starts[token], ends[token]);
+        written = token;
+        breakLine = false;
+        next();
+    }
+
+    // writes the comments before the current token, and returns whether any is on its own line
+    private boolean comments(int before) {
+        boolean ownLine = false;
+        for (int comment = written + 1; comment < token; comment++) {
+            if (written >= 0 && !lineStart && !newlineBefore(comment)) {
+                // a comment at the end of a line stays there
+                whitespace(SPACE);
+            } else {
+                boolean blankLine = blankLineBefore(comment) && written >= 0 && kinds[written] != LBRACE;
+                whitespace(blankLine || before == BLANK_LINE && !ownLine ? BLANK_LINE : LINE);
+                ownLine = true;
+            }
+            int end = ends[comment];
+            while (end > starts[comment] && input[end - 1] == '\r') {
+                end--;
+            }
+            write(starts[comment], end);
+            // a line comment ends the line, and a comment on its own line keeps it
+            breakLine = input[starts[comment] + 1] == '/' || newlineBefore(comment) || breakLine;
+            written = comment;
+        }
+        return ownLine;
+    }
+
+    private void whitespace(int before) {
+        if (out.size() == 0) {
+            return;
+        }
+        switch (before) {
+            case BLANK_LINE:
+                out.write('\n');
+                // fall through
+            case LINE:
+                out.write('\n');
+                for (int i = 0; i < depth; i++) {
+                    write(INDENT);
+                }
+                lineStart = true;
+                return;
+            case SPACE:
+                out.write(' ');
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void write(int start, int end) {
+        out.write(input, start, end - start);
+        lineStart = false;
+    }
+
+    private void write(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private boolean startsWith(int token, byte[] text) {
+        if (ends[token] - starts[token] < text.length) {
+            return false;
+        }
+        for (int i = 0; i < text.length; i++) {
+            if (input[starts[token] + i] != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean newlineBefore(int token) {
+        int from = token == 0 ? 0 : ends[token - 1];
+        for (int i = from; i < starts[token]; i++) {
+            if (input[i] == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean blankLineBefore(int token) {
+        if (token == 0) {
+            return false;
+        }
+        int newlines = 0;
+        for (int i = ends[token - 1]; i < starts[token]; i++) {
+            if (input[i] == '\n' && ++newlines == 2) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -26,7 +26,7 @@ public class ThriftIdl extends BaseParser<Object> {
     /**
      * [1] Document ::=  Header* Definition*
      */
-    Rule Document() {
+    public Rule Document() {
         return Sequence(
                 WhiteSpace(),
                 ZeroOrMore(Header()),
@@ -135,6 +135,7 @@ public class ThriftIdl extends BaseParser<Object> {
                 Identifier(),
                 "= ",
                 ConstValue(),
+                WhiteSpace(),
                 Optional(ListSeparator()),
                 WhiteSpace());
     }
@@ -184,7 +185,7 @@ public class ThriftIdl extends BaseParser<Object> {
                 "senum ",
                 Identifier(),
                 "{ ",
-                ZeroOrMore(Sequence(Literal(), Optional(ListSeparator()))),
+                ZeroOrMore(Sequence(Literal(), WhiteSpace(), Optional(ListSeparator()))),
                 "} ");
     }
 
@@ -254,7 +255,7 @@ public class ThriftIdl extends BaseParser<Object> {
                 Optional(FieldReq()),
                 FieldType(),
                 Identifier(),
-                Optional(Sequence("= ", ConstValue())),
+                Optional(Sequence("= ", ConstValue(), WhiteSpace())),
                 XsdFieldOptions(),
                 Optional(ListSeparator()),
                 WhiteSpace());
@@ -395,7 +396,7 @@ public class ThriftIdl extends BaseParser<Object> {
         return Sequence(
                 "map ",
                 Optional(CppType()),
-                "<",
+                "< ",
                 FieldType(),
                 ", ",
                 FieldType(),
@@ -409,7 +410,7 @@ public class ThriftIdl extends BaseParser<Object> {
         return Sequence(
                 "set ",
                 Optional(CppType()),
-                "<",
+                "< ",
                 FieldType(),
                 "> ");
     }
@@ -420,7 +421,7 @@ public class ThriftIdl extends BaseParser<Object> {
     Rule ListType() {
         return Sequence(
                 "list ",
-                "<",
+                "< ",
                 FieldType(),
                 "> ",
                 Optional(CppType()));
@@ -430,7 +431,7 @@ public class ThriftIdl extends BaseParser<Object> {
      * [31] CppType ::=  'cpp_type' Literal
      */
     Rule CppType() {
-        return Sequence("cpp_type ", Literal());
+        return Sequence("cpp_type ", Literal(), WhiteSpace());
     }
 
     //================================================================================
@@ -0,0 +1,143 @@
+package com.mitchseymour.thrift.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits IDL into a compact token stream: parallel arrays of {@link Token} kinds and start
+ * and end byte offsets. Keywords such as {@code struct}, {@code service} and the base types
+ * get their own kinds, so parsers, formatters and syntax highlighters can switch on ints
+ * without looking at the text.
+ *
+ * <pre>
+ * ThriftLexer lexer = new ThriftLexer();
+ * int tokens = lexer.tokenize(bytes);
+ * for (int i = 0; i &lt; tokens; i++) {
+ *     if (lexer.kind(i) == Token.STRUCT) { ... }
+ * }
+ * </pre>
+ *
+ * The stream always ends with an EOF token. Invalid input does not stop the lexer: an
+ * unexpected character becomes a one byte ERROR token, and an unterminated literal or block
+ * comment an ERROR token up to the end of the input. The arrays are reused by the next
+ * {@link #tokenize} call and only grow, so a lexer that has seen its largest input tokenizes
+ * without allocating. Not thread safe.
+ */
+public final class ThriftLexer {
+
+    private final Tokenizer tokenizer = new Tokenizer();
+    private int[] kinds;
+    private int[] starts;
+    private int[] ends;
+    private int size;
+
+    public ThriftLexer() {
+        this(256);
+    }
+
+    public ThriftLexer(int capacity) {
+        kinds = new int[Math.max(1, capacity)];
+        starts = new int[kinds.length];
+        ends = new int[kinds.length];
+    }
+
+    /** Whether comments become COMMENT tokens, e.g. for highlighters, instead of being skipped */
+    public ThriftLexer comments(boolean comments) {
+        tokenizer.comments(comments);
+        return this;
+    }
+
+    public int tokenize(String idl) {
+        return tokenize(idl.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int tokenize(byte[] input) {
+        return tokenize(input, 0, input.length);
+    }
+
+    /**
+     * Tokenizes UTF-8 encoded IDL, replacing the previous token stream.
+     *
+     * @return the number of tokens, including the final EOF token
+     */
+    public int tokenize(byte[] input, int offset, int length) {
+        tokenizer.reset(input, offset, length);
+        int size = 0;
+        int kind;
+        do {
+            kind = tokenizer.next();
+            if (size == kinds.length) {
+                grow();
+            }
+            kinds[size] = kind;
+            starts[size] = tokenizer.start;
+            ends[size] = tokenizer.end;
+            size++;
+        } while (kind != Token.EOF);
+        this.size = size;
+        return size;
+    }
+
+    private void grow() {
+        int capacity = kinds.length * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+    }
+
+    /** The number of tokens of the last input, including the final EOF token */
+    public int size() {
+        return size;
+    }
+
+    public int kind(int token) {
+        return kinds[checkIndex(token)];
+    }
+
+    /** The offset of the first byte of the token in the input */
+    public int start(int token) {
+        return starts[checkIndex(token)];
+    }
+
+    /** The offset after the last byte of the token in the input */
+    public int end(int token) {
+        return ends[checkIndex(token)];
+    }
+
+    /** The text of the token. Unlike the other accessors, this allocates. */
+    public String text(int token) {
+        checkIndex(token);
+        return new String(tokenizer.input(), starts[token], ends[token] - starts[token], StandardCharsets.UTF_8);
+    }
+
+    /** The kinds of all tokens. Only the first {@link #size()} entries are tokens of the last input. */
+    public int[] kinds() {
+        return kinds;
+    }
+
+    public int[] starts() {
+        return starts;
+    }
+
+    public int[] ends() {
+        return ends;
+    }
+
+    /** The number of ERROR tokens of the last input */
+    public int errors() {
+        int errors = 0;
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] == Token.ERROR) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+
+    private int checkIndex(int token) {
+        if (token < 0 || token >= size) {
+            throw new IndexOutOfBoundsException(String.format("Token %d of %d", token, size));
+        }
+        return token;
+    }
+}
@@ -2,7 +2,11 @@ package com.mitchseymour.thrift.parser;
 
 import com.mitchseymour.thrift.parser.ast.ThriftAst;
 import com.mitchseymour.thrift.parser.ast.Nodes;
-import org.parboiled.Parboiled;
+import com.mitchseymour.thrift.parser.metrics.FlightRecorderEvents;
+import com.mitchseymour.thrift.parser.metrics.Metrics;
+import org.parboiled.Rule;
+import org.parboiled.errors.ErrorUtils;
+import org.parboiled.errors.ParseError;
 import org.parboiled.parserunners.ReportingParseRunner;
 import org.parboiled.support.ParsingResult;
 
@@ -10,11 +14,22 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.List;
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
 
 public class ThriftParser {
 
+    // the recognizer keeps per-run state, so each thread builds its rule tree once
+    private static final ThreadLocal<Rule> RECOGNIZER = ThreadLocal.withInitial(() -> {
+        long start = Metrics.start();
+        Rule document = ParserClasses.createParser(ThriftIdl.class).Document();
+        Metrics.stop(Metrics.PARSER_CREATE, start);
+        return document;
+    });
+
     public static ParsingResult<?> parseThriftFile(String file) throws IOException {
         String idl = readFile(file);
         return apply(idl);
@@ -22,49 +37,394 @@ public class ThriftParser {
 
     public static Optional<Nodes.DocumentNode> parseThriftFileAst(String file) throws IOException {
         String idl = readFile(file);
-        return applyAst(idl);
+        return applyAst(file, idl);
     }
 
     public static String readFile(String path)
             throws IOException {
+        long start = Metrics.start();
         InputStream in = ThriftParser.class.getResourceAsStream(path);
         BufferedReader buffer = new BufferedReader(new InputStreamReader(in));
         String line;
-        String lines = "";
+        StringBuilder lines = new StringBuilder();
         while ((line = buffer.readLine()) != null) {
-            lines += String.format("%s\n", line);
+            lines.append(line).append('\n');
         }
-        return lines;
+        Metrics.stop(Metrics.READ, start);
+        Metrics.get().record(Metrics.READ_CHARS, lines.length());
+        return lines.toString();
     }
 
     public static ParsingResult<?> apply(String input) {
-        ThriftIdl parser = Parboiled.createParser(ThriftIdl.class);
         input = Preprocessor.stripComments(input);
-        ParsingResult<?> result = new ReportingParseRunner(parser.Document()).run(input);
+        Rule document = RECOGNIZER.get();
+        long start = Metrics.start();
+        ParsingResult<?> result = new ReportingParseRunner(document).run(input);
+        Metrics.stop(Metrics.PARSE, start);
+        Metrics.recordParse(input, result);
         return result;
     }
 
     public static Optional<Nodes.DocumentNode> applyAst(String input) throws IOException {
-        ThriftAst thriftAst = new ThriftAst();
-        Optional<Nodes.DocumentNode> document = thriftAst.parseThriftIdl(input);
+        return applyAst(null, input);
+    }
+
+    private static Optional<Nodes.DocumentNode> applyAst(String source, String input) throws IOException {
+        Optional<Nodes.DocumentNode> document = parseDocument(source, input, false, new ArrayList<>());
         if (document.isPresent()) {
-            Nodes.DocumentNode d = document.get();
-            List<String> includes = d.getIncludeFiles();
-            if (includes.size() == 0) {
-                return document;
+            return Optional.of(addIncludes(document.get(), includeFile -> parseThriftFileAst("/" + includeFile)));
+        }
+        return document;
+    }
+
+    /**
+     * Parses many files concurrently. The files are parsed on the executor of the given
+     * options, with at most {@link ParseOptions#parallelism()} files in flight at a time.
+     * Every thread reuses its own parser, and included files are parsed once per call and
+     * shared by all the files that include them.
+     *
+     * @return one result per file, in the order of the given files
+     */
+    public static List<ParseResult> parseAll(Collection<Path> files, ParseOptions options)
+            throws InterruptedException {
+        return parseAll(files, options, new IncludeCache());
+    }
+
+    static List<ParseResult> parseAll(Collection<Path> files, ParseOptions options, IncludeCache includes)
+            throws InterruptedException {
+        ExecutorService executor = options.executor();
+        boolean ownExecutor = executor == null;
+        if (ownExecutor) {
+            executor = Executors.newFixedThreadPool(options.parallelism(), runnable -> {
+                Thread thread = new Thread(runnable, "thrift-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        try {
+            Semaphore permits = new Semaphore(options.parallelism());
+            List<Future<ParseResult>> futures = new ArrayList<>(files.size());
+            for (Path file : files) {
+                permits.acquire();
+                try {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            return parsePath(file, includes, options);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+
+            List<ParseResult> results = new ArrayList<>(files.size());
+            Iterator<Path> paths = files.iterator();
+            for (Future<ParseResult> future : futures) {
+                Path file = paths.next();
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    results.add(ParseResult.failed(file, e.getCause()));
+                }
+            }
+            return results;
+        } finally {
+            if (ownExecutor) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    public static List<ParseResult> parseAll(Collection<Path> files) throws InterruptedException {
+        return parseAll(files, new ParseOptions());
+    }
+
+    /**
+     * Parses one file and its includes, which are found relative to the file, in the include
+     * directories of the {@link ParseOptions#includeResolver} and on the classpath root.
+     */
+    public static ParseResult parseFile(Path file, ParseOptions options) {
+        return parsePath(file, new IncludeCache(), options);
+    }
+
+    /**
+     * Parses an IDL string like {@link #applyAst(String)}, but reports parse errors and
+     * missing includes as diagnostics.
+     */
+    static ParseResult parseString(String idl) {
+        long start = System.nanoTime();
+        List<String> diagnostics = new ArrayList<>();
+        try {
+            List<ParseError> errors = new ArrayList<>();
+            Optional<Nodes.DocumentNode> document = parseDocument(null, idl, false, errors);
+            for (ParseError error : errors) {
+                diagnostics.add(ErrorUtils.printParseError(error));
+            }
+            if (document.isPresent()) {
+                document = Optional.of(addIncludes(document.get(), includeFile -> {
+                    if (ThriftParser.class.getResource("/" + includeFile) == null) {
+                        diagnostics.add(String.format("Include not found: %s", includeFile));
+                        return Optional.empty();
+                    }
+                    return parseThriftFileAst("/" + includeFile);
+                }));
+            }
+            return new ParseResult(null, document, diagnostics, System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            diagnostics.add(e.toString());
+            return new ParseResult(null, Optional.empty(), diagnostics, System.nanoTime() - start);
+        }
+    }
+
+    static ParseResult parsePath(Path file, IncludeCache includes) {
+        return parsePath(file, includes, new ParseOptions());
+    }
+
+    static ParseResult parsePath(Path file, IncludeCache includes, ParseOptions options) {
+        return parseContent(file, null, includes, options);
+    }
+
+    /**
+     * Parses the given content as if it was read from the file. If the content is null,
+     * the file is read first.
+     */
+    static ParseResult parseContent(Path file, String idl, IncludeCache includes) {
+        return parseContent(file, idl, includes, new ParseOptions());
+    }
+
+    static ParseResult parseContent(Path file, String idl, IncludeCache includes, ParseOptions options) {
+        long start = System.nanoTime();
+        List<String> diagnostics = new ArrayList<>();
+        try {
+            if (idl == null) {
+                idl = read(file, options);
             }
-            // we need to add the contents of the includes files
-            for (String includeFile : includes) {
-                Optional<Nodes.DocumentNode> includedDocument = parseThriftFileAst("/" + includeFile);
-                if (!includedDocument.isPresent()) {
-                    // maybe should throw exception here?
-                    continue;
+            Optional<Nodes.DocumentNode> document = parseContent(file, idl, includes, options, diagnostics, new Including());
+            return new ParseResult(file, document, diagnostics, System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            diagnostics.add(String.format("%s: %s", file, e));
+            return new ParseResult(file, Optional.empty(), diagnostics, System.nanoTime() - start);
+        }
+    }
+
+    private static Optional<Nodes.DocumentNode> parsePath(Path file,
+                                                          IncludeCache includes,
+                                                          ParseOptions options,
+                                                          List<String> diagnostics,
+                                                          Including including) throws IOException {
+        String idl = read(file, options);
+        return parseContent(file, idl, includes, options, diagnostics, including);
+    }
+
+    private static String read(Path file, ParseOptions options) throws IOException {
+        IncludeResolver resolver = options.includeResolver();
+        if (resolver != null) {
+            return resolver.read(file);
+        }
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    // includes are relative to the including file, or in the include directories of the resolver
+    private static Path resolve(Path file, String includeFile, ParseOptions options) throws IOException {
+        IncludeResolver resolver = options.includeResolver();
+        if (resolver != null) {
+            return resolver.resolve(file, includeFile).orElse(null);
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Path resolved = parent == null ? null : parent.resolve(includeFile).normalize();
+        return resolved != null && Files.isRegularFile(resolved) ? resolved : null;
+    }
+
+    private static Optional<Nodes.DocumentNode> parseContent(Path file,
+                                                             String idl,
+                                                             IncludeCache includes,
+                                                             ParseOptions options,
+                                                             List<String> diagnostics,
+                                                             Including including) throws IOException {
+        List<ParseError> errors = new ArrayList<>();
+        Optional<Nodes.DocumentNode> document = parseDocument(file.toString(), idl, options.memoizeMismatches(), errors);
+        for (ParseError error : errors) {
+            diagnostics.add(String.format("%s: %s", file, ErrorUtils.printParseError(error)));
+        }
+        if (!document.isPresent()) {
+            return document;
+        }
+        including.files.add(file.toAbsolutePath().normalize().toString());
+        return Optional.of(addIncludes(document.get(), options.freeze(), includeFile -> {
+            // includes are found on the filesystem, falling back to the classpath root
+            Path resolved = resolve(file, includeFile, options);
+            includes.recordInclude(file, resolved);
+            IncludeCache.Entry entry;
+            if (resolved != null) {
+                String key = resolved.toString();
+                if (!including.files.add(key)) {
+                    including.cycles++;
+                    diagnostics.add(String.format("%s: Include cycle through %s", file, includeFile));
+                    return Optional.empty();
+                }
+                try {
+                    entry = includes.get(key, () -> {
+                        int cycles = including.cycles;
+                        List<String> included = new ArrayList<>();
+                        Optional<Nodes.DocumentNode> parsed = parsePath(resolved, includes, options, included, including);
+                        return new IncludeCache.Entry(parsed, included, including.cycles == cycles);
+                    });
+                } finally {
+                    including.files.remove(key);
                 }
+            } else if (ThriftParser.class.getResource("/" + includeFile) != null) {
+                entry = includes.get("classpath:/" + includeFile, () -> new IncludeCache.Entry(
+                        parseThriftFileAst("/" + includeFile), Collections.emptyList(), true));
+            } else {
+                diagnostics.add(String.format("%s: Include not found: %s", file, includeFile));
+                return Optional.empty();
+            }
+            // every includer reports the problems of the include, not just the one that parsed it
+            diagnostics.addAll(entry.diagnostics);
+            if (!entry.document.isPresent() && entry.diagnostics.isEmpty()) {
+                diagnostics.add(String.format("%s: Include could not be parsed: %s", file, includeFile));
+            }
+            return entry.document;
+        }));
+    }
+
+    // the files on the way from the parsed file to the current include, and the number of
+    // include cycles that were cut short so far
+    private static class Including {
+        final Set<String> files = new HashSet<>();
+        int cycles;
+    }
+
+    /**
+     * Parses one document without resolving its includes, adding any parse errors to the
+     * given list. The parse is reported to the flight recorder under the given source.
+     */
+    static Optional<Nodes.DocumentNode> parseDocument(String source,
+                                                      String idl,
+                                                      boolean memoizeMismatches,
+                                                      List<ParseError> errors) {
+        FlightRecorderEvents.Event event = FlightRecorderEvents.FILE_PARSED.begin();
+        ParsingResult<?> result = new ThriftAst(memoizeMismatches).parse(idl);
+        Optional<Nodes.DocumentNode> document = ThriftAst.toDocument(result);
+        errors.addAll(result.parseErrors);
+        if (document.isPresent()) {
+            event.commit(source, (long) idl.length(), document.get().definitions.size());
+        }
+        if (!document.isPresent() || !errors.isEmpty()) {
+            FlightRecorderEvents.PARSE_FAILURE.emit(source, (long) idl.length(), errors.size(),
+                    errors.isEmpty() ? "No document" : ErrorUtils.printParseError(errors.get(0)));
+        }
+        return document;
+    }
+
+    interface IncludeLoader {
+        Optional<Nodes.DocumentNode> load(String includeFile) throws IOException;
+    }
+
+    private static Nodes.DocumentNode addIncludes(Nodes.DocumentNode d, IncludeLoader loader) throws IOException {
+        return addIncludes(d, false, loader);
+    }
+
+    /** Adds the includes to the document, or to a frozen copy of it that shares the included lists */
+    private static Nodes.DocumentNode addIncludes(Nodes.DocumentNode d, boolean freeze, IncludeLoader loader)
+            throws IOException {
+        List<Nodes.FrozenDocumentNode> frozen = new ArrayList<>();
+        List<String> includes = d.getIncludeFiles();
+        // we need to add the contents of the includes files
+        for (String includeFile : includes) {
+            long start = Metrics.start();
+            FlightRecorderEvents.Event event = FlightRecorderEvents.INCLUDE_RESOLVED.begin();
+            Optional<Nodes.DocumentNode> includedDocument = loader.load(includeFile);
+            Metrics.stop(Metrics.INCLUDE, start);
+            event.commit(includeFile, includedDocument.isPresent());
+            if (!includedDocument.isPresent()) {
+                // the loader reported why
+                continue;
+            }
+            if (freeze) {
+                frozen.add(includedDocument.get().freeze());
+            } else {
                 d.addHeaders(includedDocument.get().headers);
                 d.addDefinitions(includedDocument.get().definitions);
             }
-            return Optional.of(d);
         }
-        return document;
+        return freeze ? d.freeze().merge(frozen) : d;
+    }
+
+    /**
+     * Parsed include files, keyed by their resolved location, with the diagnostics of their
+     * parse so that every includer can report them. Cached documents are never modified, since
+     * includes are copied into the including document. An include whose parse cut an include
+     * cycle short is not cached, since it lacks the part of the cycle its includer was parsing.
+     */
+    static class IncludeCache {
+        private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+        // the files every parsed file includes, and the files with an include that was not on the filesystem
+        private final ConcurrentHashMap<Path, Set<Path>> dependencies = new ConcurrentHashMap<>();
+        private final Set<Path> unresolved = ConcurrentHashMap.newKeySet();
+
+        static class Entry {
+            final Optional<Nodes.DocumentNode> document;
+            final List<String> diagnostics;
+            final boolean complete;
+
+            Entry(Optional<Nodes.DocumentNode> document, List<String> diagnostics, boolean complete) {
+                this.document = document;
+                this.diagnostics = Collections.unmodifiableList(diagnostics);
+                this.complete = complete;
+            }
+        }
+
+        /** Adds a file parsed earlier, e.g. one that has not changed since */
+        void put(ParseResult result) {
+            entries.put(result.path.toAbsolutePath().normalize().toString(),
+                    new Entry(result.document, result.diagnostics, true));
+        }
+
+        /** Records an include of a file, resolved to a file, or to null if it is not on the filesystem */
+        void recordInclude(Path file, Path resolved) {
+            Path key = file.toAbsolutePath().normalize();
+            Set<Path> files = dependencies.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+            if (resolved == null) {
+                unresolved.add(key);
+            } else {
+                files.add(resolved);
+            }
+        }
+
+        Map<Path, Set<Path>> dependencies() {
+            return dependencies;
+        }
+
+        Set<Path> unresolved() {
+            return unresolved;
+        }
+
+        Entry get(String key, Callable<Entry> parse) throws IOException {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                Metrics.get().count(Metrics.INCLUDE_CACHE_HIT, 1);
+                FlightRecorderEvents.INCLUDE_CACHE_HIT.emit(key);
+                return entry;
+            }
+            Metrics.get().count(Metrics.INCLUDE_CACHE_MISS, 1);
+            FlightRecorderEvents.INCLUDE_CACHE_MISS.emit(key);
+            // two threads may parse the same include at once; the first result wins
+            try {
+                entry = parse.call();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            if (!entry.complete) {
+                return entry;
+            }
+            Entry previous = entries.putIfAbsent(key, entry);
+            return previous == null ? entry : previous;
+        }
     }
 }
@@ -0,0 +1,520 @@
+package com.mitchseymour.thrift.parser;
+
+import static com.mitchseymour.thrift.parser.Token.*;
+
+import com.mitchseymour.thrift.parser.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Checks that IDL parses, without building a parse tree or an AST. A hand-written
+ * {@link Tokenizer} feeds a recursive descent recognizer for the grammar of
+ * {@link com.mitchseymour.thrift.parser.ast.ThriftAst}, and only the first error is reported.
+ * Validating allocates nothing beyond the buffer that files are read into, which is reused.
+ *
+ * <pre>
+ * ThriftValidator validator = new ThriftValidator();
+ * if (!validator.validate(Paths.get("monkeys.thrift"))) {
+ *     System.err.println(validator.errorMessage());
+ * }
+ * </pre>
+ *
+ * The validator accepts what {@link com.mitchseymour.thrift.parser.ast.ThriftAst} parses
+ * into a document, including the quirks of that grammar: 'map', 'set', 'list', 'cpp_type' and
+ * 'throws' name types or fields where they do not start what they usually do, and the smalltalk
+ * namespaces take their name without
+ * whitespace, e.g. "namespace smalltalk.prefixST". Typedefs of containers, php_namespace and
+ * xsd_namespace match the grammar, but the AST parser cannot build them, and ints must fit an
+ * i64. The one difference is a keyword that runs into the name after it: the grammar reads
+ * "structA {}" as a struct A, while the validator rejects it.
+ *
+ * A validator is not thread safe; use one per thread. Unlike the parser, the validator does
+ * not resolve includes, and it reads comments itself instead of running the {@link Preprocessor}.
+ */
+public final class ThriftValidator {
+
+    private static final byte[][] NAMESPACE_SCOPES = bytes("cpp", "java", "py", "perl", "php", "rb", "cocoa", "csharp");
+    private static final byte[] SMALLTALK_CATEGORY = "smalltalk.category".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SMALLTALK_PREFIX = "smalltalk.prefix".getBytes(StandardCharsets.US_ASCII);
+
+    private final Tokenizer tokens = new Tokenizer();
+    private byte[] buffer = new byte[8192];
+    private int kind;
+
+    private int inputOffset;
+    private int inputLimit;
+    private int errorOffset = -1;
+    private String expected;
+    private int found;
+
+    /** Validates an IDL string */
+    public static boolean isValid(String idl) {
+        return new ThriftValidator().validate(idl);
+    }
+
+    public boolean validate(String idl) {
+        return validate(idl.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean validate(byte[] input) {
+        return validate(input, 0, input.length);
+    }
+
+    /** Validates UTF-8 encoded IDL */
+    public boolean validate(byte[] input, int offset, int length) {
+        long start = Metrics.start();
+        tokens.reset(input, offset, length);
+        inputOffset = offset;
+        inputLimit = offset + length;
+        errorOffset = -1;
+        expected = null;
+        found = EOF;
+        boolean valid = document();
+        Metrics.stop(Metrics.VALIDATE, start);
+        return valid;
+    }
+
+    /** Validates a file, reading it into a buffer that is reused for the next file */
+    public boolean validate(Path file) throws IOException {
+        int length = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer, length, buffer.length - length)) >= 0) {
+                length += read;
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+        }
+        return validate(buffer, 0, length);
+    }
+
+    /** The offset of the first error from the start of the input, or -1 if the input is valid */
+    public int errorOffset() {
+        return errorOffset < 0 ? -1 : errorOffset - inputOffset;
+    }
+
+    /** The 1-based line of the first error, or -1 if the input is valid */
+    public int errorLine() {
+        if (errorOffset < 0) {
+            return -1;
+        }
+        byte[] input = tokens.input();
+        int line = 1;
+        for (int i = inputOffset; i < errorOffset; i++) {
+            if (input[i] == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    /** The 1-based column of the first error in bytes, or -1 if the input is valid */
+    public int errorColumn() {
+        if (errorOffset < 0) {
+            return -1;
+        }
+        byte[] input = tokens.input();
+        int lineStart = errorOffset;
+        while (lineStart > inputOffset && input[lineStart - 1] != '\n') {
+            lineStart--;
+        }
+        return errorOffset - lineStart + 1;
+    }
+
+    /** What the validator expected at the first error, or null if the input is valid */
+    public String expected() {
+        return expected;
+    }
+
+    /** Describes the first error, or returns null if the input is valid */
+    public String errorMessage() {
+        if (errorOffset < 0) {
+            return null;
+        }
+        return String.format("Expected %s, found %s (line %d, pos %d)",
+                expected, Token.name(found), errorLine(), errorColumn());
+    }
+
+    //================================================================================
+    // Grammar
+    //================================================================================
+
+    private boolean document() {
+        next();
+        while (kind == INCLUDE || kind == CPP_INCLUDE || kind == NAMESPACE) {
+            if (!header()) {
+                return false;
+            }
+        }
+        while (kind != EOF) {
+            if (!definition()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // php_namespace and xsd_namespace match the grammar, but the AST parser cannot build them
+    private boolean header() {
+        switch (kind) {
+            case NAMESPACE:
+                next();
+                if (kind == STAR) {
+                    next();
+                    return name();
+                }
+                if (kind != IDENTIFIER) {
+                    return fail("namespace scope");
+                }
+                for (byte[] scope : NAMESPACE_SCOPES) {
+                    if (tokens.textEquals(scope)) {
+                        next();
+                        return name();
+                    }
+                }
+                // the smalltalk scopes take their identifier without whitespace in between
+                if (tokens.startsWith(SMALLTALK_CATEGORY)) {
+                    tokens.split(SMALLTALK_CATEGORY.length, IDENTIFIER);
+                    if (tokens.nextStIdentifier() != IDENTIFIER) {
+                        return fail("identifier", tokens.kind);
+                    }
+                    next();
+                    return true;
+                }
+                if (tokens.startsWith(SMALLTALK_PREFIX)) {
+                    tokens.split(SMALLTALK_PREFIX.length, IDENTIFIER);
+                    next();
+                    return name();
+                }
+                return fail("namespace scope");
+            default:
+                // include and cpp_include take a literal
+                next();
+                return expect(LITERAL);
+        }
+    }
+
+    private boolean definition() {
+        switch (kind) {
+            case CONST:
+                next();
+                if (!fieldType() || !name() || !expect(EQUALS) || !constValue()) {
+                    return false;
+                }
+                separator();
+                return true;
+            case TYPEDEF:
+                next();
+                // container typedefs match the grammar, but the AST parser cannot build them
+                if (!isBaseType(kind)) {
+                    return fail("base type");
+                }
+                next();
+                return name();
+            case ENUM:
+                next();
+                if (!name() || !expect(LBRACE)) {
+                    return false;
+                }
+                while (isName(kind)) {
+                    next();
+                    if (kind == EQUALS) {
+                        next();
+                        if (!intConstant()) {
+                            return false;
+                        }
+                    }
+                    separator();
+                }
+                return expect(RBRACE);
+            case SENUM:
+                next();
+                if (!name() || !expect(LBRACE)) {
+                    return false;
+                }
+                while (kind == LITERAL) {
+                    next();
+                    separator();
+                }
+                return expect(RBRACE);
+            case STRUCT:
+            case UNION:
+            case EXCEPTION:
+                boolean xsdAll = kind != EXCEPTION;
+                next();
+                if (!name()) {
+                    return false;
+                }
+                if (xsdAll && kind == XSD_ALL) {
+                    next();
+                }
+                return fields(LBRACE, RBRACE);
+            case SERVICE:
+                next();
+                if (!name()) {
+                    return false;
+                }
+                if (kind == EXTENDS) {
+                    next();
+                    if (!name()) {
+                        return false;
+                    }
+                }
+                if (!expect(LBRACE)) {
+                    return false;
+                }
+                while (kind != RBRACE) {
+                    if (!function()) {
+                        return false;
+                    }
+                }
+                next();
+                return true;
+            default:
+                return fail("definition");
+        }
+    }
+
+    private boolean function() {
+        if (kind == ONEWAY) {
+            next();
+        }
+        if (!fieldType() || !name() || !fields(LPAREN, RPAREN)) {
+            return false;
+        }
+        if (kind == THROWS) {
+            int mark = tokens.start;
+            next();
+            if (kind != LPAREN) {
+                // not a throws clause, so 'throws' is the type of the next function
+                backUp(mark);
+                return true;
+            }
+            if (!fields(LPAREN, RPAREN)) {
+                return false;
+            }
+        }
+        separator();
+        return true;
+    }
+
+    private boolean fields(int open, int close) {
+        if (!expect(open)) {
+            return false;
+        }
+        while (kind != close) {
+            if (!field()) {
+                return false;
+            }
+        }
+        next();
+        return true;
+    }
+
+    private boolean field() {
+        if (kind == INT_CONSTANT) {
+            if (!intConstant() || !expect(COLON)) {
+                return false;
+            }
+        }
+        if (kind == REQUIRED || kind == OPTIONAL) {
+            next();
+        }
+        if (!fieldType() || !name()) {
+            return false;
+        }
+        if (kind == EQUALS) {
+            next();
+            if (!constValue()) {
+                return false;
+            }
+        }
+        separator();
+        return true;
+    }
+
+    // also matches 'void', which the grammar only allows as a function type
+    private boolean fieldType() {
+        if (kind != MAP && kind != SET && kind != LIST) {
+            return name("field type");
+        }
+        int type = kind;
+        int mark = tokens.start;
+        next();
+        if (kind == LT) {
+            return containerType(type);
+        }
+        if (kind != CPP_TYPE || type == LIST) {
+            // not a container, so the keyword is the name of a type
+            return true;
+        }
+        if (containerType(type)) {
+            return true;
+        }
+        // e.g. 'map cpp_type', which the grammar reads as a field cpp_type of type map
+        errorOffset = -1;
+        expected = null;
+        found = EOF;
+        backUp(mark);
+        next();
+        return true;
+    }
+
+    private boolean containerType(int type) {
+        switch (type) {
+            case MAP:
+                return cppType() && expect(LT) && fieldType() && expect(COMMA) && fieldType() && expect(GT);
+            case SET:
+                return cppType() && expect(LT) && fieldType() && expect(GT);
+            default:
+                return expect(LT) && fieldType() && expect(GT) && cppType();
+        }
+    }
+
+    // an optional 'cpp_type' Literal
+    private boolean cppType() {
+        if (kind != CPP_TYPE) {
+            return true;
+        }
+        int mark = tokens.start;
+        next();
+        if (kind != LITERAL) {
+            // not a cpp_type, so 'cpp_type' is the name after the type
+            backUp(mark);
+            return true;
+        }
+        next();
+        return true;
+    }
+
+    private boolean constValue() {
+        switch (kind) {
+            case INT_CONSTANT:
+                return intConstant();
+            case DOUBLE_CONSTANT:
+            case LITERAL:
+                next();
+                return true;
+            case LBRACKET:
+                next();
+                while (kind != RBRACKET) {
+                    if (!constValue()) {
+                        return false;
+                    }
+                    separator();
+                }
+                next();
+                return true;
+            case LBRACE:
+                next();
+                while (kind != RBRACE) {
+                    if (!constValue() || !expect(COLON) || !constValue()) {
+                        return false;
+                    }
+                    separator();
+                }
+                next();
+                return true;
+            default:
+                return name("const value");
+        }
+    }
+
+    // the grammar leaves an int that runs into a '.', 'e' or 'E' to doubles, which fail on it,
+    // and the AST parser reads ints as longs
+    private boolean intConstant() {
+        if (kind != INT_CONSTANT) {
+            return fail(Token.name(INT_CONSTANT));
+        }
+        byte[] input = tokens.input();
+        int end = tokens.end;
+        if (end < inputLimit && (input[end] == '.' || input[end] == 'e' || input[end] == 'E')) {
+            return fail(Token.name(INT_CONSTANT));
+        }
+        int i = tokens.start;
+        boolean negative = input[i] == '-';
+        if (input[i] == '-' || input[i] == '+') {
+            i++;
+        }
+        // accumulates the negated value, whose range includes Long.MIN_VALUE
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = input[i] - '0';
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                return fail("int constant that fits an i64");
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            return fail("int constant that fits an i64");
+        }
+        next();
+        return true;
+    }
+
+    // keywords are identifiers to the grammar, wherever a name is expected
+    private static boolean isName(int kind) {
+        return kind == IDENTIFIER || isKeyword(kind);
+    }
+
+    private boolean name() {
+        return name("identifier");
+    }
+
+    private boolean name(String expected) {
+        if (!isName(kind)) {
+            return fail(expected);
+        }
+        next();
+        return true;
+    }
+
+    private void separator() {
+        if (kind == COMMA || kind == SEMICOLON) {
+            next();
+        }
+    }
+
+    private boolean expect(int expectedKind) {
+        if (kind != expectedKind) {
+            return fail(Token.name(expectedKind));
+        }
+        next();
+        return true;
+    }
+
+    private void next() {
+        kind = tokens.next();
+    }
+
+    // scans again from an earlier token, which becomes the current token
+    private void backUp(int mark) {
+        tokens.seek(mark);
+        next();
+    }
+
+    private boolean fail(String expected) {
+        return fail(expected, kind);
+    }
+
+    private boolean fail(String expected, int found) {
+        this.errorOffset = tokens.start;
+        this.expected = expected;
+        this.found = found;
+        return false;
+    }
+
+    private static byte[][] bytes(String... strings) {
+        byte[][] bytes = new byte[strings.length][];
+        for (int i = 0; i < strings.length; i++) {
+            bytes[i] = strings[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,106 @@
+package com.mitchseymour.thrift.parser;
+
+/**
+ * Token kinds of the hand-written Thrift IDL tokenizer. Kinds are ints, so tokens can be
+ * scanned and stored without allocating.
+ */
+public final class Token {
+
+    public static final int EOF = 0;
+    /** An unexpected character, or an unterminated literal or comment */
+    public static final int ERROR = 1;
+    public static final int IDENTIFIER = 2;
+    public static final int LITERAL = 3;
+    public static final int INT_CONSTANT = 4;
+    public static final int DOUBLE_CONSTANT = 5;
+
+    // punctuation
+    public static final int LBRACE = 6;
+    public static final int RBRACE = 7;
+    public static final int LBRACKET = 8;
+    public static final int RBRACKET = 9;
+    public static final int LPAREN = 10;
+    public static final int RPAREN = 11;
+    public static final int LT = 12;
+    public static final int GT = 13;
+    public static final int COMMA = 14;
+    public static final int SEMICOLON = 15;
+    public static final int COLON = 16;
+    public static final int EQUALS = 17;
+    public static final int STAR = 18;
+    /** A line or block comment, only produced when the tokenizer keeps comments */
+    public static final int COMMENT = 19;
+
+    // keywords
+    public static final int INCLUDE = 20;
+    public static final int CPP_INCLUDE = 21;
+    public static final int NAMESPACE = 22;
+    public static final int PHP_NAMESPACE = 23;
+    public static final int XSD_NAMESPACE = 24;
+    public static final int CONST = 25;
+    public static final int TYPEDEF = 26;
+    public static final int ENUM = 27;
+    public static final int SENUM = 28;
+    public static final int STRUCT = 29;
+    public static final int UNION = 30;
+    public static final int EXCEPTION = 31;
+    public static final int SERVICE = 32;
+    public static final int EXTENDS = 33;
+    public static final int REQUIRED = 34;
+    public static final int OPTIONAL = 35;
+    public static final int ONEWAY = 36;
+    public static final int VOID = 37;
+    public static final int THROWS = 38;
+    public static final int XSD_ALL = 39;
+    public static final int XSD_OPTIONAL = 40;
+    public static final int XSD_NILLABLE = 41;
+    public static final int XSD_ATTRS = 42;
+    public static final int MAP = 43;
+    public static final int SET = 44;
+    public static final int LIST = 45;
+    public static final int CPP_TYPE = 46;
+    public static final int BOOL = 47;
+    public static final int BYTE = 48;
+    public static final int I8 = 49;
+    public static final int I16 = 50;
+    public static final int I32 = 51;
+    public static final int I64 = 52;
+    public static final int DOUBLE = 53;
+    public static final int STRING = 54;
+    public static final int BINARY = 55;
+    public static final int SLIST = 56;
+
+    static final int FIRST_KEYWORD = INCLUDE;
+    static final int FIRST_BASE_TYPE = BOOL;
+    /** The number of token kinds, which are numbered from 0 */
+    public static final int KINDS = SLIST + 1;
+
+    private static final String[] NAMES = {
+            "end of input", "invalid token", "identifier", "literal", "int constant", "double constant",
+            "'{'", "'}'", "'['", "']'", "'('", "')'", "'<'", "'>'", "','", "';'", "':'", "'='", "'*'", "comment",
+            "include", "cpp_include", "namespace", "php_namespace", "xsd_namespace",
+            "const", "typedef", "enum", "senum", "struct", "union", "exception", "service",
+            "extends", "required", "optional", "oneway", "void", "throws",
+            "xsd_all", "xsd_optional", "xsd_nillable", "xsd_attrs",
+            "map", "set", "list", "cpp_type",
+            "bool", "byte", "i8", "i16", "i32", "i64", "double", "string", "binary", "slist"};
+
+    private Token() {
+    }
+
+    /** The source text of a keyword or punctuation kind, or a description of other kinds */
+    public static String name(int kind) {
+        if (kind < 0 || kind >= KINDS) {
+            throw new IllegalArgumentException(String.format("Unknown token kind: %d", kind));
+        }
+        return NAMES[kind];
+    }
+
+    public static boolean isKeyword(int kind) {
+        return kind >= FIRST_KEYWORD && kind < KINDS;
+    }
+
+    public static boolean isBaseType(int kind) {
+        return kind >= FIRST_BASE_TYPE && kind < KINDS;
+    }
+}
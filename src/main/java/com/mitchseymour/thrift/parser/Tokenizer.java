@@ -0,0 +1,312 @@
+package com.mitchseymour.thrift.parser;
+
+import static com.mitchseymour.thrift.parser.Token.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A hand-written tokenizer for Thrift IDL, reading UTF-8 bytes. It skips whitespace and
+ * comments itself, so the input does not need to go through the {@link Preprocessor}.
+ * Tokens are scanned one at a time into the fields of the tokenizer, without allocating,
+ * so one tokenizer can be reset and reused for many inputs. Not thread safe.
+ *
+ * Non-ASCII bytes are only allowed inside literals and comments, so offsets are byte offsets.
+ */
+final class Tokenizer {
+
+    private static final int LETTER = 1;
+    private static final int DIGIT = 2;
+    private static final int IDENTIFIER_PART = 4;
+    private static final int WHITESPACE = 8;
+    private static final byte[] CLASSES = new byte[256];
+
+    // keyword kinds by length and first letter
+    private static final int[][][] KEYWORDS = new int[16][26][];
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++) {
+            CLASSES[c] = LETTER | IDENTIFIER_PART;
+            CLASSES[Character.toUpperCase(c)] = LETTER | IDENTIFIER_PART;
+        }
+        for (int c = '0'; c <= '9'; c++) {
+            CLASSES[c] = DIGIT | IDENTIFIER_PART;
+        }
+        CLASSES['_'] = IDENTIFIER_PART;
+        CLASSES['.'] = IDENTIFIER_PART;
+        for (char c : " \n\r\t\f".toCharArray()) {
+            CLASSES[c] = WHITESPACE;
+        }
+        for (int kind = FIRST_KEYWORD; kind < KINDS; kind++) {
+            String keyword = Token.name(kind);
+            int[] kinds = KEYWORDS[keyword.length()][keyword.charAt(0) - 'a'];
+            kinds = kinds == null ? new int[1] : Arrays.copyOf(kinds, kinds.length + 1);
+            kinds[kinds.length - 1] = kind;
+            KEYWORDS[keyword.length()][keyword.charAt(0) - 'a'] = kinds;
+        }
+    }
+
+    private static final byte[][] KEYWORD_BYTES = new byte[KINDS][];
+
+    static {
+        for (int kind = FIRST_KEYWORD; kind < KINDS; kind++) {
+            KEYWORD_BYTES[kind] = Token.name(kind).getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private byte[] input;
+    private int position;
+    private int limit;
+    private boolean comments;
+
+    /** The kind, start offset and end offset of the current token */
+    int kind;
+    int start;
+    int end;
+
+    void reset(byte[] input, int offset, int length) {
+        this.input = input;
+        this.position = offset;
+        this.limit = offset + length;
+        this.kind = ERROR;
+        this.start = offset;
+        this.end = offset;
+    }
+
+    byte[] input() {
+        return input;
+    }
+
+    /** Whether comments are returned as COMMENT tokens instead of being skipped */
+    void comments(boolean comments) {
+        this.comments = comments;
+    }
+
+    /** Scans the next token and returns its kind */
+    int next() {
+        if (!skipWhitespaceAndComments()) {
+            return token(ERROR, position, limit);
+        }
+        int start = position;
+        if (start >= limit) {
+            return token(EOF, start, start);
+        }
+        int c = input[start] & 0xff;
+        if (c == '/' && comments && start + 1 < limit && (input[start + 1] == '/' || input[start + 1] == '*')) {
+            return comment(start);
+        }
+        switch (c) {
+            case '{': return token(LBRACE, start, start + 1);
+            case '}': return token(RBRACE, start, start + 1);
+            case '[': return token(LBRACKET, start, start + 1);
+            case ']': return token(RBRACKET, start, start + 1);
+            case '(': return token(LPAREN, start, start + 1);
+            case ')': return token(RPAREN, start, start + 1);
+            case '<': return token(LT, start, start + 1);
+            case '>': return token(GT, start, start + 1);
+            case ',': return token(COMMA, start, start + 1);
+            case ';': return token(SEMICOLON, start, start + 1);
+            case ':': return token(COLON, start, start + 1);
+            case '=': return token(EQUALS, start, start + 1);
+            case '*': return token(STAR, start, start + 1);
+            case '"':
+            case '\'':
+                return literal(start, (byte) c);
+            default:
+                break;
+        }
+        if ((CLASSES[c] & LETTER) != 0 || c == '_') {
+            int end = identifierEnd(start + 1, false);
+            return token(keyword(start, end - start), start, end);
+        }
+        return number(start);
+    }
+
+    /**
+     * Scans the next token as a Smalltalk identifier, which may also contain '-'.
+     * Returns IDENTIFIER, or ERROR if the next token does not start like an identifier.
+     */
+    int nextStIdentifier() {
+        if (!skipWhitespaceAndComments()) {
+            return token(ERROR, position, limit);
+        }
+        int start = position;
+        if (start < limit && ((CLASSES[input[start] & 0xff] & LETTER) != 0 || input[start] == '_')) {
+            return token(IDENTIFIER, start, identifierEnd(start + 1, true));
+        }
+        return token(ERROR, start, Math.min(start + 1, limit));
+    }
+
+    /** Continues scanning at the given offset, e.g. to back up to an earlier token */
+    void seek(int offset) {
+        this.position = offset;
+    }
+
+    /**
+     * Cuts the current token after its first bytes, which become a token of the given kind.
+     * The rest of the token is scanned by the next call.
+     */
+    int split(int length, int kind) {
+        return token(kind, start, start + length);
+    }
+
+    /** True if the current token is longer than the given text and starts with it */
+    boolean startsWith(byte[] text) {
+        if (end - start <= text.length) {
+            return false;
+        }
+        for (int i = 0; i < text.length; i++) {
+            if (input[start + i] != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** True if the current token is an identifier with the given text */
+    boolean textEquals(byte[] text) {
+        int length = end - start;
+        if (length != text.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (input[start + i] != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int token(int kind, int start, int end) {
+        this.kind = kind;
+        this.start = start;
+        this.end = end;
+        this.position = end;
+        return kind;
+    }
+
+    // returns false for an unterminated block comment
+    private boolean skipWhitespaceAndComments() {
+        int i = position;
+        while (i < limit) {
+            int c = input[i] & 0xff;
+            if ((CLASSES[c] & WHITESPACE) != 0) {
+                i++;
+            } else if (c == '/' && !comments && i + 1 < limit && (input[i + 1] == '/' || input[i + 1] == '*')) {
+                int end = commentEnd(i);
+                if (end < 0) {
+                    position = i;
+                    return false;
+                }
+                i = end;
+            } else {
+                break;
+            }
+        }
+        position = i;
+        return true;
+    }
+
+    private int comment(int start) {
+        int end = commentEnd(start);
+        return end < 0 ? token(ERROR, start, limit) : token(COMMENT, start, end);
+    }
+
+    // the end of the comment starting at i, or -1 for an unterminated block comment
+    private int commentEnd(int i) {
+        if (input[i + 1] == '/') {
+            i += 2;
+            while (i < limit && input[i] != '\n') {
+                i++;
+            }
+            return i;
+        }
+        i += 2;
+        while (i + 1 < limit && !(input[i] == '*' && input[i + 1] == '/')) {
+            i++;
+        }
+        return i + 1 < limit ? i + 2 : -1;
+    }
+
+    private int identifierEnd(int i, boolean dashes) {
+        while (i < limit) {
+            int c = input[i] & 0xff;
+            if ((CLASSES[c] & IDENTIFIER_PART) == 0 && !(dashes && c == '-')) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private int keyword(int start, int length) {
+        int first = input[start] - 'a';
+        if (length >= KEYWORDS.length || first < 0 || first >= 26) {
+            return IDENTIFIER;
+        }
+        int[] kinds = KEYWORDS[length][first];
+        if (kinds == null) {
+            return IDENTIFIER;
+        }
+        candidates:
+        for (int kind : kinds) {
+            byte[] keyword = KEYWORD_BYTES[kind];
+            for (int i = 1; i < length; i++) {
+                if (input[start + i] != keyword[i]) {
+                    continue candidates;
+                }
+            }
+            return kind;
+        }
+        return IDENTIFIER;
+    }
+
+    private int literal(int start, byte quote) {
+        int i = start + 1;
+        while (i < limit && input[i] != quote) {
+            i++;
+        }
+        if (i >= limit) {
+            return token(ERROR, start, limit);
+        }
+        return token(LITERAL, start, i + 1);
+    }
+
+    // ('+' | '-')? Digit* ('.' Digit+)? (('E' | 'e') ('+' | '-')? Digit+)?
+    private int number(int start) {
+        int i = start;
+        if (input[i] == '+' || input[i] == '-') {
+            i++;
+        }
+        int digits = digitsEnd(i);
+        boolean isDouble = false;
+        if (digits + 1 < limit && input[digits] == '.' && isDigit(digits + 1)) {
+            digits = digitsEnd(digits + 1);
+            isDouble = true;
+        } else if (digits == i) {
+            return token(ERROR, start, start + 1);
+        }
+        if (digits < limit && (input[digits] == 'e' || input[digits] == 'E')) {
+            int exponent = digits + 1;
+            if (exponent < limit && (input[exponent] == '+' || input[exponent] == '-')) {
+                exponent++;
+            }
+            if (isDigit(exponent)) {
+                digits = digitsEnd(exponent);
+                isDouble = true;
+            }
+        }
+        return token(isDouble ? DOUBLE_CONSTANT : INT_CONSTANT, start, digits);
+    }
+
+    private boolean isDigit(int i) {
+        return i < limit && (CLASSES[input[i] & 0xff] & DIGIT) != 0;
+    }
+
+    private int digitsEnd(int i) {
+        while (isDigit(i)) {
+            i++;
+        }
+        return i;
+    }
+}
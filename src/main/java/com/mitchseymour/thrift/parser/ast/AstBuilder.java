@@ -0,0 +1,36 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The listener that collects the headers and definitions of a parse into a document.
+ */
+public class AstBuilder implements ParseListener {
+
+    private final List<HeaderNode> headers = new ArrayList<>();
+    private final List<DefinitionNode> definitions = new ArrayList<>();
+
+    @Override
+    public void onHeader(HeaderNode header) {
+        headers.add(header);
+    }
+
+    @Override
+    public void onDefinition(DefinitionNode definition) {
+        definitions.add(definition);
+    }
+
+    /** The document of the headers and definitions received so far */
+    public DocumentNode document() {
+        // the document constructor reverses the lists it is given, which used to come off a value stack
+        List<HeaderNode> headers = new ArrayList<>(this.headers);
+        List<DefinitionNode> definitions = new ArrayList<>(this.definitions);
+        Collections.reverse(headers);
+        Collections.reverse(definitions);
+        return new DocumentNode(headers, definitions);
+    }
+}
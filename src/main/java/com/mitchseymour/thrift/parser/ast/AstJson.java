@@ -0,0 +1,480 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.*;
+import com.mitchseymour.thrift.parser.json.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Writes the AST as JSON, straight to a {@link JsonWriter}. Nodes are written by hand rather
+ * than by reflection, so the output does not change with the fields of {@link Nodes}, optional
+ * members are left out rather than wrapped, and names and values are encoded into the output
+ * buffer without intermediate strings. The schema is:
+ *
+ * <pre>
+ * document    {"headers": [header...], "definitions": [definition...]}
+ * header      {"kind": "include" | "cpp_include", "path": ...}
+ *             {"kind": "namespace", "scope": ..., "name": ...}
+ * definition  {"kind": "const", "name": ..., "type": type, "value": value}
+ *             {"kind": "typedef", "name": ..., "type": type}
+ *             {"kind": "enum", "name": ..., "values": [{"name": ..., "value": n}...]}
+ *             {"kind": "senum", "name": ..., "values": [string...]}
+ *             {"kind": "struct" | "union" | "exception", "name": ..., "fields": [field...]}
+ *             {"kind": "service", "name": ..., "extends": ..., "functions": [function...]}
+ * field       {"id": n, "name": ..., "type": type, "default": value, "xsdAttributes": [field...]}
+ * function    {"name": ..., "returnType": type, "arguments": [field...], "throws": [field...]}
+ * type        {"kind": "base" | "ref", "name": ...}
+ *             {"kind": "void"}
+ *             {"kind": "list" | "set", "element": type, "cppType": ...}
+ *             {"kind": "map", "key": type, "value": type, "cppType": ...}
+ * value       n, string, {"ref": name}, [value...] or {"map": [[key, value]...]}
+ * </pre>
+ *
+ * The id, default and xsdAttributes of a field, the value of an enum value, the extends and
+ * throws of a service and function, and the cppType of a container are left out when absent.
+ * Namespace scopes of the special forms are "php", "xsd", "smalltalk.category" and
+ * "smalltalk.prefix". Literals are written without their quotes.
+ */
+public final class AstJson {
+
+    private static final byte[] KIND = utf8("kind");
+    private static final byte[] NAME = utf8("name");
+    private static final byte[] PATH = utf8("path");
+    private static final byte[] SCOPE = utf8("scope");
+    private static final byte[] HEADERS = utf8("headers");
+    private static final byte[] DEFINITIONS = utf8("definitions");
+    private static final byte[] TYPE = utf8("type");
+    private static final byte[] VALUE = utf8("value");
+    private static final byte[] VALUES = utf8("values");
+    private static final byte[] FIELDS = utf8("fields");
+    private static final byte[] EXTENDS = utf8("extends");
+    private static final byte[] FUNCTIONS = utf8("functions");
+    private static final byte[] ID = utf8("id");
+    private static final byte[] DEFAULT = utf8("default");
+    private static final byte[] XSD_ATTRIBUTES = utf8("xsdAttributes");
+    private static final byte[] RETURN_TYPE = utf8("returnType");
+    private static final byte[] ARGUMENTS = utf8("arguments");
+    private static final byte[] THROWS = utf8("throws");
+    private static final byte[] ELEMENT = utf8("element");
+    private static final byte[] KEY = utf8("key");
+    private static final byte[] CPP_TYPE = utf8("cppType");
+    private static final byte[] REF = utf8("ref");
+    private static final byte[] MAP = utf8("map");
+
+    private static final byte[] INCLUDE = utf8("include");
+    private static final byte[] CPP_INCLUDE = utf8("cpp_include");
+    private static final byte[] NAMESPACE = utf8("namespace");
+    private static final byte[] CONST = utf8("const");
+    private static final byte[] TYPEDEF = utf8("typedef");
+    private static final byte[] ENUM = utf8("enum");
+    private static final byte[] SENUM = utf8("senum");
+    private static final byte[] STRUCT = utf8("struct");
+    private static final byte[] UNION = utf8("union");
+    private static final byte[] EXCEPTION = utf8("exception");
+    private static final byte[] SERVICE = utf8("service");
+    private static final byte[] BASE = utf8("base");
+    private static final byte[] VOID = utf8("void");
+    private static final byte[] LIST = utf8("list");
+    private static final byte[] SET = utf8("set");
+    private static final byte[] PHP = utf8("php");
+    private static final byte[] XSD = utf8("xsd");
+    private static final byte[] SMALLTALK_CATEGORY = utf8("smalltalk.category");
+    private static final byte[] SMALLTALK_PREFIX = utf8("smalltalk.prefix");
+
+    private AstJson() {
+    }
+
+    /** Writes a document as one JSON object */
+    public static void write(DocumentNode document, OutputStream out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writeDocument(document, writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes any node: a document, header, definition, field, function, type or constant value
+     * in the form of the schema, and the other nodes as the part of the schema they stand for,
+     * e.g. the arguments of a function as an array of fields.
+     */
+    public static void write(AstNode node, JsonWriter out) throws IOException {
+        if (DocumentNode.class.isInstance(node)) {
+            writeDocument((DocumentNode) node, out);
+        } else if (HeaderNode.class.isInstance(node)) {
+            writeHeader(((HeaderNode) node).value, out);
+        } else if (DefinitionNode.class.isInstance(node)) {
+            writeDefinition(((DefinitionNode) node).value, out);
+        } else if (FieldNode.class.isInstance(node)) {
+            writeField((FieldNode) node, out);
+        } else if (FunctionNode.class.isInstance(node)) {
+            writeFunction((FunctionNode) node, out);
+        } else if (EnumValueNode.class.isInstance(node)) {
+            writeEnumValue((EnumValueNode) node, out);
+        } else if (FunctionArgumentsNode.class.isInstance(node)) {
+            writeFields(((FunctionArgumentsNode) node).arguments, out);
+        } else if (ThrowsNode.class.isInstance(node)) {
+            writeFields(((ThrowsNode) node).fields, out);
+        } else if (XsdAttrsNode.class.isInstance(node)) {
+            writeFields(((XsdAttrsNode) node).fields, out);
+        } else if (XsdFieldOptionsNode.class.isInstance(node)) {
+            Optional<XsdAttrsNode> attrs = ((XsdFieldOptionsNode) node).attrs;
+            if (attrs.isPresent()) {
+                writeFields(attrs.get().fields, out);
+            } else {
+                out.nullValue();
+            }
+        } else if (CppTypeNode.class.isInstance(node)) {
+            writeLiteral(((CppTypeNode) node).value.value, out);
+        } else if (ConstValueNode.class.isInstance(node)) {
+            writeValue(((ConstValueNode) node).value, out);
+        } else if (ConstListItemNode.class.isInstance(node)) {
+            writeValue(((ConstListItemNode) node).value, out);
+        } else if (ConstMapEntryNode.class.isInstance(node)) {
+            ConstMapEntryNode entry = (ConstMapEntryNode) node;
+            out.beginArray();
+            writeValue(entry.key, out);
+            writeValue(entry.value, out);
+            out.endArray();
+        } else if (IntConstNode.class.isInstance(node) || DoubleConstNode.class.isInstance(node)
+                || LiteralNode.class.isInstance(node) || ConstListNode.class.isInstance(node)
+                || ConstMapNode.class.isInstance(node)) {
+            writeValue(node, out);
+        } else if (isHeader(node)) {
+            writeHeader(node, out);
+        } else if (isType(node)) {
+            writeType(node, out);
+        } else if (NamedNode.class.isInstance(node)) {
+            writeDefinition((NamedNode) node, out);
+        } else {
+            throw new RuntimeException(String.format("Cannot write node as JSON: %s", node.getClass().getSimpleName()));
+        }
+    }
+
+    //================================================================================
+    // Headers and definitions
+    //================================================================================
+
+    private static void writeDocument(DocumentNode document, JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name(HEADERS).beginArray();
+        for (HeaderNode header : document.headers) {
+            writeHeader(header.value, out);
+        }
+        out.endArray();
+        out.name(DEFINITIONS).beginArray();
+        for (DefinitionNode definition : document.definitions) {
+            writeDefinition(definition.value, out);
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    private static boolean isHeader(AstNode node) {
+        return IncludeNode.class.isInstance(node) || CppIncludeNode.class.isInstance(node)
+                || GeneralNamespaceNode.class.isInstance(node) || PhpNamespaceNode.class.isInstance(node)
+                || XsdNamespaceNode.class.isInstance(node) || StCategoryNamespaceNode.class.isInstance(node)
+                || StPrefixNamespaceNode.class.isInstance(node);
+    }
+
+    private static void writeHeader(AstNode header, JsonWriter out) throws IOException {
+        out.beginObject();
+        if (IncludeNode.class.isInstance(header)) {
+            writeKind(INCLUDE, out);
+            out.name(PATH).value(((IncludeNode) header).value);
+        } else if (CppIncludeNode.class.isInstance(header)) {
+            writeKind(CPP_INCLUDE, out);
+            out.name(PATH);
+            writeLiteral(((CppIncludeNode) header).name, out);
+        } else {
+            writeKind(NAMESPACE, out);
+            out.name(SCOPE);
+            if (GeneralNamespaceNode.class.isInstance(header)) {
+                out.value(((GeneralNamespaceNode) header).scope);
+            } else if (PhpNamespaceNode.class.isInstance(header)) {
+                out.value(PHP, 0, PHP.length);
+            } else if (XsdNamespaceNode.class.isInstance(header)) {
+                out.value(XSD, 0, XSD.length);
+            } else if (StCategoryNamespaceNode.class.isInstance(header)) {
+                out.value(SMALLTALK_CATEGORY, 0, SMALLTALK_CATEGORY.length);
+            } else if (StPrefixNamespaceNode.class.isInstance(header)) {
+                out.value(SMALLTALK_PREFIX, 0, SMALLTALK_PREFIX.length);
+            } else {
+                throw new RuntimeException(String.format("Unknown header: %s", header.getClass().getSimpleName()));
+            }
+            out.name(NAME);
+            writeLiteral(((NamedNode) header).identifier.name, out);
+        }
+        out.endObject();
+    }
+
+    private static void writeDefinition(NamedNode definition, JsonWriter out) throws IOException {
+        out.beginObject();
+        if (StructNode.class.isInstance(definition)) {
+            writeKindAndName(STRUCT, definition, out);
+            out.name(FIELDS);
+            writeFields(((StructNode) definition).fields, out);
+        } else if (ServiceNode.class.isInstance(definition)) {
+            ServiceNode service = (ServiceNode) definition;
+            writeKindAndName(SERVICE, definition, out);
+            if (service.parent.isPresent()) {
+                out.name(EXTENDS).value(service.parent.get().name);
+            }
+            out.name(FUNCTIONS).beginArray();
+            for (FunctionNode function : service.functions) {
+                writeFunction(function, out);
+            }
+            out.endArray();
+        } else if (EnumNode.class.isInstance(definition)) {
+            writeKindAndName(ENUM, definition, out);
+            out.name(VALUES).beginArray();
+            for (EnumValueNode value : ((EnumNode) definition).values) {
+                writeEnumValue(value, out);
+            }
+            out.endArray();
+        } else if (ConstNode.class.isInstance(definition)) {
+            ConstNode constant = (ConstNode) definition;
+            writeKindAndName(CONST, definition, out);
+            out.name(TYPE);
+            writeType(constant.constType, out);
+            out.name(VALUE);
+            writeValue(constant.value.value, out);
+        } else if (TypedefNode.class.isInstance(definition)) {
+            writeKindAndName(TYPEDEF, definition, out);
+            out.name(TYPE);
+            writeType(((TypedefNode) definition).defType, out);
+        } else if (UnionNode.class.isInstance(definition)) {
+            writeKindAndName(UNION, definition, out);
+            out.name(FIELDS);
+            writeFields(((UnionNode) definition).fields, out);
+        } else if (ExceptionNode.class.isInstance(definition)) {
+            writeKindAndName(EXCEPTION, definition, out);
+            out.name(FIELDS);
+            writeFields(((ExceptionNode) definition).fields, out);
+        } else if (SenumNode.class.isInstance(definition)) {
+            writeKindAndName(SENUM, definition, out);
+            out.name(VALUES).beginArray();
+            for (LiteralNode value : ((SenumNode) definition).values) {
+                writeLiteral(value.value, out);
+            }
+            out.endArray();
+        } else {
+            throw new RuntimeException(String.format("Unknown definition: %s", definition.getClass().getSimpleName()));
+        }
+        out.endObject();
+    }
+
+    private static void writeKindAndName(byte[] kind, NamedNode node, JsonWriter out) throws IOException {
+        writeKind(kind, out);
+        out.name(NAME).value(node.identifier.name);
+    }
+
+    private static void writeKind(byte[] kind, JsonWriter out) throws IOException {
+        out.name(KIND).value(kind, 0, kind.length);
+    }
+
+    private static void writeEnumValue(EnumValueNode value, JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name(NAME).value(value.identifier.name);
+        if (value.value.isPresent()) {
+            out.name(VALUE).value(value.value.get().longValue);
+        }
+        out.endObject();
+    }
+
+    private static void writeFields(List<FieldNode> fields, JsonWriter out) throws IOException {
+        out.beginArray();
+        for (FieldNode field : fields) {
+            writeField(field, out);
+        }
+        out.endArray();
+    }
+
+    private static void writeField(FieldNode field, JsonWriter out) throws IOException {
+        out.beginObject();
+        if (field.id.isPresent()) {
+            out.name(ID).value(field.id.get().longValue);
+        }
+        out.name(NAME).value(field.identifier.name);
+        out.name(TYPE);
+        writeType(field.fieldType, out);
+        if (field.value.isPresent()) {
+            out.name(DEFAULT);
+            writeValue(field.value.get().value, out);
+        }
+        if (field.xsdFieldOptions != null && field.xsdFieldOptions.attrs.isPresent()) {
+            out.name(XSD_ATTRIBUTES);
+            writeFields(field.xsdFieldOptions.attrs.get().fields, out);
+        }
+        out.endObject();
+    }
+
+    private static void writeFunction(FunctionNode function, JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name(NAME).value(function.identifier.name);
+        out.name(RETURN_TYPE);
+        writeType(function.functionType, out);
+        out.name(ARGUMENTS);
+        writeFields(function.arguments, out);
+        if (function.throws_.isPresent()) {
+            out.name(THROWS);
+            writeFields(function.throws_.get().fields, out);
+        }
+        out.endObject();
+    }
+
+    //================================================================================
+    // Types and values
+    //================================================================================
+
+    private static boolean isType(AstNode node) {
+        return FieldTypeNode.class.isInstance(node) || FunctionTypeNode.class.isInstance(node)
+                || BaseTypeNode.class.isInstance(node) || IdentifierNode.class.isInstance(node)
+                || VoidNode.class.isInstance(node) || CollectionNode.class.isInstance(node);
+    }
+
+    private static void writeType(AstNode type, JsonWriter out) throws IOException {
+        // field and function types only wrap the type
+        while (FieldTypeNode.class.isInstance(type) || FunctionTypeNode.class.isInstance(type)) {
+            type = FieldTypeNode.class.isInstance(type)
+                    ? ((FieldTypeNode) type).fieldType
+                    : ((FunctionTypeNode) type).functionType;
+        }
+        out.beginObject();
+        if (BaseTypeNode.class.isInstance(type)) {
+            // the name of a base type node is matched with the space after it
+            String name = ((BaseTypeNode) type).name;
+            int end = name.length();
+            while (end > 0 && Character.isWhitespace(name.charAt(end - 1))) {
+                end--;
+            }
+            writeKind(BASE, out);
+            out.name(NAME).value(name, 0, end);
+        } else if (IdentifierNode.class.isInstance(type)) {
+            // the grammar matches most base types and void as identifiers
+            String name = ((IdentifierNode) type).name;
+            if (name.equals("void")) {
+                writeKind(VOID, out);
+            } else {
+                writeKind(isBaseType(name) ? BASE : REF, out);
+                out.name(NAME).value(name);
+            }
+        } else if (ListTypeNode.class.isInstance(type)) {
+            ListTypeNode list = (ListTypeNode) type;
+            writeKind(LIST, out);
+            out.name(ELEMENT);
+            writeType(list.fieldType, out);
+            writeCppType(list.cppType, out);
+        } else if (SetTypeNode.class.isInstance(type)) {
+            SetTypeNode set = (SetTypeNode) type;
+            writeKind(SET, out);
+            out.name(ELEMENT);
+            writeType(set.fieldType, out);
+            writeCppType(set.cppType, out);
+        } else if (MapTypeNode.class.isInstance(type)) {
+            MapTypeNode map = (MapTypeNode) type;
+            writeKind(MAP, out);
+            out.name(KEY);
+            writeType(map.keyType, out);
+            out.name(VALUE);
+            writeType(map.valueType, out);
+            writeCppType(map.cppType, out);
+        } else if (VoidNode.class.isInstance(type)) {
+            writeKind(VOID, out);
+        } else {
+            throw new RuntimeException(String.format("Unknown type: %s", type.getClass().getSimpleName()));
+        }
+        out.endObject();
+    }
+
+    private static boolean isBaseType(String name) {
+        switch (name) {
+            case "bool":
+            case "byte":
+            case "i8":
+            case "i16":
+            case "i32":
+            case "i64":
+            case "double":
+            case "string":
+            case "binary":
+            case "slist":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void writeCppType(Optional<CppTypeNode> cppType, JsonWriter out) throws IOException {
+        if (cppType.isPresent()) {
+            out.name(CPP_TYPE);
+            writeLiteral(cppType.get().value.value, out);
+        }
+    }
+
+    private static void writeValue(AstNode value, JsonWriter out) throws IOException {
+        if (IntConstNode.class.isInstance(value)) {
+            out.value(((IntConstNode) value).longValue);
+        } else if (LiteralNode.class.isInstance(value)) {
+            writeLiteral(((LiteralNode) value).value, out);
+        } else if (DoubleConstNode.class.isInstance(value)) {
+            out.value(((DoubleConstNode) value).value);
+        } else if (IdentifierNode.class.isInstance(value)) {
+            out.beginObject().name(REF).value(((IdentifierNode) value).name).endObject();
+        } else if (ConstListNode.class.isInstance(value)) {
+            ConstTable table = ((ConstListNode) value).table();
+            out.beginArray();
+            for (int i = 0; i < table.size(); i++) {
+                writeEntry(table, i, out);
+            }
+            out.endArray();
+        } else if (ConstMapNode.class.isInstance(value)) {
+            ConstMapNode map = (ConstMapNode) value;
+            ConstTable keys = map.keyTable();
+            ConstTable values = map.valueTable();
+            out.beginObject().name(MAP).beginArray();
+            for (int i = 0; i < keys.size(); i++) {
+                out.beginArray();
+                writeEntry(keys, i, out);
+                writeEntry(values, i, out);
+                out.endArray();
+            }
+            out.endArray().endObject();
+        } else {
+            throw new RuntimeException(String.format("Unknown constant: %s", value.getClass().getSimpleName()));
+        }
+    }
+
+    // the entries of primitive tables are written without creating their nodes
+    private static void writeEntry(ConstTable table, int i, JsonWriter out) throws IOException {
+        switch (table.kind()) {
+            case INT:
+                out.value(table.getLong(i));
+                break;
+            case DOUBLE:
+                out.value(table.getDouble(i));
+                break;
+            case LITERAL:
+                writeLiteral(table.getQuotedLiteral(i), out);
+                break;
+            default:
+                writeValue(table.get(i), out);
+        }
+    }
+
+    private static void writeLiteral(String literal, JsonWriter out) throws IOException {
+        int length = literal.length();
+        if (length >= 2 && (literal.charAt(0) == '"' || literal.charAt(0) == '\'')
+                && literal.charAt(length - 1) == literal.charAt(0)) {
+            out.value(literal, 1, length - 1);
+        } else {
+            out.value(literal);
+        }
+    }
+
+    private static byte[] utf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
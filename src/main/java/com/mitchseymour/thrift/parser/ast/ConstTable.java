@@ -0,0 +1,301 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.*;
+
+import java.util.List;
+
+/**
+ * Compact storage for the values of a const list, or the keys or values of a const map.
+ * Lists of only int, double or string literal constants are kept in a primitive or string
+ * array, so a large {@code const list<i64>} costs 8 bytes per element instead of a node and
+ * its boxed value. Any other list keeps its nodes. Nodes of primitive tables are created on
+ * access, so callers must not rely on their identity.
+ *
+ * Tables also find the index of a key through an open addressing hash index, which is built
+ * on the first lookup. Keys are compared by value: a Long for int constants, a Double for
+ * double constants, and a String for literals (without their quotes) and identifiers.
+ */
+abstract class ConstTable {
+
+    // slot i holds the table index + 1 of a key, or 0 if the slot is free
+    private volatile int[] index;
+
+    static ConstTable of(List<? extends AstNode> nodes) {
+        ConstKind kind = kindOf(nodes);
+        int size = nodes.size();
+        switch (kind) {
+            case INT:
+                long[] longs = new long[size];
+                for (int i = 0; i < size; i++) {
+                    longs[i] = ((IntConstNode) nodes.get(i)).longValue;
+                }
+                return new LongTable(longs);
+            case DOUBLE:
+                double[] doubles = new double[size];
+                for (int i = 0; i < size; i++) {
+                    doubles[i] = ((DoubleConstNode) nodes.get(i)).value;
+                }
+                return new DoubleTable(doubles);
+            case LITERAL:
+                String[] literals = new String[size];
+                for (int i = 0; i < size; i++) {
+                    literals[i] = ((LiteralNode) nodes.get(i)).value;
+                }
+                return new LiteralTable(literals);
+            default:
+                return new NodeTable(nodes.toArray(new AstNode[size]));
+        }
+    }
+
+    private static ConstKind kindOf(List<? extends AstNode> nodes) {
+        if (nodes.isEmpty()) {
+            return ConstKind.MIXED;
+        }
+        Class<?> type = nodes.get(0).getClass();
+        for (AstNode node : nodes) {
+            if (node.getClass() != type) {
+                return ConstKind.MIXED;
+            }
+        }
+        if (type == IntConstNode.class) {
+            return ConstKind.INT;
+        } else if (type == DoubleConstNode.class) {
+            return ConstKind.DOUBLE;
+        } else if (type == LiteralNode.class) {
+            return ConstKind.LITERAL;
+        }
+        return ConstKind.MIXED;
+    }
+
+    abstract ConstKind kind();
+
+    abstract int size();
+
+    abstract AstNode get(int i);
+
+    long getLong(int i) {
+        throw new UnsupportedOperationException(String.format("Not an int table: %s", kind()));
+    }
+
+    double getDouble(int i) {
+        throw new UnsupportedOperationException(String.format("Not a double table: %s", kind()));
+    }
+
+    String getLiteral(int i) {
+        throw new UnsupportedOperationException(String.format("Not a literal table: %s", kind()));
+    }
+
+    /** The literal of entry i with its quotes, as written */
+    String getQuotedLiteral(int i) {
+        throw new UnsupportedOperationException(String.format("Not a literal table: %s", kind()));
+    }
+
+    /** The hash code of the lookup key of entry i, or 0 if the entry cannot be looked up */
+    abstract int keyHash(int i);
+
+    abstract boolean keyEquals(int i, Object key);
+
+    /** Returns the index of the last entry with the given key, or -1 if there is none */
+    int indexOf(Object key) {
+        int[] slots = index;
+        if (slots == null) {
+            // two threads may build the index at once; both build the same one
+            slots = index = buildIndex();
+        }
+        int mask = slots.length - 1;
+        for (int slot = mix(key.hashCode()) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (keyEquals(slots[slot] - 1, key)) {
+                return slots[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private int[] buildIndex() {
+        int[] slots = new int[Math.max(2, Integer.highestOneBit(Math.max(1, size()) * 2 - 1) * 2)];
+        int mask = slots.length - 1;
+        for (int i = 0; i < size(); i++) {
+            int slot = mix(keyHash(i)) & mask;
+            // later entries replace earlier ones with the same key
+            while (slots[slot] != 0 && !sameKey(slots[slot] - 1, i)) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+        return slots;
+    }
+
+    private boolean sameKey(int i, int j) {
+        Object key = key(get(j));
+        return key != null && keyEquals(i, key);
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /** The lookup key of a node, or null for lists and maps */
+    static Object key(AstNode node) {
+        if (IntConstNode.class.isInstance(node)) {
+            return ((IntConstNode) node).longValue;
+        } else if (DoubleConstNode.class.isInstance(node)) {
+            return ((DoubleConstNode) node).value;
+        } else if (LiteralNode.class.isInstance(node)) {
+            String literal = ((LiteralNode) node).value;
+            return literal.substring(1, literal.length() - 1);
+        } else if (IdentifierNode.class.isInstance(node)) {
+            return ((IdentifierNode) node).name;
+        }
+        return null;
+    }
+
+    //================================================================================
+    // Tables
+    //================================================================================
+
+    private static class LongTable extends ConstTable {
+        private final long[] values;
+
+        LongTable(long[] values) {
+            this.values = values;
+        }
+
+        ConstKind kind() {
+            return ConstKind.INT;
+        }
+
+        int size() {
+            return values.length;
+        }
+
+        AstNode get(int i) {
+            return new IntConstNode(values[i]);
+        }
+
+        long getLong(int i) {
+            return values[i];
+        }
+
+        double getDouble(int i) {
+            return values[i];
+        }
+
+        int keyHash(int i) {
+            return Long.hashCode(values[i]);
+        }
+
+        boolean keyEquals(int i, Object key) {
+            return key instanceof Long && (Long) key == values[i];
+        }
+    }
+
+    private static class DoubleTable extends ConstTable {
+        private final double[] values;
+
+        DoubleTable(double[] values) {
+            this.values = values;
+        }
+
+        ConstKind kind() {
+            return ConstKind.DOUBLE;
+        }
+
+        int size() {
+            return values.length;
+        }
+
+        AstNode get(int i) {
+            return new DoubleConstNode(values[i]);
+        }
+
+        double getDouble(int i) {
+            return values[i];
+        }
+
+        int keyHash(int i) {
+            return Double.hashCode(values[i]);
+        }
+
+        boolean keyEquals(int i, Object key) {
+            return key instanceof Double && ((Double) key).equals(values[i]);
+        }
+    }
+
+    private static class LiteralTable extends ConstTable {
+        // the literals with their quotes, as written
+        private final String[] values;
+
+        LiteralTable(String[] values) {
+            this.values = values;
+        }
+
+        ConstKind kind() {
+            return ConstKind.LITERAL;
+        }
+
+        int size() {
+            return values.length;
+        }
+
+        AstNode get(int i) {
+            return new LiteralNode(values[i]);
+        }
+
+        String getLiteral(int i) {
+            String literal = values[i];
+            return literal.substring(1, literal.length() - 1);
+        }
+
+        String getQuotedLiteral(int i) {
+            return values[i];
+        }
+
+        // the same as getLiteral(i).hashCode(), without copying the literal
+        int keyHash(int i) {
+            String literal = values[i];
+            int hash = 0;
+            for (int c = 1; c < literal.length() - 1; c++) {
+                hash = 31 * hash + literal.charAt(c);
+            }
+            return hash;
+        }
+
+        boolean keyEquals(int i, Object key) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+            String literal = values[i];
+            String string = (String) key;
+            return string.length() == literal.length() - 2 && literal.regionMatches(1, string, 0, string.length());
+        }
+    }
+
+    private static class NodeTable extends ConstTable {
+        private final AstNode[] values;
+
+        NodeTable(AstNode[] values) {
+            this.values = values;
+        }
+
+        ConstKind kind() {
+            return ConstKind.MIXED;
+        }
+
+        int size() {
+            return values.length;
+        }
+
+        AstNode get(int i) {
+            return values[i];
+        }
+
+        int keyHash(int i) {
+            Object key = key(values[i]);
+            return key == null ? 0 : key.hashCode();
+        }
+
+        boolean keyEquals(int i, Object key) {
+            return key.equals(key(values[i]));
+        }
+    }
+}
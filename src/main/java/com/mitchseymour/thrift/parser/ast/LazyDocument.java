@@ -0,0 +1,325 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import static com.mitchseymour.thrift.parser.Token.*;
+
+import com.mitchseymour.thrift.parser.ParseException;
+import com.mitchseymour.thrift.parser.ThriftLexer;
+import com.mitchseymour.thrift.parser.ast.Nodes.*;
+import org.parboiled.errors.ErrorUtils;
+import org.parboiled.errors.ParseError;
+import org.parboiled.support.ParsingResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A document whose definitions are parsed when they are first accessed. Creating it takes
+ * one pass of the {@link ThriftLexer} over the input, which finds the kind, name and byte
+ * range of every top-level definition. The headers are parsed right away, since the includes
+ * are usually needed. A definition body is parsed by {@link ThriftAst} on first access, once,
+ * even if several threads ask for it at the same time.
+ *
+ * <pre>
+ * LazyDocument document = LazyDocument.parse(idl).get();
+ * StructNode monkey = (StructNode) document.definition("Monkey").get().value;
+ * </pre>
+ *
+ * The index only checks the tokens and the nesting of brackets, so errors inside a
+ * definition body are found when the definition is parsed, and thrown as a
+ * {@link ParseException}.
+ */
+public class LazyDocument {
+
+    private static final Map<Integer, Class<? extends NamedNode>> DEFINITION_TYPES = new HashMap<>();
+
+    static {
+        DEFINITION_TYPES.put(CONST, ConstNode.class);
+        DEFINITION_TYPES.put(TYPEDEF, TypedefNode.class);
+        DEFINITION_TYPES.put(ENUM, EnumNode.class);
+        DEFINITION_TYPES.put(SENUM, SenumNode.class);
+        DEFINITION_TYPES.put(STRUCT, StructNode.class);
+        DEFINITION_TYPES.put(UNION, UnionNode.class);
+        DEFINITION_TYPES.put(EXCEPTION, ExceptionNode.class);
+        DEFINITION_TYPES.put(SERVICE, ServiceNode.class);
+    }
+
+    private final byte[] input;
+    public final List<HeaderNode> headers;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Entry> entriesByName = new HashMap<>();
+
+    private LazyDocument(byte[] input, List<HeaderNode> headers) {
+        this.input = input;
+        this.headers = Collections.unmodifiableList(headers);
+    }
+
+    public static Optional<LazyDocument> parse(String idl) {
+        return parse(idl.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Indexes UTF-8 encoded IDL, which must not be modified afterwards. Returns empty if the
+     * input has invalid tokens, its headers do not parse, or a definition is not closed.
+     */
+    public static Optional<LazyDocument> parse(byte[] input) {
+        ThriftLexer lexer = new ThriftLexer(Math.max(16, input.length / 4));
+        int tokens = lexer.tokenize(input);
+        if (lexer.errors() > 0) {
+            return Optional.empty();
+        }
+        int[] kinds = lexer.kinds();
+
+        int first = 0;
+        while (first < tokens - 1 && !DEFINITION_TYPES.containsKey(kinds[first])) {
+            first++;
+        }
+        List<HeaderNode> headers = Collections.emptyList();
+        if (first > 0) {
+            Optional<DocumentNode> header = new ThriftAst().parseThriftIdl(
+                    new String(input, 0, lexer.start(first), StandardCharsets.UTF_8));
+            if (!header.isPresent()) {
+                return Optional.empty();
+            }
+            headers = new ArrayList<>(header.get().headers);
+        }
+
+        LazyDocument document = new LazyDocument(input, headers);
+        int i = first;
+        while (kinds[i] != EOF) {
+            int start = i;
+            int name;
+            switch (kinds[i]) {
+                case CONST:
+                case TYPEDEF:
+                    name = skipType(kinds, i + 1);
+                    break;
+                default:
+                    name = i + 1;
+            }
+            if (name < 0 || !isName(kinds[name])) {
+                return Optional.empty();
+            }
+            i = name + 1;
+            switch (kinds[start]) {
+                case CONST:
+                    if (kinds[i] != EQUALS) {
+                        return Optional.empty();
+                    }
+                    i = skipValue(kinds, i + 1);
+                    if (i >= 0 && (kinds[i] == COMMA || kinds[i] == SEMICOLON)) {
+                        i++;
+                    }
+                    break;
+                case TYPEDEF:
+                    break;
+                default:
+                    // the body follows the name, 'xsd_all' or 'extends' and the parent service
+                    while (kinds[i] == XSD_ALL || kinds[i] == EXTENDS || kinds[i - 1] == EXTENDS && isName(kinds[i])) {
+                        i++;
+                    }
+                    i = skip(kinds, i, LBRACE, RBRACE);
+            }
+            if (i < 0) {
+                return Optional.empty();
+            }
+            document.add(new Entry(document, DEFINITION_TYPES.get(kinds[start]), lexer.text(name),
+                    lexer.start(start), lexer.end(i - 1)));
+        }
+        return Optional.of(document);
+    }
+
+    // returns the token after the field type starting at i, or -1
+    private static int skipType(int[] kinds, int i) {
+        switch (kinds[i]) {
+            case MAP:
+            case SET:
+            case LIST:
+                boolean list = kinds[i] == LIST;
+                i = skipCppType(kinds, i + 1);
+                i = i < 0 ? -1 : skip(kinds, i, LT, GT);
+                return i >= 0 && list ? skipCppType(kinds, i) : i;
+            default:
+                return kinds[i] == EOF ? -1 : i + 1;
+        }
+    }
+
+    // returns the token after an optional 'cpp_type' Literal at i, or -1
+    private static int skipCppType(int[] kinds, int i) {
+        if (kinds[i] != CPP_TYPE) {
+            return i;
+        }
+        return kinds[i + 1] == LITERAL ? i + 2 : -1;
+    }
+
+    // returns the token after the const value starting at i, or -1
+    private static int skipValue(int[] kinds, int i) {
+        switch (kinds[i]) {
+            case LBRACKET:
+            case LBRACE:
+                // brackets and braces of const values nest in each other
+                int depth = 0;
+                do {
+                    switch (kinds[i]) {
+                        case LBRACKET:
+                        case LBRACE:
+                            depth++;
+                            break;
+                        case RBRACKET:
+                        case RBRACE:
+                            depth--;
+                            break;
+                        case EOF:
+                            return -1;
+                        default:
+                            break;
+                    }
+                    i++;
+                } while (depth > 0);
+                return i;
+            case EOF:
+                return -1;
+            default:
+                return i + 1;
+        }
+    }
+
+    // returns the token after the bracket that closes the one at i, or -1
+    private static int skip(int[] kinds, int i, int open, int close) {
+        if (kinds[i] != open) {
+            return -1;
+        }
+        int depth = 0;
+        do {
+            if (kinds[i] == open) {
+                depth++;
+            } else if (kinds[i] == close) {
+                depth--;
+            } else if (kinds[i] == EOF) {
+                return -1;
+            }
+            i++;
+        } while (depth > 0);
+        return i;
+    }
+
+    private static boolean isName(int kind) {
+        return kind == IDENTIFIER || isKeyword(kind);
+    }
+
+    private void add(Entry entry) {
+        entries.add(entry);
+        // the first definition of a name wins, like in the eagerly parsed definitions list
+        entriesByName.putIfAbsent(entry.name, entry);
+    }
+
+    /** The top-level definitions, in source order */
+    public List<Entry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public Optional<Entry> entry(String name) {
+        return Optional.ofNullable(entriesByName.get(name));
+    }
+
+    /** Parses the named definition, unless it was parsed before */
+    public Optional<DefinitionNode> definition(String name) {
+        return entry(name).map(Entry::definition);
+    }
+
+    public DefinitionNode definition(int index) {
+        return entries.get(index).definition();
+    }
+
+    /** The number of definitions parsed so far */
+    public int parsed() {
+        int parsed = 0;
+        for (Entry entry : entries) {
+            if (entry.isParsed()) {
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+
+    /** Parses all remaining definitions into a document, as if it was parsed eagerly */
+    public DocumentNode toDocument() {
+        AstBuilder builder = new AstBuilder();
+        for (HeaderNode header : headers) {
+            builder.onHeader(header);
+        }
+        for (Entry entry : entries) {
+            builder.onDefinition(entry.definition());
+        }
+        return builder.document();
+    }
+
+    /** A top-level definition: its kind, name and byte range in the input */
+    public static class Entry {
+        private final LazyDocument document;
+        /** The class of the definition's node, as in {@link DefinitionNode#type} */
+        public final Class<? extends NamedNode> type;
+        public final String name;
+        public final int start;
+        public final int end;
+        private volatile DefinitionNode definition;
+
+        Entry(LazyDocument document, Class<? extends NamedNode> type, String name, int start, int end) {
+            this.document = document;
+            this.type = type;
+            this.name = name;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String source() {
+            return new String(document.input, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        public boolean isParsed() {
+            return definition != null;
+        }
+
+        /** Parses the definition on first access */
+        public DefinitionNode definition() {
+            DefinitionNode definition = this.definition;
+            if (definition == null) {
+                synchronized (this) {
+                    definition = this.definition;
+                    if (definition == null) {
+                        definition = parse();
+                        this.definition = definition;
+                    }
+                }
+            }
+            return definition;
+        }
+
+        private DefinitionNode parse() {
+            ParsingResult<?> result = new ThriftAst().parse(source());
+            Optional<DocumentNode> parsed = ThriftAst.toDocument(result);
+            if (result.parseErrors.isEmpty() && parsed.isPresent() && parsed.get().definitions.size() == 1) {
+                return parsed.get().definitions.get(0);
+            }
+            List<String> diagnostics = new ArrayList<>();
+            for (ParseError error : result.parseErrors) {
+                diagnostics.add(ErrorUtils.printParseError(error));
+            }
+            throw new ParseException(String.format("Cannot parse %s %s at line %d",
+                    type.getSimpleName().replace("Node", "").toLowerCase(), name, line()), diagnostics);
+        }
+
+        private int line() {
+            int line = 1;
+            for (int i = 0; i < start; i++) {
+                if (document.input[i] == '\n') {
+                    line++;
+                }
+            }
+            return line;
+        }
+
+        public String toString() {
+            return String.format("%s %s [%d, %d)", type.getSimpleName().replace("Node", ""), name, start, end);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import org.parboiled.Rule;
+import org.parboiled.annotations.MemoMismatches;
+
+/**
+ * The AST grammar with mismatch memoization on the rules that are tried at the same input
+ * position after failed alternatives: field types inside fields, consts and containers, and
+ * const values inside const lists and maps. A memoized rule that failed at a position fails
+ * again immediately, without re-running its sub rules, for the rest of the parser run.
+ *
+ * Memoization costs a hash lookup per rule invocation, so it only pays off on inputs that
+ * backtrack a lot. See {@code MemoizationBenchmark}.
+ */
+class MemoizingThriftAst extends ThriftAst {
+
+    @Override
+    @MemoMismatches
+    Rule FieldType() {
+        return super.FieldType();
+    }
+
+    @Override
+    @MemoMismatches
+    Rule ContainerType() {
+        return super.ContainerType();
+    }
+
+    @Override
+    @MemoMismatches
+    Rule ConstValue() {
+        return super.ConstValue();
+    }
+
+    @Override
+    @MemoMismatches
+    Rule IntConstant() {
+        return super.IntConstant();
+    }
+
+    @Override
+    @MemoMismatches
+    Rule DoubleConstant() {
+        return super.DoubleConstant();
+    }
+
+    @Override
+    @MemoMismatches
+    Rule Identifier() {
+        return super.Identifier();
+    }
+
+    @Override
+    @MemoMismatches
+    Rule Literal() {
+        return super.Literal();
+    }
+
+    @Override
+    @MemoMismatches
+    Rule NumericSign() {
+        return super.NumericSign();
+    }
+}
@@ -5,6 +5,7 @@ import org.parboiled.trees.GraphUtils;
 import org.parboiled.trees.ImmutableGraphNode;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 public class Nodes {
 
@@ -29,7 +30,17 @@ public class Nodes {
     public static class CollectionNode extends NamedNode {
 
         public CollectionNode(FieldTypeNode fieldType) {
-            super((IdentifierNode) fieldType.fieldType);
+            super(elementIdentifier(fieldType));
+        }
+
+        // nested containers are named after their innermost element type
+        private static IdentifierNode elementIdentifier(FieldTypeNode fieldType) {
+            if (CollectionNode.class.isInstance(fieldType.fieldType)) {
+                return ((CollectionNode) fieldType.fieldType).identifier;
+            } else if (BaseTypeNode.class.isInstance(fieldType.fieldType)) {
+                return new IdentifierNode(((BaseTypeNode) fieldType.fieldType).name);
+            }
+            return (IdentifierNode) fieldType.fieldType;
         }
 
     }
@@ -54,11 +65,78 @@ public class Nodes {
         }
     }
 
+    /**
+     * The kind of values in a const list, or in the keys or values of a const map. Lists of
+     * one primitive kind are stored in arrays, and their nodes are created on access.
+     */
+    public enum ConstKind {
+        /** Only int constants, stored as longs */
+        INT,
+        /** Only double constants */
+        DOUBLE,
+        /** Only string literals */
+        LITERAL,
+        /** Other values, mixed values, or no values */
+        MIXED
+    }
+
     public static class ConstListNode extends AstNode {
+        /** A read-only view of the items; see {@link ConstKind} */
         public List<ConstListItemNode> values;
+        private final ConstTable table;
 
         public ConstListNode(List<ConstListItemNode> values) {
-            this.values = values;
+            this(ConstTable.of(values.stream().map(item -> item.value).collect(Collectors.toList())));
+        }
+
+        ConstListNode(ConstTable table) {
+            this.table = table;
+            this.values = new AbstractList<ConstListItemNode>() {
+                @Override
+                public ConstListItemNode get(int index) {
+                    return new ConstListItemNode(table.get(index));
+                }
+
+                @Override
+                public int size() {
+                    return table.size();
+                }
+            };
+        }
+
+        public ConstKind kind() {
+            return table.kind();
+        }
+
+        public int size() {
+            return table.size();
+        }
+
+        public AstNode get(int index) {
+            return table.get(index);
+        }
+
+        /** The value of an item of an {@link ConstKind#INT} list */
+        public long getLong(int index) {
+            return table.getLong(index);
+        }
+
+        /** The value of an item of an {@link ConstKind#INT} or {@link ConstKind#DOUBLE} list */
+        public double getDouble(int index) {
+            return table.getDouble(index);
+        }
+
+        /** The value of an item of a {@link ConstKind#LITERAL} list, without its quotes */
+        public String getLiteral(int index) {
+            return table.getLiteral(index);
+        }
+
+        ConstTable table() {
+            return table;
+        }
+
+        public String toString() {
+            return String.format("Const List: %s[%d]", kind(), size());
         }
     }
 
@@ -95,10 +173,67 @@ public class Nodes {
     }
 
     public static class ConstMapNode extends AstNode {
+        /** A read-only view of the entries; see {@link ConstKind} */
         public List<ConstMapEntryNode> mappings;
+        private final ConstTable keys;
+        private final ConstTable values;
 
         ConstMapNode(List<ConstMapEntryNode> mappings) {
-            this.mappings = mappings;
+            this.keys = ConstTable.of(mappings.stream().map(entry -> entry.key).collect(Collectors.toList()));
+            this.values = ConstTable.of(mappings.stream().map(entry -> entry.value).collect(Collectors.toList()));
+            this.mappings = new AbstractList<ConstMapEntryNode>() {
+                @Override
+                public ConstMapEntryNode get(int index) {
+                    return new ConstMapEntryNode(keys.get(index), values.get(index));
+                }
+
+                @Override
+                public int size() {
+                    return keys.size();
+                }
+            };
+        }
+
+        public ConstKind keyKind() {
+            return keys.kind();
+        }
+
+        public ConstKind valueKind() {
+            return values.kind();
+        }
+
+        ConstTable keyTable() {
+            return keys;
+        }
+
+        ConstTable valueTable() {
+            return values;
+        }
+
+        public int size() {
+            return keys.size();
+        }
+
+        /**
+         * Looks up the value of an int key. Lookups use a hash index built on the first lookup,
+         * and the last entry wins if a key is repeated.
+         */
+        public Optional<AstNode> get(long key) {
+            return lookup(key);
+        }
+
+        /** Looks up the value of a string literal key (without quotes), or an identifier key */
+        public Optional<AstNode> get(String key) {
+            return lookup(key);
+        }
+
+        private Optional<AstNode> lookup(Object key) {
+            int index = keys.indexOf(key);
+            return index < 0 ? Optional.empty() : Optional.of(values.get(index));
+        }
+
+        public String toString() {
+            return String.format("Const Map: %s -> %s[%d]", keyKind(), valueKind(), size());
         }
     }
 
@@ -165,8 +300,8 @@ public class Nodes {
     }
 
     public static class DocumentNode extends AstNode {
-        public List<HeaderNode> headers;
-        public List<DefinitionNode> definitions;
+        public final List<HeaderNode> headers;
+        public final List<DefinitionNode> definitions;
 
         @Override
         public java.util.List<AstNode> getChildren() {
@@ -183,6 +318,12 @@ public class Nodes {
             Collections.reverse(definitions);
         }
 
+        // the lists of a frozen document, which are in order already
+        DocumentNode(SegmentedList<HeaderNode> headers, SegmentedList<DefinitionNode> definitions) {
+            this.headers = headers;
+            this.definitions = definitions;
+        }
+
         public void addDefinitions(List<DefinitionNode> definitions_) {
             if (definitions_.size() > 0) {
                 this.definitions.addAll(definitions_);
@@ -226,11 +367,108 @@ public class Nodes {
         public String printTree() {
             return GraphUtils.printTree(this, new ToStringFormatter<AstNode>());
         }
+
+        /**
+         * An immutable copy of this document that can be shared by any number of threads. Structs,
+         * unions, exceptions, services and enums are copied with immutable lists of their members;
+         * the nodes below them are shared with this document, which stays as it is.
+         */
+        public FrozenDocumentNode freeze() {
+            List<DefinitionNode> frozen = new ArrayList<>(definitions.size());
+            for (DefinitionNode definition : definitions) {
+                frozen.add(freezeMembers(definition));
+            }
+            return new FrozenDocumentNode(SegmentedList.of(headers), SegmentedList.of(frozen));
+        }
+
+        // a shallow copy of a definition with members, whose member list cannot change
+        private static DefinitionNode freezeMembers(DefinitionNode definition) {
+            AstNode node = definition.value;
+            NamedNode copy;
+            if (StructNode.class.isInstance(node)) {
+                StructNode struct = (StructNode) node;
+                copy = new StructNode(struct.identifier, SegmentedList.of(struct.fields));
+            } else if (UnionNode.class.isInstance(node)) {
+                UnionNode union = (UnionNode) node;
+                copy = new UnionNode(union.identifier, SegmentedList.of(union.fields));
+            } else if (ExceptionNode.class.isInstance(node)) {
+                ExceptionNode exception = (ExceptionNode) node;
+                copy = new ExceptionNode(exception.identifier, SegmentedList.of(exception.fields));
+            } else if (ServiceNode.class.isInstance(node)) {
+                // the constructor reverses the functions it is given, which are in order already
+                ServiceNode service = (ServiceNode) node;
+                ServiceNode serviceCopy = new ServiceNode(service.identifier, service.parent, new ArrayList<>());
+                serviceCopy.functions = SegmentedList.of(service.functions);
+                copy = serviceCopy;
+            } else if (EnumNode.class.isInstance(node)) {
+                EnumNode enumNode = (EnumNode) node;
+                copy = new EnumNode(enumNode.identifier, SegmentedList.of(enumNode.values));
+            } else if (SenumNode.class.isInstance(node)) {
+                SenumNode senum = (SenumNode) node;
+                copy = new SenumNode(senum.identifier, SegmentedList.of(senum.values));
+            } else {
+                return definition;
+            }
+            return new DefinitionNode(copy);
+        }
+    }
+
+    /**
+     * A document whose headers and definitions cannot change, made with {@link DocumentNode#freeze()}.
+     * Its lists, and the member lists of its definitions, are immutable and held in final fields,
+     * and {@link #merge} derives a document with the headers and definitions of others without
+     * copying them, e.g. to add the includes of a document.
+     *
+     * <p>The freeze stops at those lists: the nodes keep their public, non-final fields, so a
+     * frozen document relies on no one assigning them, and on being handed to other threads
+     * through a volatile field, a future or a lock, as the registry and the parser do. Freezing
+     * the fields themselves would change every node class of the public AST.
+     */
+    public static class FrozenDocumentNode extends DocumentNode {
+
+        FrozenDocumentNode(SegmentedList<HeaderNode> headers, SegmentedList<DefinitionNode> definitions) {
+            super(headers, definitions);
+        }
+
+        /** The headers and definitions of this document followed by those of the given documents */
+        public FrozenDocumentNode merge(List<FrozenDocumentNode> documents) {
+            if (documents.isEmpty()) {
+                return this;
+            }
+            List<SegmentedList<? extends HeaderNode>> headers = new ArrayList<>(documents.size() + 1);
+            List<SegmentedList<? extends DefinitionNode>> definitions = new ArrayList<>(documents.size() + 1);
+            headers.add(SegmentedList.of(this.headers));
+            definitions.add(SegmentedList.of(this.definitions));
+            for (FrozenDocumentNode document : documents) {
+                headers.add(SegmentedList.of(document.headers));
+                definitions.add(SegmentedList.of(document.definitions));
+            }
+            return new FrozenDocumentNode(SegmentedList.concat(headers), SegmentedList.concat(definitions));
+        }
+
+        @Override
+        public void addDefinitions(List<DefinitionNode> definitions_) {
+            throw new UnsupportedOperationException("A frozen document cannot be modified, merge it instead");
+        }
+
+        @Override
+        public void addHeaders(List<HeaderNode> headers_) {
+            throw new UnsupportedOperationException("A frozen document cannot be modified, merge it instead");
+        }
+
+        @Override
+        public FrozenDocumentNode freeze() {
+            return this;
+        }
     }
 
     public static class DoubleConstNode extends AstNode {
         public Double value;
 
+        public String toString() {
+            return String.format("Double Const: %s", value);
+        }
+
         DoubleConstNode(Double value) {
             this.value = value;
         }
@@ -262,7 +500,7 @@ public class Nodes {
         public String toString() {
             String val;
             if (value.isPresent()) {
-                val = String.format(" (%d)", value.get().value);
+                val = String.format(" (%d)", value.get().longValue);
             } else {
                 val = "";
             }
@@ -304,7 +542,7 @@ public class Nodes {
             }
 
             if (id.isPresent()) {
-                idStr = String.format("%d: ", id.get().value);
+                idStr = String.format("%d: ", id.get().longValue);
             } else {
                 idStr = "";
             }
@@ -449,10 +687,17 @@ public class Nodes {
     }
 
     public static class IntConstNode extends AstNode {
+        /** The value, or null if it does not fit an int; {@link #longValue} always holds it */
         public Integer value;
+        public long longValue;
 
-        IntConstNode(Integer value) {
-            this.value = value;
+        public String toString() {
+            return String.format("Int Const: %s", longValue);
+        }
+
+        IntConstNode(long value) {
+            this.value = value == (int) value ? (int) value : null;
+            this.longValue = value;
         }
     }
 
@@ -0,0 +1,61 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.*;
+
+/**
+ * Receives the parts of a document while {@link ThriftAst} parses it, in source order. A
+ * listener that does not keep the definitions it is given parses documents of any size with
+ * the memory of a single definition. {@link AstBuilder} is the listener that builds the
+ * {@link DocumentNode} of {@link ThriftAst#parseThriftIdl}.
+ *
+ * <pre>
+ * new ThriftAst().parse(idl, new ParseListener() {
+ *     public void onStructEnd(NamedNode struct) {
+ *         index(struct);
+ *     }
+ * });
+ * </pre>
+ *
+ * Events are fired as soon as their part of the input has matched, so a document that fails
+ * to parse may have fired events for the definitions before the error, and fires them again
+ * while the parser reruns to report the error. Fields fire
+ * {@link #onField} wherever they occur: inside structs, unions and exceptions, and in the
+ * arguments and throws clauses of functions, before the {@link #onFunction} of their function.
+ */
+public interface ParseListener {
+
+    /** Ignores all events */
+    ParseListener NOOP = new ParseListener() {
+    };
+
+    default void onHeader(HeaderNode header) {
+    }
+
+    /** A struct, union or exception starts; the type is the class of its node */
+    default void onStructStart(Class<? extends NamedNode> type, String name) {
+    }
+
+    default void onField(FieldNode field) {
+    }
+
+    /** A struct, union or exception ends: a {@link StructNode}, {@link UnionNode} or {@link ExceptionNode} */
+    default void onStructEnd(NamedNode struct) {
+    }
+
+    default void onServiceStart(String name) {
+    }
+
+    default void onFunction(FunctionNode function) {
+    }
+
+    default void onServiceEnd(ServiceNode service) {
+    }
+
+    /** Every top-level definition, after the events of its parts */
+    default void onDefinition(DefinitionNode definition) {
+    }
+
+    /** The whole input matched */
+    default void onDocumentEnd() {
+    }
+}
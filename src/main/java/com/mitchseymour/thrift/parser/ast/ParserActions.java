@@ -1,8 +1,10 @@
 package com.mitchseymour.thrift.parser.ast;
 
 import com.mitchseymour.thrift.parser.ast.Nodes.*;
+import com.mitchseymour.thrift.parser.metrics.Metrics;
 import org.parboiled.Action;
 import org.parboiled.Context;
+import org.parboiled.support.StringVar;
 import org.parboiled.support.ValueStack;
 
 import java.util.ArrayList;
@@ -11,87 +13,115 @@ import java.util.List;
 import java.util.Optional;
 
 /**
- * Actions for manipulating the Parboiled value stack.
+ * Actions for manipulating the Parboiled value stack. Completed headers and definitions are
+ * handed to the listener of the current run instead of staying on the stack.
  */
 class ParserActions {
 
-    Action pop() {
+    // set by ThriftAst for the duration of a run; the actions belong to a single thread's rule tree
+    ParseListener listener = ParseListener.NOOP;
+
+    // Every action is timed under the name of the method that created it. The rule tree, and
+    // with it every action, is built once per thread, so the name is only looked up once.
+    private static Action timed(Action action) {
+        String name = Metrics.ACTION + action.getClass().getEnclosingMethod().getName();
         return new Action() {
+            @Override
+            public boolean run(Context context) {
+                long start = Metrics.start();
+                try {
+                    return action.run(context);
+                } finally {
+                    Metrics.stop(name, start);
+                }
+            }
+        };
+    }
+
+    Action pop() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
                 valueStack.pop();
                 return true;
             }
-        };
+        });
     }
 
-    // This is a helper node. It exists for the sole purpose of separating the argument fields
-    // of a ThrowsNode from the preceding function arguments
+    // This is a helper node. It separates the argument fields of a ThrowsNode from the preceding
+    // function arguments, and marks where the items of a const list or map start
     Action pushInterrupt() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
                 valueStack.push(new InterruptNode());
                 return true;
             }
-        };
+        });
     }
 
     Action pushDocumentNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
-                List<HeaderNode> headers = new ArrayList<>();
-                List<DefinitionNode> definitions = new ArrayList<>();
-                ValueStack valueStack = context.getValueStack();
-                while (valueStack.size() > 0) {
-                    AstNode value = (AstNode) valueStack.pop();
-                    if (HeaderNode.class.isInstance(value)) {
-                        headers.add((HeaderNode) value);
-                    } else if (DefinitionNode.class.isInstance(value)) {
-                        definitions.add((DefinitionNode) value);
-                    } else {
-                        valueStack.push(value);
-                        break;
-                    }
-                }
-                DocumentNode node = new DocumentNode(headers, definitions);
-                valueStack.push(node);
+                // the headers and definitions went to the listener as they were parsed
+                listener.onDocumentEnd();
                 return true;
             }
-        };
+        });
+    }
+
+    Action fireStructStart(Class<? extends NamedNode> type, StringVar name) {
+        return timed(new Action() {
+            @Override
+            public boolean run(Context context) {
+                // the matched name includes the whitespace after it
+                listener.onStructStart(type, name.get().trim());
+                return true;
+            }
+        });
+    }
+
+    Action fireServiceStart(StringVar name) {
+        return timed(new Action() {
+            @Override
+            public boolean run(Context context) {
+                listener.onServiceStart(name.get().trim());
+                return true;
+            }
+        });
     }
 
     Action pushHeaderNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
                 AstNode value = (AstNode) valueStack.pop();
                 HeaderNode node = new HeaderNode(value);
-                valueStack.push(node);
+                listener.onHeader(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushDefinitionNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
                 NamedNode definition = (NamedNode) valueStack.pop();
                 DefinitionNode node = new DefinitionNode(definition);
-                valueStack.push(node);
+                listener.onDefinition(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushIncludeNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -99,24 +129,25 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushCppIncludeNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
-                String name = (String) valueStack.pop();
-                CppIncludeNode node = new CppIncludeNode(name);
+                // the name without its quotes
+                String literal = ((LiteralNode) valueStack.pop()).value;
+                CppIncludeNode node = new CppIncludeNode(literal.substring(1, literal.length() - 1));
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushGeneralNamespaceNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -126,11 +157,11 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushPhpNamespaceNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -139,11 +170,11 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushXsdNamespaceNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -152,11 +183,11 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushStCategoryNamespaceNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -165,11 +196,11 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushStPrefixNamespaceNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -178,11 +209,11 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushConstNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -193,11 +224,11 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushTypedefNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -207,17 +238,17 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushEnumNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 List<EnumValueNode> values = new ArrayList<>();
                 ValueStack valueStack = context.getValueStack();
                 IdentifierNode identifier = (IdentifierNode) valueStack.pop();
-                while (valueStack.size() > 0) {
+                while (!valueStack.isEmpty()) {
                     AstNode value = (AstNode) valueStack.pop();
                     if (EnumValueNode.class.isInstance(value)) {
                         values.add((EnumValueNode) value);
@@ -231,11 +262,11 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushEnumValueNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -253,31 +284,36 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushSenumNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
+                // the literals were pushed after the name
+                List<LiteralNode> values = new ArrayList<>();
+                while (LiteralNode.class.isInstance(valueStack.peek())) {
+                    values.add((LiteralNode) valueStack.pop());
+                }
+                Collections.reverse(values);
                 IdentifierNode identifier = (IdentifierNode) valueStack.pop();
-                List<LiteralNode> values = (List<LiteralNode>) valueStack.pop();
                 SenumNode node = new SenumNode(identifier, values);
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushStructNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 List<FieldNode> fields = new ArrayList<>();
                 ValueStack valueStack = context.getValueStack();
                 IdentifierNode identifier = (IdentifierNode) valueStack.pop();
-                while (valueStack.size() > 0) {
+                while (!valueStack.isEmpty()) {
                     AstNode value = (AstNode) valueStack.pop();
                     if (FieldNode.class.isInstance(value)) {
                         fields.add((FieldNode) value);
@@ -288,20 +324,21 @@ class ParserActions {
                 }
                 Collections.reverse(fields);
                 StructNode node = new StructNode(identifier, fields);
+                listener.onStructEnd(node);
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushUnionNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 List<FieldNode> fields = new ArrayList<>();
                 ValueStack valueStack = context.getValueStack();
                 IdentifierNode identifier = (IdentifierNode) valueStack.pop();
-                while (valueStack.size() > 0) {
+                while (!valueStack.isEmpty()) {
                     AstNode value = (AstNode) valueStack.pop();
                     if (FieldNode.class.isInstance(value)) {
                         fields.add((FieldNode) value);
@@ -311,20 +348,21 @@ class ParserActions {
                     }
                 }
                 UnionNode node = new UnionNode(identifier, fields);
+                listener.onStructEnd(node);
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushExceptionNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 List<FieldNode> fields = new ArrayList<>();
                 ValueStack valueStack = context.getValueStack();
                 IdentifierNode identifier = (IdentifierNode) valueStack.pop();
-                while (valueStack.size() > 0) {
+                while (!valueStack.isEmpty()) {
                     AstNode value = (AstNode) valueStack.pop();
                     if (FieldNode.class.isInstance(value)) {
                         fields.add((FieldNode) value);
@@ -334,14 +372,15 @@ class ParserActions {
                     }
                 }
                 ExceptionNode node = new ExceptionNode(identifier, fields);
+                listener.onStructEnd(node);
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushServiceNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 List<FunctionNode> functions = new ArrayList<>();
@@ -349,13 +388,7 @@ class ParserActions {
                 IdentifierNode identifier = (IdentifierNode) valueStack.pop();
                 Optional<IdentifierNode> parent;
 
-                if (IntConstNode.class.isInstance(valueStack.peek())) {
-                    parent = Optional.of((IdentifierNode) valueStack.pop());
-                } else {
-                    parent = Optional.empty();
-                }
-
-                while (valueStack.size() > 0) {
+                while (!valueStack.isEmpty()) {
                     AstNode value = (AstNode) valueStack.pop();
                     if (FunctionNode.class.isInstance(value)) {
                         functions.add((FunctionNode) value);
@@ -365,15 +398,23 @@ class ParserActions {
                     }
                 }
 
+                // the parent service of 'extends' was pushed before the functions
+                if (!valueStack.isEmpty() && IdentifierNode.class.isInstance(valueStack.peek())) {
+                    parent = Optional.of((IdentifierNode) valueStack.pop());
+                } else {
+                    parent = Optional.empty();
+                }
+
                 ServiceNode node = new ServiceNode(identifier, parent, functions);
+                listener.onServiceEnd(node);
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushFieldNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -390,7 +431,8 @@ class ParserActions {
                 IdentifierNode identifier = (IdentifierNode) valueStack.pop();
                 FieldTypeNode fieldType = (FieldTypeNode) valueStack.pop();
 
-                if (IntConstNode.class.isInstance(valueStack.peek())) {
+                // the field may be the first thing on the stack
+                if (!valueStack.isEmpty() && IntConstNode.class.isInstance(valueStack.peek())) {
                     id = Optional.of((IntConstNode) valueStack.pop());
                 } else {
                     id = Optional.empty();
@@ -399,14 +441,15 @@ class ParserActions {
                 XsdFieldOptionsNode xsdFieldOptions = null; // temporarily disabled
                 //XsdFieldOptionsNode xsdFieldOptions = (XsdFieldOptionsNode) valueStack.pop();
                 FieldNode node = new FieldNode(id, fieldType, identifier, value, xsdFieldOptions);
+                listener.onField(node);
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushXsdFieldOptionsNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -415,11 +458,11 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushXsdAttrsNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -428,11 +471,11 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushFunctionNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 List<FieldNode> arguments = new ArrayList<>();
@@ -447,7 +490,7 @@ class ParserActions {
                     throws_ = Optional.empty();
                 }
 
-                while (valueStack.size() > 0) {
+                while (!valueStack.isEmpty()) {
                     AstNode value = (AstNode) valueStack.pop();
                     if (FieldNode.class.isInstance(value)) {
                         arguments.add((FieldNode) value);
@@ -458,14 +501,15 @@ class ParserActions {
                 }
                 FunctionTypeNode functionType = (FunctionTypeNode) valueStack.pop();
                 FunctionNode node = new FunctionNode(functionType, identifier, arguments, throws_);
+                listener.onFunction(node);
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushFunctionTypeNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -474,16 +518,16 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushThrowsNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 List<FieldNode> fields = new ArrayList<>();
                 ValueStack valueStack = context.getValueStack();
-                while (valueStack.size() > 0) {
+                while (!valueStack.isEmpty()) {
                     AstNode value = (AstNode) valueStack.pop();
                     if (FieldNode.class.isInstance(value)) {
                         fields.add((FieldNode) value);
@@ -496,11 +540,11 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushFieldTypeNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -509,42 +553,43 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushBaseTypeNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 BaseTypeNode node = new BaseTypeNode(context.getMatch());
                 context.getValueStack().push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushMapTypeNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
+                // the value type was pushed last, so it sits above the key type
+                FieldTypeNode valueType = (FieldTypeNode) valueStack.pop();
+                FieldTypeNode keyType = (FieldTypeNode) valueStack.pop();
                 Optional<CppTypeNode> cppType;
-                if (CppTypeNode.class.isInstance(valueStack.peek())) {
+                if (!valueStack.isEmpty() && CppTypeNode.class.isInstance(valueStack.peek())) {
                     cppType = Optional.of((CppTypeNode) valueStack.pop());
                 } else {
                     cppType = Optional.empty();
                 }
-                FieldTypeNode keyType = (FieldTypeNode) valueStack.pop();
-                FieldTypeNode valueType = (FieldTypeNode) valueStack.pop();
                 MapTypeNode node = new MapTypeNode(keyType, valueType, cppType);
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushSetTypeNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -552,7 +597,7 @@ class ParserActions {
 
                 Optional<CppTypeNode> cppType;
 
-                if (CppTypeNode.class.isInstance(valueStack.peek())) {
+                if (!valueStack.isEmpty() && CppTypeNode.class.isInstance(valueStack.peek())) {
                     cppType = Optional.of((CppTypeNode) valueStack.pop());
                 } else {
                     cppType = Optional.empty();
@@ -562,33 +607,33 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushListTypeNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
-                FieldTypeNode fieldType = (FieldTypeNode) valueStack.pop();
-
                 Optional<CppTypeNode> cppType;
 
+                // unlike maps and sets, the cpp_type of a list follows its element type
                 if (CppTypeNode.class.isInstance(valueStack.peek())) {
                     cppType = Optional.of((CppTypeNode) valueStack.pop());
                 } else {
                     cppType = Optional.empty();
                 }
 
+                FieldTypeNode fieldType = (FieldTypeNode) valueStack.pop();
                 ListTypeNode node = new ListTypeNode(fieldType, cppType);
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushCppTypeNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -597,15 +642,15 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushConstValueNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
-                if (valueStack.size() > 0) {
+                if (!valueStack.isEmpty()) {
                     // pop whatever the match was
                     final AstNode value = (AstNode) valueStack.pop();
                     ConstValueNode node = new ConstValueNode(context.getMatch(), value);
@@ -613,93 +658,81 @@ class ParserActions {
                 }
                 return true;
             }
-        };
+        });
     }
 
     Action pushIntConstNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
-                Integer value = Integer.parseInt(context.getMatch());
+                long value = Long.parseLong(context.getMatch());
                 IntConstNode node = new IntConstNode(value);
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushDoubleConstNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
-                Double value = Double.parseDouble(valueStack.pop().toString());
+                Double value = Double.parseDouble(context.getMatch());
                 DoubleConstNode node = new DoubleConstNode(value);
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushConstListNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
-                List<ConstListItemNode> values = new ArrayList<>();
-                while (valueStack.size() > 0) {
+                List<AstNode> values = new ArrayList<>();
+                // pop the items down to the interrupt pushed at the start of the list
+                while (!valueStack.isEmpty()) {
                     AstNode value = (AstNode) valueStack.pop();
-                    if (ConstListItemNode.class.isInstance(value)) {
-                        values.add((ConstListItemNode) value);
-                    } else {
-                        valueStack.push(value);
+                    if (InterruptNode.class.isInstance(value)) {
                         break;
                     }
+                    values.add(value);
                 }
-                ConstListNode node = new ConstListNode(values);
-                valueStack.push(node);
-                return true;
-            }
-        };
-    }
-
-    Action pushConstListItemNode(Class nodeType) {
-        return new Action() {
-            @Override
-            public boolean run(Context context) {
-                ValueStack valueStack = context.getValueStack();
-                ConstListItemNode node = new ConstListItemNode((AstNode) valueStack.pop());
+                Collections.reverse(values);
+                ConstListNode node = new ConstListNode(ConstTable.of(values));
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushConstMapNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 List<ConstMapEntryNode> mappings = new ArrayList<>();
                 ValueStack<AstNode> valueStack = context.getValueStack();
-                while (valueStack.size() > 0) {
+                // pop the entries down to the interrupt pushed at the start of the map
+                while (!valueStack.isEmpty()) {
                     AstNode value = (AstNode) valueStack.pop();
-                    if (ConstMapEntryNode.class.isInstance(value)) {
-                        mappings.add((ConstMapEntryNode) value);
-                    } else {
-                        valueStack.push(value);
+                    if (InterruptNode.class.isInstance(value)) {
                         break;
                     }
+                    mappings.add((ConstMapEntryNode) value);
                 }
+                Collections.reverse(mappings);
                 ConstMapNode node = new ConstMapNode(mappings);
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushConstMapEntryNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 ValueStack valueStack = context.getValueStack();
@@ -709,28 +742,28 @@ class ParserActions {
                 valueStack.push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushIdentifierNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 IdentifierNode node = new IdentifierNode(context.getMatch());
                 context.getValueStack().push(node);
                 return true;
             }
-        };
+        });
     }
 
     Action pushLiteralNode() {
-        return new Action() {
+        return timed(new Action() {
             @Override
             public boolean run(Context context) {
                 LiteralNode node = new LiteralNode(context.getMatch().trim());
                 context.getValueStack().push(node);
                 return true;
             }
-        };
+        });
     }
 }
@@ -0,0 +1,114 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * An immutable list made of immutable array segments. Concatenating lists shares their
+ * segments instead of copying their elements, so a document merged with its includes costs a
+ * reference per included document rather than a copy of every header and definition. Lookups
+ * by index use a binary search over the segment offsets, and iteration walks the segments.
+ */
+final class SegmentedList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final SegmentedList<?> EMPTY = new SegmentedList<>(new Object[0][], new int[]{0});
+
+    private final Object[][] segments;
+    // the index of the first element of every segment, followed by the size
+    private final int[] offsets;
+
+    private SegmentedList(Object[][] segments, int[] offsets) {
+        this.segments = segments;
+        this.offsets = offsets;
+    }
+
+    /** A list of the given elements, which are copied unless they already are a segmented list */
+    @SuppressWarnings("unchecked")
+    static <T> SegmentedList<T> of(Collection<? extends T> elements) {
+        if (elements instanceof SegmentedList) {
+            return (SegmentedList<T>) elements;
+        }
+        if (elements.isEmpty()) {
+            return (SegmentedList<T>) EMPTY;
+        }
+        return new SegmentedList<>(new Object[][]{elements.toArray()}, new int[]{0, elements.size()});
+    }
+
+    /** The elements of all the given lists in order, sharing their segments */
+    @SuppressWarnings("unchecked")
+    static <T> SegmentedList<T> concat(List<SegmentedList<? extends T>> lists) {
+        int count = 0;
+        for (SegmentedList<? extends T> list : lists) {
+            count += list.segments.length;
+        }
+        Object[][] segments = new Object[count][];
+        int[] offsets = new int[count + 1];
+        int segment = 0;
+        for (SegmentedList<? extends T> list : lists) {
+            for (Object[] elements : list.segments) {
+                segments[segment] = elements;
+                offsets[segment + 1] = offsets[segment] + elements.length;
+                segment++;
+            }
+        }
+        return count == 0 ? (SegmentedList<T>) EMPTY : new SegmentedList<>(segments, offsets);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of %d", index, size()));
+        }
+        if (segments.length == 1) {
+            return (T) segments[0][index];
+        }
+        // segments are never empty, so the offsets are distinct
+        int segment = Arrays.binarySearch(offsets, index);
+        if (segment < 0) {
+            segment = -segment - 2;
+        }
+        return (T) segments[segment][index - offsets[segment]];
+    }
+
+    @Override
+    public int size() {
+        return offsets[offsets.length - 1];
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int segment = 0;
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (segment < segments.length && index == segments[segment].length) {
+                    segment++;
+                    index = 0;
+                }
+                return segment < segments.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (T) segments[segment][index++];
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action) {
+        for (Object[] elements : segments) {
+            for (Object element : elements) {
+                action.accept((T) element);
+            }
+        }
+    }
+}
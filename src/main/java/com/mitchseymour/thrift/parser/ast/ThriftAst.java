@@ -1,21 +1,37 @@
 package com.mitchseymour.thrift.parser.ast;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import com.mitchseymour.thrift.parser.ast.Nodes.*;
+import com.mitchseymour.thrift.parser.ParserClasses;
 import com.mitchseymour.thrift.parser.Preprocessor;
+import com.mitchseymour.thrift.parser.metrics.Metrics;
 import org.parboiled.*;
-import org.parboiled.annotations.BuildParseTree;
 import org.parboiled.parserunners.ReportingParseRunner;
 import org.parboiled.support.StringVar;
+import org.parboiled.support.ValueStack;
 import org.parboiled.support.ParsingResult;
 
 @SuppressWarnings({"InfiniteRecursion"})
-@BuildParseTree
 public class ThriftAst extends BaseParser<Object> {
 
     ParserActions actions = new ParserActions();
 
+    private final boolean memoizeMismatches;
+
+    public ThriftAst() {
+        this(false);
+    }
+
+    /**
+     * @param memoizeMismatches parse with {@link MemoizingThriftAst}, which memoizes the
+     *                          mismatches of the rules that are most often retried
+     */
+    public ThriftAst(boolean memoizeMismatches) {
+        this.memoizeMismatches = memoizeMismatches;
+    }
+
     @Override
     protected Rule fromStringLiteral(String string) {
         if (string.endsWith(" ")) {
@@ -33,7 +49,7 @@ public class ThriftAst extends BaseParser<Object> {
     /**
      * [1] Document ::=  Header* Definition*
      */
-    Rule Document() {
+    public Rule Document() {
         // Push 1 DocumentNode onto the value stack
         return Sequence(
                 WhiteSpace(),
@@ -204,6 +220,7 @@ public class ThriftAst extends BaseParser<Object> {
                 ACTION(constName.set(match())),
                 "= ",
                 ConstValue(),
+                WhiteSpace(),
                 Optional(ListSeparator()),
                 WhiteSpace(),
                 push(new IdentifierNode(constName.get())),
@@ -267,7 +284,7 @@ public class ThriftAst extends BaseParser<Object> {
                 "senum ",
                 Identifier(),
                 "{ ",
-                ZeroOrMore(Sequence(Literal(), Optional(ListSeparator()))),
+                ZeroOrMore(Sequence(Literal(), WhiteSpace(), Optional(ListSeparator()))),
                 "} ",
                 actions.pushSenumNode());
     }
@@ -283,6 +300,7 @@ public class ThriftAst extends BaseParser<Object> {
                 Identifier(),
                 actions.pop(),
                 ACTION(structName.set(match())),
+                actions.fireStructStart(StructNode.class, structName),
                 Optional("xsd_all "),
                 "{ ",
                 ZeroOrMore(Field()),
@@ -302,6 +320,7 @@ public class ThriftAst extends BaseParser<Object> {
                 Identifier(),
                 actions.pop(),
                 ACTION(unionName.set(match())),
+                actions.fireStructStart(UnionNode.class, unionName),
                 Optional("xsd_all "),
                 "{ ",
                 ZeroOrMore(Field()),
@@ -321,6 +340,7 @@ public class ThriftAst extends BaseParser<Object> {
                 Identifier(),
                 actions.pop(),
                 ACTION(exceptionName.set(match())),
+                actions.fireStructStart(ExceptionNode.class, exceptionName),
                 "{ ",
                 ZeroOrMore(Field()),
                 "} ",
@@ -339,6 +359,7 @@ public class ThriftAst extends BaseParser<Object> {
                 Identifier(),
                 actions.pop(),
                 ACTION(serviceName.set(match())),
+                actions.fireServiceStart(serviceName),
                 Optional(Inheritance()),
                 "{ ",
                 ZeroOrMore(Function()),
@@ -362,7 +383,7 @@ public class ThriftAst extends BaseParser<Object> {
                 Optional(FieldReq()),
                 FieldType(),  // pushes FieldType onto the value stack
                 Identifier(), // pushes Identifier onto the value stack
-                Optional(Sequence("= ", ConstValue())),
+                Optional(Sequence("= ", ConstValue(), WhiteSpace())),
                 //XsdFieldOptions(),
                 Optional(ListSeparator()),
                 WhiteSpace(),
@@ -534,7 +555,7 @@ public class ThriftAst extends BaseParser<Object> {
         return Sequence(
                 "map ",
                 Optional(CppType()),
-                "<",
+                "< ",
                 FieldType(),
                 ", ",
                 FieldType(),
@@ -550,7 +571,7 @@ public class ThriftAst extends BaseParser<Object> {
         return Sequence(
                 "set ",
                 Optional(CppType()),
-                "<",
+                "< ",
                 FieldType(),
                 "> ",
                 actions.pushSetTypeNode());
@@ -563,7 +584,7 @@ public class ThriftAst extends BaseParser<Object> {
         // Push 1 ListTypeNode onto the value stack
         return Sequence(
                 "list ",
-                "<",
+                "< ",
                 FieldType(),
                 "> ",
                 Optional(CppType()),
@@ -578,7 +599,8 @@ public class ThriftAst extends BaseParser<Object> {
         return Sequence(
                 "cpp_type ",
                 Literal(),
-                actions.pushCppTypeNode());
+                actions.pushCppTypeNode(),
+                WhiteSpace());
     }
 
     //================================================================================
@@ -591,16 +613,26 @@ public class ThriftAst extends BaseParser<Object> {
     Rule ConstValue() {
         // Push 1 ConstValue node onto the value stack
         return Sequence(
-                FirstOf(
-                        IntConstant(),
-                        DoubleConstant(),
-                        Literal(),
-                        Identifier(),
-                        ConstList(),
-                        ConstMap()),
+                NestedConstValue(),
                 actions.pushConstValueNode());
     }
 
+    /**
+     * A const value inside a const list or map. Unlike ConstValue, this does not keep the matched
+     * text, so every character of a nested literal is only copied once, by the outermost value.
+     */
+    Rule NestedConstValue() {
+        // Push 1 IntConstNode, DoubleConstNode, LiteralNode, IdentifierNode, ConstListNode
+        // or ConstMapNode onto the value stack
+        return FirstOf(
+                IntConstant(),
+                DoubleConstant(),
+                Literal(),
+                Identifier(),
+                ConstList(),
+                ConstMap());
+    }
+
     /**
      * [33] IntConstant ::=  ('+' | '-')? Digit+
      */
@@ -609,7 +641,9 @@ public class ThriftAst extends BaseParser<Object> {
         return Sequence(
                 Sequence(
                         Optional(NumericSign()),
-                        OneOrMore(Digit())),
+                        OneOrMore(Digit()),
+                        // leave the fraction and exponent of doubles to DoubleConstant
+                        TestNot(AnyOf(".eE"))),
                 actions.pushIntConstNode());
     }
 
@@ -621,15 +655,15 @@ public class ThriftAst extends BaseParser<Object> {
         return Sequence(
                 Sequence(
                         Optional(NumericSign()),
-                        ZeroOrMore(Digit()),
-                        Sequence('.', OneOrMore(Digit())),
-                        MaybeScientific()),
+                        FirstOf(
+                                Sequence(ZeroOrMore(Digit()), '.', OneOrMore(Digit()), Optional(Exponent())),
+                                Sequence(OneOrMore(Digit()), Exponent()))),
                 actions.pushDoubleConstNode());
     }
 
-    Rule MaybeScientific() {
-        // To do!!
-        return Optional(Sequence(FirstOf('E', 'e'), IntConstant()));
+    Rule Exponent() {
+        // No effect on value stack
+        return Sequence(AnyOf("eE"), Optional(NumericSign()), OneOrMore(Digit()));
     }
 
     Rule NumericSign() {
@@ -640,35 +674,22 @@ public class ThriftAst extends BaseParser<Object> {
      * [35] ConstList ::=  '[' (ConstValue ListSeparator?)* ']'
      */
     Rule ConstList() {
+        // Push 1 ConstListNode onto the value stack. The interrupt marks where the items of
+        // this list start, so nested lists only collect their own items.
         return Sequence(
                 "[ ",
-                // We can't use the ConstValue definition here because that definition
-                // uses a FirstOf expression (which is the proper method), but we cannot
-                // pass Rules with potentially empty values (like FirstOf...) to the
-                // ZeroOrMore matcher
-                Sequence(
-                        ZeroOrMore(Sequence(IntConstant(), Optional(ListSeparator()),
-                                actions.pushConstListItemNode(IntConstNode.class))),
-                        ZeroOrMore(Sequence(DoubleConstant(), Optional(ListSeparator()),
-                                actions.pushConstListItemNode(DoubleConstNode.class))),
-                        ZeroOrMore(Sequence(Literal(), Optional(ListSeparator()),
-                                actions.pushConstListItemNode(LiteralNode.class))),
-                        ZeroOrMore(Sequence(Identifier(), Optional(ListSeparator()),
-                                actions.pushConstListItemNode(IdentifierNode.class))),
-                        ZeroOrMore(Sequence(ConstList(), Optional(ListSeparator()),
-                                actions.pushConstListItemNode(ConstListNode.class))),
-                        ZeroOrMore(Sequence(ConstMap(), Optional(ListSeparator()),
-                                actions.pushConstListItemNode(ConstMapNode.class)))
-                        //ZeroOrMore(Sequence(DoubleConstant(), Optional(ListSeparator()))),
-                ),
+                actions.pushInterrupt(),
+                ZeroOrMore(ConstListItem()),
                 "] ",
                 actions.pushConstListNode());
     }
 
     Rule ConstListItem() {
-        // No effect on value stack
+        // Push the item value onto the value stack. ConstListNode keeps the values of
+        // primitive lists in arrays, so the items are not wrapped in nodes while parsing.
         return Sequence(
-                ConstValue(),
+                NestedConstValue(),
+                WhiteSpace(),
                 Optional(ListSeparator()));
     }
 
@@ -679,6 +700,7 @@ public class ThriftAst extends BaseParser<Object> {
         // Push 1 ConstMapNode onto the value stack
         return Sequence(
                 "{ ",
+                actions.pushInterrupt(),
                 ZeroOrMore(ConstMapEntry()),
                 "} ",
                 actions.pushConstMapNode());
@@ -687,11 +709,12 @@ public class ThriftAst extends BaseParser<Object> {
     Rule ConstMapEntry() {
         // Push 1 ConstMapEntryNode onto the value stack
         return Sequence(
-                ConstValue(),
+                NestedConstValue(),
                 WhiteSpace(),
                 ":",
                 WhiteSpace(),
-                ConstValue(),
+                NestedConstValue(),
+                WhiteSpace(),
                 Optional(ListSeparator()),
                 actions.pushConstMapEntryNode());
     }
@@ -790,13 +813,78 @@ public class ThriftAst extends BaseParser<Object> {
         return ZeroOrMore(AnyOf(" \n\r\t\f"));
     }
 
-    public Optional<DocumentNode> parseThriftIdl(String input) {
-        ThriftAst parser = Parboiled.createParser(ThriftAst.class);
+    // Parboiled parser instances keep per-run state, so a run borrows a rule tree that no other
+    // run is using and returns it afterwards. Building a rule tree costs far more than parsing a
+    // small file, so the trees are pooled rather than kept per thread: with a thread per task,
+    // every file would build one. The pools hold as many trees as runs were ever concurrent.
+    private static final Queue<Grammar> GRAMMARS = new ConcurrentLinkedQueue<>();
+    private static final Queue<Grammar> MEMOIZING_GRAMMARS = new ConcurrentLinkedQueue<>();
+
+    // a rule tree, and the actions its rules call
+    private static class Grammar {
+        final Rule document;
+        final ParserActions actions;
+
+        Grammar(ThriftAst parser) {
+            long start = Metrics.start();
+            this.document = parser.Document();
+            this.actions = parser.actions;
+            Metrics.stop(Metrics.PARSER_CREATE, start);
+        }
+    }
+
+    /**
+     * Runs the parser over the input and returns the raw result, including any parse errors.
+     * If the input matched, the value stack holds the DocumentNode.
+     */
+    public ParsingResult<?> parse(String input) {
+        AstBuilder builder = new AstBuilder();
+        ParsingResult<?> result = parse(input, builder);
+        if (result.matched) {
+            // the parser values are Objects, see BaseParser<Object>
+            @SuppressWarnings("unchecked")
+            ValueStack<Object> valueStack = (ValueStack<Object>) result.valueStack;
+            valueStack.push(builder.document());
+        }
+        return result;
+    }
+
+    /**
+     * Runs the parser over the input, passing the parts of the document to the listener as they
+     * are parsed instead of building the document. The value stack of the result is empty. A
+     * listener may parse other documents; such a nested run borrows another rule tree, since the
+     * outer run is still using its own.
+     */
+    public ParsingResult<?> parse(String input, ParseListener listener) {
         input = Preprocessor.stripComments(input);
-        ParsingResult<?> result = new ReportingParseRunner(parser.Document()).run(input);
+        Queue<Grammar> grammars = memoizeMismatches ? MEMOIZING_GRAMMARS : GRAMMARS;
+        Grammar grammar = grammars.poll();
+        if (grammar == null) {
+            grammar = new Grammar(memoizeMismatches
+                    ? ParserClasses.createParser(MemoizingThriftAst.class)
+                    : ParserClasses.createParser(ThriftAst.class));
+        }
+        grammar.actions.listener = listener;
+        try {
+            long start = Metrics.start();
+            ParsingResult<?> result = new ReportingParseRunner(grammar.document).run(input);
+            Metrics.stop(Metrics.PARSE, start);
+            Metrics.recordParse(input, result);
+            return result;
+        } finally {
+            grammar.actions.listener = ParseListener.NOOP;
+            grammars.offer(grammar);
+        }
+    }
+
+    public Optional<DocumentNode> parseThriftIdl(String input) {
+        return toDocument(parse(input));
+    }
+
+    public static Optional<DocumentNode> toDocument(ParsingResult<?> result) {
         // See if the last node is a DocumentNode
         Optional<DocumentNode> document;
-        if (result.valueStack.size() > 0) {
+        if (!result.valueStack.isEmpty()) {
             AstNode node = (AstNode) result.valueStack.pop();
             if (DocumentNode.class.isInstance(node)) {
                 document = Optional.of((DocumentNode) node);
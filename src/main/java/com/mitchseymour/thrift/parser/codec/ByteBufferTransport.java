@@ -0,0 +1,70 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only transport over a {@link ByteBuffer}, e.g. a slice of a memory-mapped file.
+ * Heap buffers expose their backing array so that protocols can read strings without copying.
+ */
+public class ByteBufferTransport extends TTransport {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferTransport(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void open() {}
+
+    @Override
+    public void close() {}
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws TTransportException {
+        int remaining = buffer.remaining();
+        if (remaining == 0) {
+            throw new TTransportException(TTransportException.END_OF_FILE, "No more data available");
+        }
+        int count = Math.min(len, remaining);
+        buffer.get(buf, off, count);
+        return count;
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) throws TTransportException {
+        throw new TTransportException("ByteBufferTransport is read-only");
+    }
+
+    @Override
+    public byte[] getBuffer() {
+        return buffer.hasArray() ? buffer.array() : null;
+    }
+
+    @Override
+    public int getBufferPosition() {
+        return buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0;
+    }
+
+    @Override
+    public int getBytesRemainingInBuffer() {
+        return buffer.hasArray() ? buffer.remaining() : -1;
+    }
+
+    @Override
+    public void consumeBuffer(int len) {
+        buffer.position(buffer.position() + len);
+    }
+
+    public int remaining() {
+        return buffer.remaining();
+    }
+}
@@ -0,0 +1,211 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import com.mitchseymour.thrift.parser.codec.Schema.Type;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A batch of records decoded into one primitive column per scalar field.
+ * Fields of nested structs are flattened into dotted paths, e.g. {@code bff.forest_animal}.
+ */
+public class ColumnBatch {
+
+    private final List<Column> columns;
+    private final Map<String, Column> byPath = new HashMap<>();
+    private int size;
+
+    ColumnBatch(List<Column> columns) {
+        this.columns = Collections.unmodifiableList(columns);
+        for (Column column : columns) {
+            byPath.put(column.path, column);
+        }
+    }
+
+    /** The number of records in the batch */
+    public int size() {
+        return size;
+    }
+
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    public List<Column> columns() {
+        return columns;
+    }
+
+    public Column column(String path) {
+        Column column = byPath.get(path);
+        if (column == null) {
+            throw new RuntimeException(String.format("Column not found: %s", path));
+        }
+        return column;
+    }
+
+    //================================================================================
+    // Column classes
+    //================================================================================
+
+    public static abstract class Column {
+        public final String path;
+        public final Type type;
+        // bit i is set if the field was present in record i
+        long[] present = new long[0];
+
+        Column(String path, Type type) {
+            this.path = path;
+            this.type = type;
+        }
+
+        public boolean isNull(int row) {
+            int word = row >>> 6;
+            return word >= present.length || (present[word] & (1L << row)) == 0;
+        }
+
+        /** The null bitmap, with bit {@code row % 64} of word {@code row / 64} set for present values */
+        public long[] presentBits() {
+            return present;
+        }
+
+        void setPresent(int row) {
+            present[row >>> 6] |= 1L << row;
+        }
+
+        void ensureCapacity(int rows) {
+            int words = (rows + 63) >>> 6;
+            if (present.length < words) {
+                present = Arrays.copyOf(present, Math.max(words, present.length * 2));
+            }
+        }
+
+        public String toString() {
+            return String.format("%s %s", type, path);
+        }
+    }
+
+    /** Holds bool, byte, i16, i32 and enum values. Booleans are stored as 0 or 1. */
+    public static class IntColumn extends Column {
+        public int[] values = new int[0];
+
+        IntColumn(String path, Type type) {
+            super(path, type);
+        }
+
+        public int get(int row) {
+            return values[row];
+        }
+
+        void set(int row, int value) {
+            values[row] = value;
+            setPresent(row);
+        }
+
+        @Override
+        void ensureCapacity(int rows) {
+            super.ensureCapacity(rows);
+            if (values.length < rows) {
+                values = Arrays.copyOf(values, Math.max(rows, values.length * 2));
+            }
+        }
+    }
+
+    public static class LongColumn extends Column {
+        public long[] values = new long[0];
+
+        LongColumn(String path, Type type) {
+            super(path, type);
+        }
+
+        public long get(int row) {
+            return values[row];
+        }
+
+        void set(int row, long value) {
+            values[row] = value;
+            setPresent(row);
+        }
+
+        @Override
+        void ensureCapacity(int rows) {
+            super.ensureCapacity(rows);
+            if (values.length < rows) {
+                values = Arrays.copyOf(values, Math.max(rows, values.length * 2));
+            }
+        }
+    }
+
+    public static class DoubleColumn extends Column {
+        public double[] values = new double[0];
+
+        DoubleColumn(String path, Type type) {
+            super(path, type);
+        }
+
+        public double get(int row) {
+            return values[row];
+        }
+
+        void set(int row, double value) {
+            values[row] = value;
+            setPresent(row);
+        }
+
+        @Override
+        void ensureCapacity(int rows) {
+            super.ensureCapacity(rows);
+            if (values.length < rows) {
+                values = Arrays.copyOf(values, Math.max(rows, values.length * 2));
+            }
+        }
+    }
+
+    /**
+     * Holds string and binary values. The bytes of record i are
+     * {@code bytes[offsets[i]]} up to (excluding) {@code bytes[offsets[i + 1]]}.
+     */
+    public static class BinaryColumn extends Column {
+        public int[] offsets = new int[1];
+        public byte[] bytes = new byte[0];
+
+        BinaryColumn(String path, Type type) {
+            super(path, type);
+        }
+
+        public String getString(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            return new String(bytes, offsets[row], offsets[row + 1] - offsets[row], StandardCharsets.UTF_8);
+        }
+
+        public ByteBuffer getBytes(int row) {
+            return ByteBuffer.wrap(bytes, offsets[row], offsets[row + 1] - offsets[row]).asReadOnlyBuffer();
+        }
+
+        void set(int row, ByteBuffer value) {
+            int start = offsets[row];
+            int length = value.remaining();
+            if (bytes.length < start + length) {
+                bytes = Arrays.copyOf(bytes, Math.max(start + length, bytes.length * 2));
+            }
+            value.duplicate().get(bytes, start, length);
+            offsets[row + 1] = start + length;
+            setPresent(row);
+        }
+
+        // absent values are zero length, so every row needs its end offset filled in
+        void skip(int row) {
+            offsets[row + 1] = offsets[row];
+        }
+
+        @Override
+        void ensureCapacity(int rows) {
+            super.ensureCapacity(rows);
+            if (offsets.length < rows + 1) {
+                offsets = Arrays.copyOf(offsets, Math.max(rows + 1, offsets.length * 2));
+            }
+        }
+    }
+}
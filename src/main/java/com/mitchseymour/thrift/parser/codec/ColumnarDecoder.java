@@ -0,0 +1,207 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import com.mitchseymour.thrift.parser.codec.ColumnBatch.*;
+import com.mitchseymour.thrift.parser.codec.Schema.*;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.*;
+import org.apache.thrift.transport.TMemoryInputTransport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes a stream of same-typed records directly into a {@link ColumnBatch}, without
+ * creating an object per record. Scalar fields (including those of nested structs) get
+ * a primitive column each; container fields are not columnar and are skipped.
+ */
+public class ColumnarDecoder {
+
+    private final StructType struct;
+
+    public ColumnarDecoder(StructType struct) {
+        this.struct = struct;
+    }
+
+    public static ColumnarDecoder forStruct(DocumentNode document, String structName) {
+        return new ColumnarDecoder(Schema.of(document).struct(structName));
+    }
+
+    /**
+     * Reads the given number of records from the protocol.
+     */
+    public ColumnBatch decode(TProtocol in, int records) throws TException {
+        List<Column> columns = new ArrayList<>();
+        StructPlan plan = new StructPlan(struct, "", columns, new ArrayList<>());
+        ColumnBatch batch = new ColumnBatch(columns);
+        for (Column column : columns) {
+            column.ensureCapacity(records);
+        }
+        for (int row = 0; row < records; row++) {
+            readStruct(in, plan, row);
+            endRow(columns, row);
+        }
+        batch.setSize(records);
+        return batch;
+    }
+
+    /**
+     * Reads binary protocol records until the input is exhausted.
+     */
+    public ColumnBatch decode(byte[] data) throws TException {
+        TMemoryInputTransport transport = new TMemoryInputTransport(data);
+        TProtocol in = new TBinaryProtocol(transport);
+        List<Column> columns = new ArrayList<>();
+        StructPlan plan = new StructPlan(struct, "", columns, new ArrayList<>());
+        ColumnBatch batch = new ColumnBatch(columns);
+        int row = 0;
+        while (transport.getBytesRemainingInBuffer() > 0) {
+            for (Column column : columns) {
+                column.ensureCapacity(row + 1);
+            }
+            readStruct(in, plan, row);
+            endRow(columns, row);
+            row++;
+        }
+        batch.setSize(row);
+        return batch;
+    }
+
+    private void endRow(List<Column> columns, int row) {
+        for (Column column : columns) {
+            if (BinaryColumn.class.isInstance(column) && column.isNull(row)) {
+                ((BinaryColumn) column).skip(row);
+            }
+        }
+    }
+
+    private void readStruct(TProtocol in, StructPlan plan, int row) throws TException {
+        in.readStructBegin();
+        while (true) {
+            TField wireField = in.readFieldBegin();
+            if (wireField.type == TType.STOP) {
+                break;
+            }
+            int index = plan.index(wireField.id);
+            if (index < 0 || plan.fields[index].type.ttype != wireField.type) {
+                TProtocolUtil.skip(in, wireField.type);
+            } else if (plan.children[index] != null) {
+                readStruct(in, plan.children[index], row);
+            } else if (plan.columns[index] != null) {
+                readValue(in, wireField.type, plan.columns[index], row);
+            } else {
+                TProtocolUtil.skip(in, wireField.type);
+            }
+            in.readFieldEnd();
+        }
+        in.readStructEnd();
+    }
+
+    private void readValue(TProtocol in, byte wireType, Column column, int row) throws TException {
+        switch (wireType) {
+            case TType.BOOL:
+                ((IntColumn) column).set(row, in.readBool() ? 1 : 0);
+                break;
+            case TType.BYTE:
+                ((IntColumn) column).set(row, in.readByte());
+                break;
+            case TType.I16:
+                ((IntColumn) column).set(row, in.readI16());
+                break;
+            case TType.I32:
+                ((IntColumn) column).set(row, in.readI32());
+                break;
+            case TType.I64:
+                ((LongColumn) column).set(row, in.readI64());
+                break;
+            case TType.DOUBLE:
+                ((DoubleColumn) column).set(row, in.readDouble());
+                break;
+            case TType.STRING:
+                ((BinaryColumn) column).set(row, in.readBinary());
+                break;
+            default:
+                TProtocolUtil.skip(in, wireType);
+        }
+    }
+
+    /**
+     * The columns or nested plans of one struct, in the order of the struct's fields.
+     */
+    private static class StructPlan {
+        private static final int DENSE_ID_LIMIT = 1024;
+
+        final Field[] fields;
+        final Column[] columns;
+        final StructPlan[] children;
+        final int[] indexById;
+
+        StructPlan(StructType struct, String prefix, List<Column> out, List<StructType> parents) {
+            List<Field> structFields = struct.fields();
+            fields = structFields.toArray(new Field[0]);
+            columns = new Column[fields.length];
+            children = new StructPlan[fields.length];
+
+            parents.add(struct);
+            int maxId = -1;
+            for (int i = 0; i < fields.length; i++) {
+                Field field = fields[i];
+                String path = prefix + field.name;
+                if (StructType.class.isInstance(field.type)) {
+                    // recursive structs cannot be flattened into a fixed set of columns
+                    if (!parents.contains(field.type)) {
+                        children[i] = new StructPlan((StructType) field.type, path + ".", out, parents);
+                    }
+                } else {
+                    columns[i] = column(path, field.type);
+                    if (columns[i] != null) {
+                        out.add(columns[i]);
+                    }
+                }
+                if (field.id >= 0 && field.id < DENSE_ID_LIMIT) {
+                    maxId = Math.max(maxId, field.id);
+                }
+            }
+            parents.remove(parents.size() - 1);
+
+            indexById = new int[maxId + 1];
+            Arrays.fill(indexById, -1);
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i].id >= 0 && fields[i].id < DENSE_ID_LIMIT) {
+                    indexById[fields[i].id] = i;
+                }
+            }
+        }
+
+        int index(short id) {
+            if (id >= 0 && id < indexById.length) {
+                return indexById[id];
+            }
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i].id == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static Column column(String path, Type type) {
+            switch (type.ttype) {
+                case TType.BOOL:
+                case TType.BYTE:
+                case TType.I16:
+                case TType.I32:
+                    return new IntColumn(path, type);
+                case TType.I64:
+                    return new LongColumn(path, type);
+                case TType.DOUBLE:
+                    return new DoubleColumn(path, type);
+                case TType.STRING:
+                    return new BinaryColumn(path, type);
+                default:
+                    return null;
+            }
+        }
+    }
+}
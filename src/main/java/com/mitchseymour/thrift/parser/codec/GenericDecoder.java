@@ -0,0 +1,119 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import com.mitchseymour.thrift.parser.codec.Schema.*;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Decodes records into maps keyed by field name. Strings are decoded as {@link String},
+ * binary fields as {@code byte[]}, enums as the name of their value, lists as {@link List},
+ * sets as {@link Set}, maps as {@link Map} and nested structs as nested maps.
+ * Fields that are not declared in the IDL are skipped.
+ */
+public class GenericDecoder implements RecordDecoder<Map<String, Object>> {
+
+    private final StructType struct;
+
+    public GenericDecoder(StructType struct) {
+        this.struct = struct;
+    }
+
+    public static GenericDecoder forStruct(DocumentNode document, String structName) {
+        return new GenericDecoder(Schema.of(document).struct(structName));
+    }
+
+    @Override
+    public Map<String, Object> decode(TProtocol in) throws TException {
+        return readStruct(in, struct);
+    }
+
+    private Map<String, Object> readStruct(TProtocol in, StructType type) throws TException {
+        Map<String, Object> values = new LinkedHashMap<>();
+        in.readStructBegin();
+        while (true) {
+            TField wireField = in.readFieldBegin();
+            if (wireField.type == TType.STOP) {
+                break;
+            }
+            if (type == null) {
+                values.put(Short.toString(wireField.id), readValue(in, wireField.type, null));
+            } else {
+                Field field = type.field(wireField.id);
+                if (field == null) {
+                    TProtocolUtil.skip(in, wireField.type);
+                } else {
+                    values.put(field.name, readValue(in, wireField.type, field.type));
+                }
+            }
+            in.readFieldEnd();
+        }
+        in.readStructEnd();
+        return values;
+    }
+
+    private Object readValue(TProtocol in, byte wireType, Type type) throws TException {
+        if (type != null && type.ttype != wireType) {
+            type = null;
+        }
+        switch (wireType) {
+            case TType.BOOL:
+                return in.readBool();
+            case TType.BYTE:
+                return in.readByte();
+            case TType.I16:
+                return in.readI16();
+            case TType.I32:
+                int value = in.readI32();
+                String name = EnumType.class.isInstance(type) ? ((EnumType) type).name(value) : null;
+                return name == null ? (Object) value : name;
+            case TType.I64:
+                return in.readI64();
+            case TType.DOUBLE:
+                return in.readDouble();
+            case TType.STRING:
+                ByteBuffer buffer = in.readBinary();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return type == BaseType.BINARY ? bytes : new String(bytes, StandardCharsets.UTF_8);
+            case TType.STRUCT:
+                return readStruct(in, (StructType) type);
+            case TType.LIST:
+                TList list = in.readListBegin();
+                Type elementType = type == null ? null : ((ListType) type).elementType;
+                List<Object> elements = new ArrayList<>(list.size);
+                for (int i = 0; i < list.size; i++) {
+                    elements.add(readValue(in, list.elemType, elementType));
+                }
+                in.readListEnd();
+                return elements;
+            case TType.SET:
+                TSet set = in.readSetBegin();
+                Type memberType = type == null ? null : ((SetType) type).elementType;
+                Set<Object> members = new LinkedHashSet<>();
+                for (int i = 0; i < set.size; i++) {
+                    members.add(readValue(in, set.elemType, memberType));
+                }
+                in.readSetEnd();
+                return members;
+            case TType.MAP:
+                TMap map = in.readMapBegin();
+                Type keyType = type == null ? null : ((MapType) type).keyType;
+                Type valueType = type == null ? null : ((MapType) type).valueType;
+                Map<Object, Object> entries = new LinkedHashMap<>();
+                for (int i = 0; i < map.size; i++) {
+                    Object key = readValue(in, map.keyType, keyType);
+                    entries.put(key, readValue(in, map.valueType, valueType));
+                }
+                in.readMapEnd();
+                return entries;
+            default:
+                TProtocolUtil.skip(in, wireType);
+                return null;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import com.mitchseymour.thrift.parser.codec.Schema.*;
+import com.mitchseymour.thrift.parser.json.JsonWriter;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.*;
+import org.apache.thrift.transport.TMemoryInputTransport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Transcodes serialized Thrift records into JSON without materializing them.
+ * Protocol tokens are read one at a time and written straight to a {@link JsonWriter},
+ * using the field names, enum names and container types of the parsed IDL.
+ *
+ * Fields that are not declared in the IDL are skipped. Values whose wire type does
+ * not match the declared type are written as if the type was unknown, i.e. structs
+ * are keyed by field id and enums are written as numbers.
+ */
+public class JsonTranscoder {
+
+    private final StructType struct;
+
+    public JsonTranscoder(StructType struct) {
+        this.struct = struct;
+    }
+
+    public static JsonTranscoder forStruct(DocumentNode document, String structName) {
+        return new JsonTranscoder(Schema.of(document).struct(structName));
+    }
+
+    /**
+     * Transcodes a single record serialized with the binary protocol.
+     */
+    public void transcode(byte[] record, OutputStream out) throws TException, IOException {
+        JsonWriter writer = new JsonWriter(out);
+        transcode(new TBinaryProtocol(new TMemoryInputTransport(record)), writer);
+        writer.flush();
+    }
+
+    /**
+     * Reads one record from the protocol and writes it as a JSON object.
+     */
+    public void transcode(TProtocol in, JsonWriter out) throws TException, IOException {
+        writeStruct(in, struct, out);
+    }
+
+    private void writeStruct(TProtocol in, StructType type, JsonWriter out) throws TException, IOException {
+        in.readStructBegin();
+        out.beginObject();
+        while (true) {
+            TField wireField = in.readFieldBegin();
+            if (wireField.type == TType.STOP) {
+                break;
+            }
+            if (type == null) {
+                out.name(Short.toString(wireField.id));
+                writeValue(in, wireField.type, null, out);
+            } else {
+                Field field = type.field(wireField.id);
+                if (field == null) {
+                    TProtocolUtil.skip(in, wireField.type);
+                } else {
+                    out.name(field.nameUtf8);
+                    writeValue(in, wireField.type, field.type, out);
+                }
+            }
+            in.readFieldEnd();
+        }
+        out.endObject();
+        in.readStructEnd();
+    }
+
+    private void writeValue(TProtocol in, byte wireType, Type type, JsonWriter out) throws TException, IOException {
+        if (type != null && type.ttype != wireType) {
+            type = null;
+        }
+        switch (wireType) {
+            case TType.BOOL:
+                out.value(in.readBool());
+                break;
+            case TType.BYTE:
+                out.value(in.readByte());
+                break;
+            case TType.I16:
+                out.value(in.readI16());
+                break;
+            case TType.I32:
+                writeI32(in.readI32(), type, out);
+                break;
+            case TType.I64:
+                out.value(in.readI64());
+                break;
+            case TType.DOUBLE:
+                out.value(in.readDouble());
+                break;
+            case TType.STRING:
+                ByteBuffer bytes = in.readBinary();
+                if (type == BaseType.BINARY) {
+                    out.value(new String(Base64.getEncoder().encode(bytes).array(), StandardCharsets.US_ASCII));
+                } else {
+                    out.value(bytes);
+                }
+                break;
+            case TType.STRUCT:
+                writeStruct(in, (StructType) type, out);
+                break;
+            case TType.LIST:
+                TList list = in.readListBegin();
+                writeElements(in, list.elemType, list.size,
+                        type == null ? null : ((ListType) type).elementType, out);
+                in.readListEnd();
+                break;
+            case TType.SET:
+                TSet set = in.readSetBegin();
+                writeElements(in, set.elemType, set.size,
+                        type == null ? null : ((SetType) type).elementType, out);
+                in.readSetEnd();
+                break;
+            case TType.MAP:
+                writeMap(in, (MapType) type, out);
+                break;
+            default:
+                TProtocolUtil.skip(in, wireType);
+                out.nullValue();
+        }
+    }
+
+    private void writeI32(int value, Type type, JsonWriter out) throws IOException {
+        String name = EnumType.class.isInstance(type) ? ((EnumType) type).name(value) : null;
+        if (name == null) {
+            out.value(value);
+        } else {
+            out.value(name);
+        }
+    }
+
+    private void writeElements(TProtocol in, byte wireType, int size, Type type, JsonWriter out) throws TException, IOException {
+        out.beginArray();
+        for (int i = 0; i < size; i++) {
+            writeValue(in, wireType, type, out);
+        }
+        out.endArray();
+    }
+
+    private void writeMap(TProtocol in, MapType type, JsonWriter out) throws TException, IOException {
+        TMap map = in.readMapBegin();
+        Type keyType = type == null || type.keyType.ttype != map.keyType ? null : type.keyType;
+        Type valueType = type == null ? null : type.valueType;
+        if (isScalar(map.keyType)) {
+            // scalar keys are written as object keys
+            out.beginObject();
+            for (int i = 0; i < map.size; i++) {
+                writeKey(in, map.keyType, keyType, out);
+                writeValue(in, map.valueType, valueType, out);
+            }
+            out.endObject();
+        } else {
+            // anything else becomes a list of [key, value] pairs
+            out.beginArray();
+            for (int i = 0; i < map.size; i++) {
+                out.beginArray();
+                writeValue(in, map.keyType, keyType, out);
+                writeValue(in, map.valueType, valueType, out);
+                out.endArray();
+            }
+            out.endArray();
+        }
+        in.readMapEnd();
+    }
+
+    private void writeKey(TProtocol in, byte wireType, Type type, JsonWriter out) throws TException, IOException {
+        switch (wireType) {
+            case TType.BOOL:
+                out.name(Boolean.toString(in.readBool()));
+                break;
+            case TType.BYTE:
+                out.name(Byte.toString(in.readByte()));
+                break;
+            case TType.I16:
+                out.name(Short.toString(in.readI16()));
+                break;
+            case TType.I32:
+                int value = in.readI32();
+                String name = EnumType.class.isInstance(type) ? ((EnumType) type).name(value) : null;
+                out.name(name == null ? Integer.toString(value) : name);
+                break;
+            case TType.I64:
+                out.name(Long.toString(in.readI64()));
+                break;
+            case TType.DOUBLE:
+                out.name(Double.toString(in.readDouble()));
+                break;
+            default:
+                out.name(in.readString());
+        }
+    }
+
+    private static boolean isScalar(byte wireType) {
+        return wireType != TType.STRUCT
+                && wireType != TType.LIST
+                && wireType != TType.SET
+                && wireType != TType.MAP;
+    }
+}
@@ -0,0 +1,14 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocol;
+
+/**
+ * Decodes one record from a protocol. Implementations must be safe to call from
+ * several threads at once, since frames of a {@link RecordFile} are decoded in parallel.
+ */
+@FunctionalInterface
+public interface RecordDecoder<T> {
+
+    T decode(TProtocol in) throws TException;
+}
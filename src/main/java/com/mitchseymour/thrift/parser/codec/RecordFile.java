@@ -0,0 +1,245 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A memory-mapped file of length-prefixed records. Every frame is a 4 byte big-endian
+ * length followed by that many bytes of serialized record, as written by a framed transport.
+ *
+ * The frame index is built in a single pass when the file is opened. Frames can then be
+ * decoded in parallel through {@link #stream(RecordDecoder, boolean)}.
+ */
+public class RecordFile implements Closeable {
+
+    // a single mapping cannot exceed 2GB, so larger files are mapped in segments
+    static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final TProtocolFactory protocolFactory;
+
+    private int size = 0;
+    private int[] frameSegment = new int[1024];
+    private int[] frameOffset = new int[1024];
+    private int[] frameLength = new int[1024];
+
+    private RecordFile(FileChannel channel, TProtocolFactory protocolFactory, long maxSegmentSize) throws IOException {
+        this.channel = channel;
+        this.protocolFactory = protocolFactory;
+        index(maxSegmentSize);
+    }
+
+    public static RecordFile open(Path path) throws IOException {
+        return open(path, new TBinaryProtocol.Factory());
+    }
+
+    public static RecordFile open(Path path, TProtocolFactory protocolFactory) throws IOException {
+        return open(path, protocolFactory, MAX_SEGMENT_SIZE);
+    }
+
+    static RecordFile open(Path path, TProtocolFactory protocolFactory, long maxSegmentSize) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new RecordFile(channel, protocolFactory, maxSegmentSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void index(long maxSegmentSize) throws IOException {
+        long fileSize = channel.size();
+        long segmentStart = 0;
+        while (segmentStart < fileSize) {
+            long segmentSize = Math.min(maxSegmentSize, fileSize - segmentStart);
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentSize);
+            int position = 0;
+            while (position + 4 <= segmentSize) {
+                int length = segment.getInt(position);
+                if (length < 0) {
+                    throw new IOException(String.format(
+                            "Corrupt frame length %d at offset %d", length, segmentStart + position));
+                }
+                if (position + 4L + length > segmentSize) {
+                    break;
+                }
+                addFrame(segments.size(), position + 4, length);
+                position += 4 + length;
+            }
+            if (segmentStart + position < fileSize && segmentStart + segmentSize == fileSize) {
+                throw new IOException(String.format("Truncated frame at offset %d", segmentStart + position));
+            }
+            if (position == 0) {
+                throw new IOException(String.format(
+                        "Frame at offset %d does not fit into a single mapping", segmentStart));
+            }
+            segments.add(segment);
+            // the next segment starts at the first frame that did not fit into this one
+            segmentStart += position;
+        }
+    }
+
+    private void addFrame(int segment, int offset, int length) {
+        if (size == frameSegment.length) {
+            int capacity = size * 2;
+            frameSegment = Arrays.copyOf(frameSegment, capacity);
+            frameOffset = Arrays.copyOf(frameOffset, capacity);
+            frameLength = Arrays.copyOf(frameLength, capacity);
+        }
+        frameSegment[size] = segment;
+        frameOffset[size] = offset;
+        frameLength[size] = length;
+        size++;
+    }
+
+    /** The number of frames in the file */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the payload of the given frame, without its length prefix */
+    public ByteBuffer frame(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Frame %d of %d", index, size));
+        }
+        ByteBuffer frame = segments.get(frameSegment[index]).duplicate();
+        frame.limit(frameOffset[index] + frameLength[index]);
+        frame.position(frameOffset[index]);
+        return frame.slice();
+    }
+
+    public <T> T decode(int index, RecordDecoder<T> decoder) {
+        try {
+            return decoder.decode(protocolFactory.getProtocol(new ByteBufferTransport(frame(index))));
+        } catch (TException e) {
+            throw new RuntimeException(String.format("Could not decode frame %d", index), e);
+        }
+    }
+
+    /**
+     * Returns a spliterator over the decoded frames. Unordered spliterators let parallel
+     * streams hand out frames without preserving the encounter order of the file.
+     */
+    public <T> Spliterator<T> spliterator(RecordDecoder<T> decoder, boolean ordered) {
+        return new FrameSpliterator<>(decoder, 0, size, ordered);
+    }
+
+    /**
+     * Returns a parallel stream of the decoded frames.
+     */
+    public <T> Stream<T> stream(RecordDecoder<T> decoder, boolean ordered) {
+        Stream<T> stream = StreamSupport.stream(spliterator(decoder, ordered), true);
+        return ordered ? stream : stream.unordered();
+    }
+
+    /**
+     * Returns a parallel stream of records decoded as maps, using the given struct of the document.
+     */
+    public Stream<Map<String, Object>> stream(DocumentNode document, String structName, boolean ordered) {
+        return stream(GenericDecoder.forStruct(document, structName), ordered);
+    }
+
+    /**
+     * Returns the indexes of the frames that match the filter, evaluated in parallel.
+     */
+    public IntStream matching(RecordFilter filter) {
+        return IntStream.range(0, size).parallel().filter(index -> matches(index, filter));
+    }
+
+    /**
+     * Returns a parallel stream of the frames that match the filter. Frames that do not
+     * match are rejected after reading only the fields involved in the filter.
+     */
+    public <T> Stream<T> stream(RecordDecoder<T> decoder, RecordFilter filter, boolean ordered) {
+        IntStream indexes = matching(filter);
+        return (ordered ? indexes : indexes.unordered()).mapToObj(index -> decode(index, decoder));
+    }
+
+    public boolean matches(int index, RecordFilter filter) {
+        try {
+            return filter.matches(protocolFactory.getProtocol(new ByteBufferTransport(frame(index))));
+        } catch (TException e) {
+            throw new RuntimeException(String.format("Could not filter frame %d", index), e);
+        }
+    }
+
+    /**
+     * Closes the file. Mapped segments are released once they are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private class FrameSpliterator<T> implements Spliterator<T> {
+        private final RecordDecoder<T> decoder;
+        private final boolean ordered;
+        private int origin;
+        private final int fence;
+
+        FrameSpliterator(RecordDecoder<T> decoder, int origin, int fence, boolean ordered) {
+            this.decoder = decoder;
+            this.origin = origin;
+            this.fence = fence;
+            this.ordered = ordered;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (origin >= fence) {
+                return false;
+            }
+            action.accept(decode(origin++, decoder));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            while (origin < fence) {
+                action.accept(decode(origin++, decoder));
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (origin + fence) >>> 1;
+            if (middle <= origin) {
+                return null;
+            }
+            FrameSpliterator<T> prefix = new FrameSpliterator<>(decoder, origin, middle, ordered);
+            origin = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - origin;
+        }
+
+        @Override
+        public int characteristics() {
+            int characteristics = SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+            return ordered ? characteristics | ORDERED : characteristics;
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import com.mitchseymour.thrift.parser.codec.Schema.*;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates field conditions directly on serialized records. Only the fields named by the
+ * conditions are read; all other fields are skipped, and reading stops as soon as every
+ * involved field has been seen. For example:
+ *
+ * <pre>
+ * RecordFilter filter = RecordFilter.compile(document, "Monkey",
+ *         field("age").gt(10).and(field("ancestry").eq("ANCIENT_APE")));
+ * </pre>
+ *
+ * Comparisons against a field that is absent from the record are false. Integer fields compare
+ * exactly against float and double literals, so {@code lt(10.5)} matches 10.
+ * Nested struct fields are addressed with dotted paths, e.g. {@code bff.water_animal}.
+ */
+public class RecordFilter {
+
+    private final StructPlan plan;
+    private final Test test;
+    private final int slots;
+
+    private RecordFilter(StructType struct, Condition condition) {
+        Compiler compiler = new Compiler(struct);
+        this.test = condition.compile(compiler);
+        this.plan = compiler.root;
+        this.slots = compiler.slots.size();
+    }
+
+    public static RecordFilter compile(StructType struct, Condition condition) {
+        return new RecordFilter(struct, condition);
+    }
+
+    public static RecordFilter compile(DocumentNode document, String structName, Condition condition) {
+        return compile(Schema.of(document).struct(structName), condition);
+    }
+
+    public static FieldRef field(String path) {
+        return new FieldRef(path);
+    }
+
+    /**
+     * Reads the involved fields of one record and evaluates the conditions. The protocol
+     * is left wherever reading stopped, so it should be positioned on a frame of its own.
+     */
+    public boolean matches(TProtocol in) throws TException {
+        Values values = new Values(slots);
+        if (slots > 0) {
+            read(in, plan, values);
+        }
+        return test.test(values);
+    }
+
+    /** Evaluates the conditions on a record serialized with the binary protocol */
+    public boolean matches(ByteBuffer record) throws TException {
+        return matches(new TBinaryProtocol(new ByteBufferTransport(record)));
+    }
+
+    // returns true once all involved fields have been read
+    private boolean read(TProtocol in, StructPlan plan, Values values) throws TException {
+        in.readStructBegin();
+        while (true) {
+            TField wireField = in.readFieldBegin();
+            if (wireField.type == TType.STOP) {
+                break;
+            }
+            Slot slot = plan.slots.get(wireField.id);
+            StructPlan child = plan.children.get(wireField.id);
+            if (slot != null && slot.field.type.ttype == wireField.type) {
+                readSlot(in, slot, values);
+                if (values.found == slots) {
+                    return true;
+                }
+            } else if (child != null && wireField.type == TType.STRUCT) {
+                if (read(in, child, values)) {
+                    return true;
+                }
+            } else {
+                TProtocolUtil.skip(in, wireField.type);
+            }
+            in.readFieldEnd();
+        }
+        in.readStructEnd();
+        return false;
+    }
+
+    private void readSlot(TProtocol in, Slot slot, Values values) throws TException {
+        switch (slot.field.type.ttype) {
+            case TType.BOOL:
+                values.longs[slot.index] = in.readBool() ? 1 : 0;
+                break;
+            case TType.BYTE:
+                values.longs[slot.index] = in.readByte();
+                break;
+            case TType.I16:
+                values.longs[slot.index] = in.readI16();
+                break;
+            case TType.I32:
+                values.longs[slot.index] = in.readI32();
+                break;
+            case TType.I64:
+                values.longs[slot.index] = in.readI64();
+                break;
+            case TType.DOUBLE:
+                values.doubles[slot.index] = in.readDouble();
+                break;
+            case TType.STRING:
+                values.bytes[slot.index] = in.readBinary();
+                break;
+            default:
+                throw new IllegalStateException(String.format("Not a scalar field: %s", slot.field));
+        }
+        if (!values.present[slot.index]) {
+            values.present[slot.index] = true;
+            values.found++;
+        }
+    }
+
+    //================================================================================
+    // Conditions
+    //================================================================================
+
+    public static abstract class Condition {
+
+        public Condition and(Condition other) {
+            Condition self = this;
+            return new Condition() {
+                @Override
+                Test compile(Compiler compiler) {
+                    Test left = self.compile(compiler);
+                    Test right = other.compile(compiler);
+                    return values -> left.test(values) && right.test(values);
+                }
+            };
+        }
+
+        public Condition or(Condition other) {
+            Condition self = this;
+            return new Condition() {
+                @Override
+                Test compile(Compiler compiler) {
+                    Test left = self.compile(compiler);
+                    Test right = other.compile(compiler);
+                    return values -> left.test(values) || right.test(values);
+                }
+            };
+        }
+
+        public Condition negate() {
+            Condition self = this;
+            return new Condition() {
+                @Override
+                Test compile(Compiler compiler) {
+                    Test test = self.compile(compiler);
+                    return values -> !test.test(values);
+                }
+            };
+        }
+
+        abstract Test compile(Compiler compiler);
+    }
+
+    public static class FieldRef {
+        private final String path;
+
+        FieldRef(String path) {
+            this.path = path;
+        }
+
+        public Condition eq(Object value) {
+            return comparison(Operator.EQ, value);
+        }
+
+        public Condition ne(Object value) {
+            return comparison(Operator.NE, value);
+        }
+
+        public Condition gt(Object value) {
+            return comparison(Operator.GT, value);
+        }
+
+        public Condition ge(Object value) {
+            return comparison(Operator.GE, value);
+        }
+
+        public Condition lt(Object value) {
+            return comparison(Operator.LT, value);
+        }
+
+        public Condition le(Object value) {
+            return comparison(Operator.LE, value);
+        }
+
+        public Condition isNull() {
+            return presence(false);
+        }
+
+        public Condition isNotNull() {
+            return presence(true);
+        }
+
+        private Condition presence(boolean present) {
+            return new Condition() {
+                @Override
+                Test compile(Compiler compiler) {
+                    int index = compiler.slot(path).index;
+                    return values -> values.present[index] == present;
+                }
+            };
+        }
+
+        private Condition comparison(Operator operator, Object literal) {
+            return new Condition() {
+                @Override
+                Test compile(Compiler compiler) {
+                    Slot slot = compiler.slot(path);
+                    int index = slot.index;
+                    Type type = slot.field.type;
+                    switch (type.ttype) {
+                        case TType.BOOL:
+                        case TType.BYTE:
+                        case TType.I16:
+                        case TType.I32:
+                        case TType.I64:
+                            if (Float.class.isInstance(literal) || Double.class.isInstance(literal)) {
+                                double fractional = toDouble(type, literal);
+                                return values -> values.present[index]
+                                        && operator.apply(compareLong(values.longs[index], fractional));
+                            }
+                            long expected = toLong(type, literal);
+                            return values -> values.present[index]
+                                    && operator.apply(Long.compare(values.longs[index], expected));
+                        case TType.DOUBLE:
+                            double expectedDouble = toNumber(type, literal).doubleValue();
+                            return values -> values.present[index]
+                                    && operator.apply(Double.compare(values.doubles[index], expectedDouble));
+                        case TType.STRING:
+                            byte[] expectedBytes = toBytes(type, literal);
+                            return values -> values.present[index]
+                                    && operator.apply(compareBytes(values.bytes[index], expectedBytes));
+                        default:
+                            throw new RuntimeException(
+                                    String.format("Cannot compare %s of type %s", path, type));
+                    }
+                }
+            };
+        }
+
+        private long toLong(Type type, Object literal) {
+            if (EnumType.class.isInstance(type) && String.class.isInstance(literal)) {
+                Integer value = ((EnumType) type).value((String) literal);
+                if (value == null) {
+                    throw new RuntimeException(String.format("%s is not a value of %s", literal, type));
+                }
+                return value;
+            }
+            if (Boolean.class.isInstance(literal)) {
+                return ((Boolean) literal) ? 1 : 0;
+            }
+            return toNumber(type, literal).longValue();
+        }
+
+        private double toDouble(Type type, Object literal) {
+            double value = toNumber(type, literal).doubleValue();
+            if (Double.isNaN(value)) {
+                throw new RuntimeException(String.format("Cannot compare %s of type %s to %s", path, type, literal));
+            }
+            return value;
+        }
+
+        private Number toNumber(Type type, Object literal) {
+            if (!Number.class.isInstance(literal)) {
+                throw new RuntimeException(String.format("Cannot compare %s of type %s to %s", path, type, literal));
+            }
+            return (Number) literal;
+        }
+
+        private byte[] toBytes(Type type, Object literal) {
+            if (String.class.isInstance(literal)) {
+                return ((String) literal).getBytes(StandardCharsets.UTF_8);
+            } else if (byte[].class.isInstance(literal)) {
+                return (byte[]) literal;
+            }
+            throw new RuntimeException(String.format("Cannot compare %s of type %s to %s", path, type, literal));
+        }
+    }
+
+    private enum Operator {
+        EQ, NE, GT, GE, LT, LE;
+
+        boolean apply(int comparison) {
+            switch (this) {
+                case EQ: return comparison == 0;
+                case NE: return comparison != 0;
+                case GT: return comparison > 0;
+                case GE: return comparison >= 0;
+                case LT: return comparison < 0;
+                default: return comparison <= 0;
+            }
+        }
+    }
+
+    // compares exactly, where converting either side would round large longs or truncate fractions
+    private static int compareLong(long actual, double expected) {
+        if (expected >= 0x1p63) {
+            return -1;
+        } else if (expected < -0x1p63) {
+            return 1;
+        }
+        double floor = Math.floor(expected);
+        int comparison = Long.compare(actual, (long) floor);
+        return comparison != 0 || floor == expected ? comparison : -1;
+    }
+
+    private static int compareBytes(ByteBuffer actual, byte[] expected) {
+        int length = Math.min(actual.remaining(), expected.length);
+        int base = actual.position();
+        for (int i = 0; i < length; i++) {
+            int comparison = Integer.compare(actual.get(base + i) & 0xff, expected[i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(actual.remaining(), expected.length);
+    }
+
+    //================================================================================
+    // Compilation
+    //================================================================================
+
+    @FunctionalInterface
+    interface Test {
+        boolean test(Values values);
+    }
+
+    private static class Values {
+        final long[] longs;
+        final double[] doubles;
+        final ByteBuffer[] bytes;
+        final boolean[] present;
+        int found = 0;
+
+        Values(int slots) {
+            longs = new long[slots];
+            doubles = new double[slots];
+            bytes = new ByteBuffer[slots];
+            present = new boolean[slots];
+        }
+    }
+
+    private static class Slot {
+        final int index;
+        final Field field;
+
+        Slot(int index, Field field) {
+            this.index = index;
+            this.field = field;
+        }
+    }
+
+    private static class StructPlan {
+        final StructType struct;
+        final Map<Short, Slot> slots = new HashMap<>();
+        final Map<Short, StructPlan> children = new HashMap<>();
+
+        StructPlan(StructType struct) {
+            this.struct = struct;
+        }
+    }
+
+    static class Compiler {
+        final StructPlan root;
+        final Map<String, Slot> byPath = new HashMap<>();
+        final List<Slot> slots = new ArrayList<>();
+
+        Compiler(StructType struct) {
+            this.root = new StructPlan(struct);
+        }
+
+        Slot slot(String path) {
+            Slot slot = byPath.get(path);
+            if (slot != null) {
+                return slot;
+            }
+            StructPlan plan = root;
+            String[] names = path.split("\\.");
+            for (int i = 0; i < names.length; i++) {
+                Field field = plan.struct.field(names[i]);
+                if (field == null) {
+                    throw new RuntimeException(String.format("Field not found: %s", path));
+                }
+                if (i == names.length - 1) {
+                    if (!isScalar(field.type)) {
+                        throw new RuntimeException(String.format("Not a scalar field: %s", path));
+                    }
+                    slot = new Slot(slots.size(), field);
+                    slots.add(slot);
+                    plan.slots.put(field.id, slot);
+                } else {
+                    if (!StructType.class.isInstance(field.type)) {
+                        throw new RuntimeException(String.format("Not a struct field: %s", names[i]));
+                    }
+                    StructPlan child = plan.children.get(field.id);
+                    if (child == null) {
+                        child = new StructPlan((StructType) field.type);
+                        plan.children.put(field.id, child);
+                    }
+                    plan = child;
+                }
+            }
+            byPath.put(path, slot);
+            return slot;
+        }
+
+        private static boolean isScalar(Type type) {
+            return type.ttype != TType.STRUCT
+                    && type.ttype != TType.LIST
+                    && type.ttype != TType.SET
+                    && type.ttype != TType.MAP;
+        }
+    }
+}
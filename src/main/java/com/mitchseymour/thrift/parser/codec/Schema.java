@@ -0,0 +1,413 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import com.mitchseymour.thrift.parser.ast.AstJson;
+import com.mitchseymour.thrift.parser.ast.Nodes.*;
+import com.mitchseymour.thrift.parser.json.JsonWriter;
+import org.apache.thrift.protocol.TType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Resolves the types declared in a parsed document into the wire-level shapes
+ * used by the binary codecs. Resolved structs and enums are cached, so a single
+ * Schema can be shared by any number of decoders.
+ */
+public class Schema {
+
+    private final Map<String, NamedNode> definitions = new HashMap<>();
+    private final Map<String, Type> resolved = new HashMap<>();
+
+    public Schema(DocumentNode document) {
+        for (DefinitionNode definition : document.definitions) {
+            // the first definition wins, since included definitions are appended to the document
+            definitions.putIfAbsent(definition.value.getName(), definition.value);
+        }
+    }
+
+    public static Schema of(DocumentNode document) {
+        return new Schema(document);
+    }
+
+    public synchronized StructType struct(String name) {
+        Type type = named(name);
+        if (!StructType.class.isInstance(type)) {
+            throw new RuntimeException(String.format("Struct not found: %s", name));
+        }
+        return (StructType) type;
+    }
+
+    public synchronized EnumType enumType(String name) {
+        Type type = named(name);
+        if (!EnumType.class.isInstance(type)) {
+            throw new RuntimeException(String.format("Enum not found: %s", name));
+        }
+        return (EnumType) type;
+    }
+
+    public synchronized Type resolve(FieldTypeNode fieldType) {
+        return resolveNode(fieldType.fieldType);
+    }
+
+    private Type resolveNode(AstNode node) {
+        if (FieldTypeNode.class.isInstance(node)) {
+            return resolveNode(((FieldTypeNode) node).fieldType);
+        } else if (IdentifierNode.class.isInstance(node)) {
+            return named(((IdentifierNode) node).name);
+        } else if (BaseTypeNode.class.isInstance(node)) {
+            return named(((BaseTypeNode) node).name.trim());
+        } else if (ListTypeNode.class.isInstance(node)) {
+            return new ListType(resolveNode(((ListTypeNode) node).fieldType));
+        } else if (SetTypeNode.class.isInstance(node)) {
+            return new SetType(resolveNode(((SetTypeNode) node).fieldType));
+        } else if (MapTypeNode.class.isInstance(node)) {
+            MapTypeNode map = (MapTypeNode) node;
+            return new MapType(resolveNode(map.keyType), resolveNode(map.valueType));
+        }
+        throw new RuntimeException(String.format("Unsupported type: %s", node));
+    }
+
+    private Type named(String name) {
+        BaseType base = BaseType.forName(name);
+        if (base != null) {
+            return base;
+        }
+        Type type = resolved.get(name);
+        if (type != null) {
+            return type;
+        }
+        NamedNode definition = definitions.get(name);
+        if (definition == null && name.lastIndexOf('.') >= 0) {
+            // types from included files may be qualified with the include name
+            return named(name.substring(name.lastIndexOf('.') + 1));
+        }
+        if (definition == null) {
+            throw new RuntimeException(String.format("Type not found: %s", name));
+        }
+
+        if (EnumNode.class.isInstance(definition)) {
+            type = new EnumType((EnumNode) definition);
+            resolved.put(name, type);
+        } else if (TypedefNode.class.isInstance(definition)) {
+            type = named(((TypedefNode) definition).defType.name.trim());
+            resolved.put(name, type);
+        } else if (StructNode.class.isInstance(definition)) {
+            type = resolveStruct(name, ((StructNode) definition).fields, StructType.Kind.STRUCT);
+        } else if (UnionNode.class.isInstance(definition)) {
+            type = resolveStruct(name, ((UnionNode) definition).fields, StructType.Kind.UNION);
+        } else if (ExceptionNode.class.isInstance(definition)) {
+            type = resolveStruct(name, ((ExceptionNode) definition).fields, StructType.Kind.EXCEPTION);
+        } else {
+            throw new RuntimeException(String.format("Not a data type: %s", name));
+        }
+        return type;
+    }
+
+    private StructType resolveStruct(String name, List<FieldNode> fieldNodes, StructType.Kind kind) {
+        // register the struct before resolving its fields so recursive types terminate
+        StructType struct = new StructType(name, kind);
+        resolved.put(name, struct);
+        List<Field> fields = new ArrayList<>();
+        for (FieldNode fieldNode : fieldNodes) {
+            if (!fieldNode.id.isPresent()) {
+                throw new RuntimeException(
+                        String.format("Field %s.%s has no field id", name, fieldNode.getName()));
+            }
+            long id = fieldNode.id.get().longValue;
+            if (id < Short.MIN_VALUE || id > Short.MAX_VALUE) {
+                throw new RuntimeException(
+                        String.format("Field %s.%s has id %d, which does not fit an i16", name, fieldNode.getName(), id));
+            }
+            fields.add(new Field((short) id, fieldNode.getName(), resolve(fieldNode.fieldType), fieldNode));
+        }
+        struct.setFields(fields);
+        return struct;
+    }
+
+    //================================================================================
+    // Resolved types
+    //================================================================================
+
+    public static class Type {
+        /** The {@link TType} constant this type is written as */
+        public final byte ttype;
+        public final String name;
+
+        Type(byte ttype, String name) {
+            this.ttype = ttype;
+            this.name = name;
+        }
+
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static class BaseType extends Type {
+        public static final BaseType BOOL = new BaseType(TType.BOOL, "bool");
+        public static final BaseType BYTE = new BaseType(TType.BYTE, "byte");
+        public static final BaseType I16 = new BaseType(TType.I16, "i16");
+        public static final BaseType I32 = new BaseType(TType.I32, "i32");
+        public static final BaseType I64 = new BaseType(TType.I64, "i64");
+        public static final BaseType DOUBLE = new BaseType(TType.DOUBLE, "double");
+        public static final BaseType STRING = new BaseType(TType.STRING, "string");
+        public static final BaseType BINARY = new BaseType(TType.STRING, "binary");
+
+        BaseType(byte ttype, String name) {
+            super(ttype, name);
+        }
+
+        public boolean isBinary() {
+            return this == BINARY;
+        }
+
+        static BaseType forName(String name) {
+            switch (name) {
+                case "bool": return BOOL;
+                case "byte":
+                case "i8": return BYTE;
+                case "i16": return I16;
+                case "i32": return I32;
+                case "i64": return I64;
+                case "double": return DOUBLE;
+                case "string": return STRING;
+                case "binary": return BINARY;
+                default: return null;
+            }
+        }
+    }
+
+    public static class EnumType extends Type {
+        private final Map<Integer, String> names = new HashMap<>();
+        private final Map<String, Integer> values = new HashMap<>();
+
+        EnumType(EnumNode node) {
+            super(TType.I32, node.getName());
+            long next = 0;
+            for (EnumValueNode value : node.values) {
+                if (value.value.isPresent()) {
+                    next = value.value.get().longValue;
+                }
+                if (next != (int) next) {
+                    throw new RuntimeException(String.format(
+                            "Enum value %s.%s is %d, which does not fit an i32", node.getName(), value.getName(), next));
+                }
+                names.putIfAbsent((int) next, value.getName());
+                values.put(value.getName(), (int) next);
+                next++;
+            }
+        }
+
+        /** Returns the name of the given value, or null if the value is not declared */
+        public String name(int value) {
+            return names.get(value);
+        }
+
+        /** Returns the value of the given name, or null if the name is not declared */
+        public Integer value(String name) {
+            return values.get(name);
+        }
+
+        public Set<String> names() {
+            return Collections.unmodifiableSet(values.keySet());
+        }
+    }
+
+    public static class ListType extends Type {
+        public final Type elementType;
+
+        ListType(Type elementType) {
+            super(TType.LIST, String.format("list<%s>", elementType));
+            this.elementType = elementType;
+        }
+    }
+
+    public static class SetType extends Type {
+        public final Type elementType;
+
+        SetType(Type elementType) {
+            super(TType.SET, String.format("set<%s>", elementType));
+            this.elementType = elementType;
+        }
+    }
+
+    public static class MapType extends Type {
+        public final Type keyType;
+        public final Type valueType;
+
+        MapType(Type keyType, Type valueType) {
+            super(TType.MAP, String.format("map<%s,%s>", keyType, valueType));
+            this.keyType = keyType;
+            this.valueType = valueType;
+        }
+    }
+
+    public static class StructType extends Type {
+        public enum Kind { STRUCT, UNION, EXCEPTION }
+
+        // ids below this bound are looked up in a dense array
+        private static final int DENSE_ID_LIMIT = 1024;
+
+        public final Kind kind;
+        private List<Field> fields = Collections.emptyList();
+        private Field[] byId = new Field[0];
+        private Map<Short, Field> sparse = Collections.emptyMap();
+        private volatile String description;
+        private volatile Long fingerprint;
+
+        StructType(String name, Kind kind) {
+            super(TType.STRUCT, name);
+            this.kind = kind;
+        }
+
+        private void setFields(List<Field> fields) {
+            int maxId = -1;
+            for (Field field : fields) {
+                if (field.id >= 0 && field.id < DENSE_ID_LIMIT) {
+                    maxId = Math.max(maxId, field.id);
+                }
+            }
+            Field[] byId = new Field[maxId + 1];
+            Map<Short, Field> sparse = new HashMap<>();
+            for (Field field : fields) {
+                if (field.id >= 0 && field.id < DENSE_ID_LIMIT) {
+                    byId[field.id] = field;
+                } else {
+                    sparse.put(field.id, field);
+                }
+            }
+            this.byId = byId;
+            this.sparse = sparse;
+            this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+        }
+
+        public List<Field> fields() {
+            return fields;
+        }
+
+        /** Returns the field with the given id, or null if the struct does not declare it */
+        public Field field(short id) {
+            if (id >= 0 && id < byId.length) {
+                return byId[id];
+            }
+            return sparse.isEmpty() ? null : sparse.get(id);
+        }
+
+        /**
+         * A 64 bit hash of the {@link #description()}. Equal shapes have equal fingerprints, but
+         * different shapes may collide, so a fingerprint alone does not prove two shapes equal.
+         */
+        public long fingerprint() {
+            Long fingerprint = this.fingerprint;
+            if (fingerprint == null) {
+                // 64 bit FNV-1a
+                long hash = 0xcbf29ce484222325L;
+                for (byte b : description().getBytes(StandardCharsets.UTF_8)) {
+                    hash ^= b & 0xff;
+                    hash *= 0x100000001b3L;
+                }
+                this.fingerprint = fingerprint = hash;
+            }
+            return fingerprint;
+        }
+
+        /**
+         * The struct's shape as a string: field ids, names, types and default values, including
+         * nested structs and enum values. Structs with equal descriptions are read and written
+         * alike.
+         */
+        public String description() {
+            String description = this.description;
+            if (description == null) {
+                StringBuilder out = new StringBuilder();
+                describe(this, out, new HashSet<>());
+                this.description = description = out.toString();
+            }
+            return description;
+        }
+
+        private static void describe(Type type, StringBuilder out, Set<StructType> visited) {
+            if (StructType.class.isInstance(type)) {
+                StructType struct = (StructType) type;
+                out.append(struct.kind).append(' ').append(struct.name);
+                if (!visited.add(struct)) {
+                    return;
+                }
+                out.append('{');
+                for (Field field : struct.fields) {
+                    out.append(field.id).append(':');
+                    describe(field.type, out, visited);
+                    out.append(' ').append(field.name);
+                    if (field.node != null && field.node.value.isPresent()) {
+                        out.append('=').append(describe(field.node.value.get()));
+                    }
+                    out.append(';');
+                }
+                out.append('}');
+            } else if (EnumType.class.isInstance(type)) {
+                out.append("enum ").append(type.name)
+                        .append(new TreeMap<>(((EnumType) type).names));
+            } else if (ListType.class.isInstance(type)) {
+                out.append("list<");
+                describe(((ListType) type).elementType, out, visited);
+                out.append('>');
+            } else if (SetType.class.isInstance(type)) {
+                out.append("set<");
+                describe(((SetType) type).elementType, out, visited);
+                out.append('>');
+            } else if (MapType.class.isInstance(type)) {
+                out.append("map<");
+                describe(((MapType) type).keyType, out, visited);
+                out.append(',');
+                describe(((MapType) type).valueType, out, visited);
+                out.append('>');
+            } else {
+                out.append(type.name);
+            }
+        }
+
+        private static String describe(ConstValueNode value) {
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            try {
+                JsonWriter writer = new JsonWriter(json);
+                AstJson.write(value, writer);
+                writer.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Cannot describe default %s", value), e);
+            }
+            return new String(json.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        /** Returns the field with the given name, or null if the struct does not declare it */
+        public Field field(String name) {
+            for (Field field : fields) {
+                if (field.name.equals(name)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static class Field {
+        public final short id;
+        public final String name;
+        public final byte[] nameUtf8;
+        public final Type type;
+        public final FieldNode node;
+
+        Field(short id, String name, Type type, FieldNode node) {
+            this.id = id;
+            this.name = name;
+            this.nameUtf8 = name.getBytes(StandardCharsets.UTF_8);
+            this.type = type;
+            this.node = node;
+        }
+
+        public String toString() {
+            return String.format("%d: %s %s", id, type, name);
+        }
+    }
+}
@@ -0,0 +1,695 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.*;
+import com.mitchseymour.thrift.parser.codec.Schema.*;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.*;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Resolves records written with one version of a struct into the shape of another version.
+ *
+ * A {@link Plan} is computed once per pair of struct versions and then applied in a single
+ * pass over each record: fields are matched by id, fields unknown to the reader are dropped,
+ * reader fields missing from a record are filled in from their default value, integer types
+ * are widened and enum values are remapped by name. Plans are cached by the descriptions
+ * of the writer and reader structs, and looked up by their fingerprints.
+ */
+public class SchemaResolver {
+
+    private final Map<PlanKey, Plan> plans = new ConcurrentHashMap<>();
+
+    public Plan plan(StructType writer, StructType reader) {
+        return plans.computeIfAbsent(
+                new PlanKey(writer, reader),
+                key -> new Plan(writer, reader));
+    }
+
+    public Plan plan(DocumentNode writer, DocumentNode reader, String structName) {
+        return plan(Schema.of(writer).struct(structName), Schema.of(reader).struct(structName));
+    }
+
+    /** The number of cached plans */
+    public int size() {
+        return plans.size();
+    }
+
+    public static class Plan {
+        public final StructType writer;
+        public final StructType reader;
+        private final StructPlan root;
+        private final Queue<ResolveBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+        Plan(StructType writer, StructType reader) {
+            this.writer = writer;
+            this.reader = reader;
+            this.root = new StructPlan(writer, reader, new HashMap<>());
+        }
+
+        /**
+         * Reads one writer-version record and writes it in the reader version.
+         */
+        public void resolve(TProtocol in, TProtocol out) throws TException {
+            root.resolve(in, out);
+        }
+
+        /**
+         * Resolves a single record serialized with the binary protocol.
+         */
+        public byte[] resolve(byte[] record) throws TException {
+            TMemoryBuffer buffer = new TMemoryBuffer(record.length + 64);
+            resolve(new TBinaryProtocol(new TMemoryInputTransport(record)), new TBinaryProtocol(buffer));
+            return Arrays.copyOf(buffer.getArray(), buffer.length());
+        }
+
+        /**
+         * Returns a decoder that resolves each record into the reader version before handing
+         * it to the given reader-version decoder. Records are resolved into buffers that are
+         * reused for later records, one for each decode running at the same time.
+         */
+        public <T> RecordDecoder<T> decoder(RecordDecoder<T> readerDecoder) {
+            return in -> {
+                ResolveBuffer buffer = buffers.poll();
+                if (buffer == null) {
+                    buffer = new ResolveBuffer();
+                }
+                try {
+                    buffer.reset();
+                    resolve(in, buffer.protocol);
+                    return readerDecoder.decode(buffer.protocol);
+                } finally {
+                    buffers.offer(buffer);
+                }
+            };
+        }
+    }
+
+    /**
+     * A transport that a record is resolved into and then decoded from. It does not expose its
+     * array, so protocols copy the strings and binaries they read, and decoded records never
+     * share the buffer that the next record overwrites.
+     */
+    private static class ResolveBuffer extends TTransport {
+        final TProtocol protocol = new TBinaryProtocol(this);
+        private byte[] bytes = new byte[256];
+        private int length;
+        private int position;
+
+        void reset() {
+            length = 0;
+            position = 0;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void open() {}
+
+        @Override
+        public void close() {}
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws TTransportException {
+            int count = Math.min(len, length - position);
+            if (count <= 0) {
+                throw new TTransportException(TTransportException.END_OF_FILE, "No more data available");
+            }
+            System.arraycopy(bytes, position, buf, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) {
+            if (length + len > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + len));
+            }
+            System.arraycopy(buf, off, bytes, length, len);
+            length += len;
+        }
+    }
+
+    // keys hash by fingerprint, and compare the full descriptions since fingerprints may collide
+    private static class PlanKey {
+        final long writer;
+        final long reader;
+        final String writerDescription;
+        final String readerDescription;
+
+        PlanKey(StructType writer, StructType reader) {
+            this.writer = writer.fingerprint();
+            this.reader = reader.fingerprint();
+            this.writerDescription = writer.description();
+            this.readerDescription = reader.description();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!PlanKey.class.isInstance(other)) {
+                return false;
+            }
+            PlanKey key = (PlanKey) other;
+            return writer == key.writer && reader == key.reader
+                    && writerDescription.equals(key.writerDescription)
+                    && readerDescription.equals(key.readerDescription);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(writer * 31 + reader);
+        }
+    }
+
+    //================================================================================
+    // Value plans
+    //================================================================================
+
+    /**
+     * Copies one value from the writer representation into the reader representation.
+     */
+    private static abstract class ValuePlan {
+        final Type readerType;
+
+        ValuePlan(Type readerType) {
+            this.readerType = readerType;
+        }
+
+        /** Returns false if the value cannot be represented in the reader version */
+        abstract boolean accepts(TProtocol in, Object[] value) throws TException;
+
+        abstract void write(TProtocol out, Object value) throws TException;
+
+        static ValuePlan of(Type writer, Type reader, Map<String, StructPlan> structs) {
+            if (StructType.class.isInstance(writer) && StructType.class.isInstance(reader)) {
+                String key = writer.name + "->" + reader.name;
+                StructPlan plan = structs.get(key);
+                if (plan == null) {
+                    plan = new StructPlan((StructType) writer, (StructType) reader, structs);
+                }
+                return new NestedStruct(plan);
+            }
+            if (EnumType.class.isInstance(writer) && EnumType.class.isInstance(reader)) {
+                return new EnumRemap((EnumType) writer, (EnumType) reader);
+            }
+            if (ListType.class.isInstance(writer) && ListType.class.isInstance(reader)) {
+                ValuePlan element = of(((ListType) writer).elementType, ((ListType) reader).elementType, structs);
+                return element == null ? null : new Elements(reader, element, false);
+            }
+            if (SetType.class.isInstance(writer) && SetType.class.isInstance(reader)) {
+                ValuePlan element = of(((SetType) writer).elementType, ((SetType) reader).elementType, structs);
+                return element == null ? null : new Elements(reader, element, true);
+            }
+            if (MapType.class.isInstance(writer) && MapType.class.isInstance(reader)) {
+                ValuePlan key = of(((MapType) writer).keyType, ((MapType) reader).keyType, structs);
+                ValuePlan value = of(((MapType) writer).valueType, ((MapType) reader).valueType, structs);
+                return key == null || value == null ? null : new Entries((MapType) reader, key, value);
+            }
+            if (BaseType.class.isInstance(writer) && BaseType.class.isInstance(reader)) {
+                if (writer.ttype == reader.ttype || rank(writer.ttype) > 0 && rank(writer.ttype) < rank(reader.ttype)) {
+                    return new Scalar(writer.ttype, reader);
+                }
+            }
+            return null;
+        }
+
+        // integer types may be widened, i.e. written as a type of a higher rank
+        private static int rank(byte ttype) {
+            switch (ttype) {
+                case TType.BYTE: return 1;
+                case TType.I16: return 2;
+                case TType.I32: return 3;
+                case TType.I64: return 4;
+                default: return -1;
+            }
+        }
+    }
+
+    private static class Scalar extends ValuePlan {
+        final byte writerType;
+
+        Scalar(byte writerType, Type readerType) {
+            super(readerType);
+            this.writerType = writerType;
+        }
+
+        @Override
+        boolean accepts(TProtocol in, Object[] value) throws TException {
+            value[0] = readScalar(in, writerType);
+            return true;
+        }
+
+        @Override
+        void write(TProtocol out, Object value) throws TException {
+            writeScalar(out, readerType.ttype, value);
+        }
+    }
+
+    private static class EnumRemap extends ValuePlan {
+        // writer value -> reader value, for names declared by both versions
+        final Map<Integer, Integer> values = new HashMap<>();
+
+        EnumRemap(EnumType writer, EnumType reader) {
+            super(reader);
+            for (String name : writer.names()) {
+                Integer readerValue = reader.value(name);
+                if (readerValue != null) {
+                    values.put(writer.value(name), readerValue);
+                }
+            }
+        }
+
+        @Override
+        boolean accepts(TProtocol in, Object[] value) throws TException {
+            value[0] = values.get(in.readI32());
+            return value[0] != null;
+        }
+
+        @Override
+        void write(TProtocol out, Object value) throws TException {
+            out.writeI32((Integer) value);
+        }
+    }
+
+    private static class NestedStruct extends ValuePlan {
+        final StructPlan plan;
+
+        NestedStruct(StructPlan plan) {
+            super(plan.reader);
+            this.plan = plan;
+        }
+
+        @Override
+        boolean accepts(TProtocol in, Object[] value) throws TException {
+            // inside containers the element count precedes the elements, so they are buffered
+            TMemoryBuffer buffer = new TMemoryBuffer(64);
+            plan.resolve(in, new TBinaryProtocol(buffer));
+            value[0] = buffer;
+            return true;
+        }
+
+        @Override
+        void write(TProtocol out, Object value) throws TException {
+            TMemoryBuffer buffer = (TMemoryBuffer) value;
+            plan.copy(new TBinaryProtocol(buffer), out);
+        }
+    }
+
+    private static class Elements extends ValuePlan {
+        final ValuePlan element;
+        final boolean set;
+
+        Elements(Type readerType, ValuePlan element, boolean set) {
+            super(readerType);
+            this.element = element;
+            this.set = set;
+        }
+
+        @Override
+        boolean accepts(TProtocol in, Object[] value) throws TException {
+            int size = set ? in.readSetBegin().size : in.readListBegin().size;
+            List<Object> elements = new ArrayList<>(size);
+            Object[] holder = new Object[1];
+            for (int i = 0; i < size; i++) {
+                // elements that cannot be represented in the reader version are dropped
+                if (element.accepts(in, holder)) {
+                    elements.add(holder[0]);
+                }
+            }
+            if (set) {
+                in.readSetEnd();
+            } else {
+                in.readListEnd();
+            }
+            value[0] = elements;
+            return true;
+        }
+
+        @Override
+        void write(TProtocol out, Object value) throws TException {
+            List<?> elements = (List<?>) value;
+            if (set) {
+                out.writeSetBegin(new TSet(element.readerType.ttype, elements.size()));
+            } else {
+                out.writeListBegin(new TList(element.readerType.ttype, elements.size()));
+            }
+            for (Object e : elements) {
+                element.write(out, e);
+            }
+            if (set) {
+                out.writeSetEnd();
+            } else {
+                out.writeListEnd();
+            }
+        }
+    }
+
+    private static class Entries extends ValuePlan {
+        final ValuePlan key;
+        final ValuePlan value;
+
+        Entries(MapType readerType, ValuePlan key, ValuePlan value) {
+            super(readerType);
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        boolean accepts(TProtocol in, Object[] result) throws TException {
+            TMap map = in.readMapBegin();
+            List<Object> entries = new ArrayList<>(map.size * 2);
+            Object[] k = new Object[1];
+            Object[] v = new Object[1];
+            for (int i = 0; i < map.size; i++) {
+                boolean keyAccepted = key.accepts(in, k);
+                boolean valueAccepted = value.accepts(in, v);
+                if (keyAccepted && valueAccepted) {
+                    entries.add(k[0]);
+                    entries.add(v[0]);
+                }
+            }
+            in.readMapEnd();
+            result[0] = entries;
+            return true;
+        }
+
+        @Override
+        void write(TProtocol out, Object result) throws TException {
+            List<?> entries = (List<?>) result;
+            out.writeMapBegin(new TMap(key.readerType.ttype, value.readerType.ttype, entries.size() / 2));
+            for (int i = 0; i < entries.size(); i += 2) {
+                key.write(out, entries.get(i));
+                value.write(out, entries.get(i + 1));
+            }
+            out.writeMapEnd();
+        }
+    }
+
+    //================================================================================
+    // Struct plans
+    //================================================================================
+
+    private static class StructPlan {
+        final StructType reader;
+        final Map<Short, Field> readerFields = new HashMap<>();
+        final Map<Short, ValuePlan> plans = new HashMap<>();
+        final List<Field> defaults = new ArrayList<>();
+
+        StructPlan(StructType writer, StructType reader, Map<String, StructPlan> structs) {
+            this.reader = reader;
+            // register before planning the fields so recursive structs terminate
+            structs.put(writer.name + "->" + reader.name, this);
+            for (Field readerField : reader.fields()) {
+                Field writerField = writer.field(readerField.id);
+                if (writerField != null) {
+                    ValuePlan plan = ValuePlan.of(writerField.type, readerField.type, structs);
+                    if (plan != null) {
+                        readerFields.put(readerField.id, readerField);
+                        plans.put(readerField.id, plan);
+                    }
+                }
+                if (readerField.node.value.isPresent()) {
+                    checkDefault(readerField);
+                    defaults.add(readerField);
+                }
+            }
+        }
+
+        // writes a default once, so that a default that cannot be written fails the plan, not a record
+        private void checkDefault(Field field) {
+            try {
+                Defaults.write(new TBinaryProtocol(new TMemoryBuffer(64)), field.type, field.node.value.get().value);
+            } catch (TException | RuntimeException e) {
+                throw new RuntimeException(
+                        String.format("Cannot write the default of %s.%s: %s", reader.name, field.name, e.getMessage()), e);
+            }
+        }
+
+        void resolve(TProtocol in, TProtocol out) throws TException {
+            Set<Short> written = new HashSet<>();
+            Object[] value = new Object[1];
+            in.readStructBegin();
+            out.writeStructBegin(new TStruct(reader.name));
+            while (true) {
+                TField wireField = in.readFieldBegin();
+                if (wireField.type == TType.STOP) {
+                    break;
+                }
+                ValuePlan plan = plans.get(wireField.id);
+                Field readerField = readerFields.get(wireField.id);
+                if (plan == null || !matches(plan, wireField.type)) {
+                    TProtocolUtil.skip(in, wireField.type);
+                } else if (NestedStruct.class.isInstance(plan)) {
+                    // structs are always accepted, so they can be resolved straight into the output
+                    out.writeFieldBegin(new TField(readerField.name, TType.STRUCT, readerField.id));
+                    ((NestedStruct) plan).plan.resolve(in, out);
+                    out.writeFieldEnd();
+                    written.add(readerField.id);
+                } else if (plan.accepts(in, value)) {
+                    out.writeFieldBegin(new TField(readerField.name, readerField.type.ttype, readerField.id));
+                    plan.write(out, value[0]);
+                    out.writeFieldEnd();
+                    written.add(readerField.id);
+                }
+                in.readFieldEnd();
+            }
+            in.readStructEnd();
+            for (Field field : defaults) {
+                if (!written.contains(field.id)) {
+                    out.writeFieldBegin(new TField(field.name, field.type.ttype, field.id));
+                    Defaults.write(out, field.type, field.node.value.get().value);
+                    out.writeFieldEnd();
+                }
+            }
+            out.writeFieldStop();
+            out.writeStructEnd();
+        }
+
+        // copies an already resolved struct
+        void copy(TProtocol in, TProtocol out) throws TException {
+            in.readStructBegin();
+            out.writeStructBegin(new TStruct(reader.name));
+            while (true) {
+                TField field = in.readFieldBegin();
+                if (field.type == TType.STOP) {
+                    break;
+                }
+                out.writeFieldBegin(field);
+                copyValue(in, out, field.type);
+                out.writeFieldEnd();
+                in.readFieldEnd();
+            }
+            in.readStructEnd();
+            out.writeFieldStop();
+            out.writeStructEnd();
+        }
+
+        private static boolean matches(ValuePlan plan, byte wireType) {
+            if (Scalar.class.isInstance(plan)) {
+                return ((Scalar) plan).writerType == wireType;
+            }
+            return plan.readerType.ttype == wireType;
+        }
+    }
+
+    private static void copyValue(TProtocol in, TProtocol out, byte type) throws TException {
+        switch (type) {
+            case TType.STRUCT:
+                in.readStructBegin();
+                out.writeStructBegin(new TStruct());
+                while (true) {
+                    TField field = in.readFieldBegin();
+                    if (field.type == TType.STOP) {
+                        break;
+                    }
+                    out.writeFieldBegin(field);
+                    copyValue(in, out, field.type);
+                    out.writeFieldEnd();
+                    in.readFieldEnd();
+                }
+                in.readStructEnd();
+                out.writeFieldStop();
+                out.writeStructEnd();
+                break;
+            case TType.LIST:
+                TList list = in.readListBegin();
+                out.writeListBegin(list);
+                for (int i = 0; i < list.size; i++) {
+                    copyValue(in, out, list.elemType);
+                }
+                in.readListEnd();
+                out.writeListEnd();
+                break;
+            case TType.SET:
+                TSet set = in.readSetBegin();
+                out.writeSetBegin(set);
+                for (int i = 0; i < set.size; i++) {
+                    copyValue(in, out, set.elemType);
+                }
+                in.readSetEnd();
+                out.writeSetEnd();
+                break;
+            case TType.MAP:
+                TMap map = in.readMapBegin();
+                out.writeMapBegin(map);
+                for (int i = 0; i < map.size; i++) {
+                    copyValue(in, out, map.keyType);
+                    copyValue(in, out, map.valueType);
+                }
+                in.readMapEnd();
+                out.writeMapEnd();
+                break;
+            default:
+                writeScalar(out, type, readScalar(in, type));
+        }
+    }
+
+    private static Object readScalar(TProtocol in, byte type) throws TException {
+        switch (type) {
+            case TType.BOOL: return in.readBool();
+            case TType.BYTE: return (long) in.readByte();
+            case TType.I16: return (long) in.readI16();
+            case TType.I32: return (long) in.readI32();
+            case TType.I64: return in.readI64();
+            case TType.DOUBLE: return in.readDouble();
+            case TType.STRING: return in.readBinary();
+            default: throw new TProtocolException(String.format("Not a scalar type: %d", type));
+        }
+    }
+
+    private static void writeScalar(TProtocol out, byte type, Object value) throws TException {
+        switch (type) {
+            case TType.BOOL: out.writeBool((Boolean) value); break;
+            case TType.BYTE: out.writeByte(((Number) value).byteValue()); break;
+            case TType.I16: out.writeI16(((Number) value).shortValue()); break;
+            case TType.I32: out.writeI32(((Number) value).intValue()); break;
+            case TType.I64: out.writeI64(((Number) value).longValue()); break;
+            case TType.DOUBLE: out.writeDouble(((Number) value).doubleValue()); break;
+            case TType.STRING: out.writeBinary((ByteBuffer) value); break;
+            default: throw new TProtocolException(String.format("Not a scalar type: %d", type));
+        }
+    }
+
+    //================================================================================
+    // Default values
+    //================================================================================
+
+    /**
+     * Writes the value of a {@link ConstValueNode} as the given type.
+     */
+    static class Defaults {
+
+        static void write(TProtocol out, Type type, AstNode value) throws TException {
+            if (ConstValueNode.class.isInstance(value)) {
+                value = ((ConstValueNode) value).value;
+            } else if (ConstListItemNode.class.isInstance(value)) {
+                value = ((ConstListItemNode) value).value;
+            }
+            switch (type.ttype) {
+                case TType.BOOL:
+                    out.writeBool(toLong(type, value) != 0);
+                    break;
+                case TType.BYTE:
+                case TType.I16:
+                case TType.I32:
+                case TType.I64:
+                    writeScalar(out, type.ttype, toLong(type, value));
+                    break;
+                case TType.DOUBLE:
+                    out.writeDouble(DoubleConstNode.class.isInstance(value)
+                            ? ((DoubleConstNode) value).value
+                            : toLong(type, value));
+                    break;
+                case TType.STRING:
+                    out.writeString(unquote(value));
+                    break;
+                case TType.LIST:
+                case TType.SET:
+                    ConstListNode list = (ConstListNode) value;
+                    Type elementType = ListType.class.isInstance(type)
+                            ? ((ListType) type).elementType
+                            : ((SetType) type).elementType;
+                    if (type.ttype == TType.LIST) {
+                        out.writeListBegin(new TList(elementType.ttype, list.size()));
+                    } else {
+                        out.writeSetBegin(new TSet(elementType.ttype, list.size()));
+                    }
+                    if (list.kind() == ConstKind.INT && isInteger(elementType.ttype)) {
+                        // int lists are written straight from their table, without creating nodes
+                        for (int i = 0; i < list.size(); i++) {
+                            writeScalar(out, elementType.ttype, list.getLong(i));
+                        }
+                    } else {
+                        for (ConstListItemNode item : list.values) {
+                            write(out, elementType, item);
+                        }
+                    }
+                    if (type.ttype == TType.LIST) {
+                        out.writeListEnd();
+                    } else {
+                        out.writeSetEnd();
+                    }
+                    break;
+                case TType.MAP:
+                    MapType mapType = (MapType) type;
+                    List<ConstMapEntryNode> entries = ((ConstMapNode) value).mappings;
+                    out.writeMapBegin(new TMap(mapType.keyType.ttype, mapType.valueType.ttype, entries.size()));
+                    for (ConstMapEntryNode entry : entries) {
+                        write(out, mapType.keyType, entry.key);
+                        write(out, mapType.valueType, entry.value);
+                    }
+                    out.writeMapEnd();
+                    break;
+                default:
+                    throw new RuntimeException(String.format("Unsupported default for %s: %s", type, value));
+            }
+        }
+
+        private static boolean isInteger(byte ttype) {
+            return ttype == TType.BYTE || ttype == TType.I16 || ttype == TType.I32 || ttype == TType.I64;
+        }
+
+        private static long toLong(Type type, AstNode value) {
+            if (IntConstNode.class.isInstance(value)) {
+                return ((IntConstNode) value).longValue;
+            }
+            if (IdentifierNode.class.isInstance(value)) {
+                String name = ((IdentifierNode) value).name;
+                if (type.ttype == TType.BOOL) {
+                    return "true".equals(name) ? 1 : 0;
+                }
+                if (EnumType.class.isInstance(type)) {
+                    // enum defaults may be qualified with the enum name
+                    Integer enumValue = ((EnumType) type).value(name.substring(name.lastIndexOf('.') + 1));
+                    if (enumValue != null) {
+                        return enumValue;
+                    }
+                }
+            }
+            throw new RuntimeException(String.format("Unsupported default for %s: %s", type, value));
+        }
+
+        private static String unquote(AstNode value) {
+            if (LiteralNode.class.isInstance(value)) {
+                String literal = ((LiteralNode) value).value;
+                if (literal.length() >= 2
+                        && (literal.startsWith("\"") && literal.endsWith("\"")
+                            || literal.startsWith("'") && literal.endsWith("'"))) {
+                    return literal.substring(1, literal.length() - 1);
+                }
+                return literal;
+            }
+            throw new RuntimeException(String.format("Unsupported string default: %s", value));
+        }
+    }
+}
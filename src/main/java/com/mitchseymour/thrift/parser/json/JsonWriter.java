@@ -0,0 +1,322 @@
+package com.mitchseymour.thrift.parser.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal streaming JSON writer. Output is encoded as UTF-8 straight into an
+ * internal buffer, which is flushed to the underlying stream when it fills up.
+ * Commas between values are inserted automatically.
+ */
+public class JsonWriter {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position = 0;
+
+    // one flag per nesting level, set once the first value at that level was written
+    private boolean[] hasValue = new boolean[32];
+    private int depth = 0;
+    private boolean afterName = false;
+
+    public JsonWriter(OutputStream out) {
+        this(out, 8192);
+    }
+
+    public JsonWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = new byte[Math.max(bufferSize, 64)];
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        separator();
+        string(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    /** Writes an object key given as UTF-8 bytes */
+    public JsonWriter name(byte[] utf8) throws IOException {
+        separator();
+        string(utf8, 0, utf8.length);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        separator();
+        string(value);
+        return this;
+    }
+
+    /** Writes the characters of a string between start (inclusive) and end (exclusive) */
+    public JsonWriter value(String value, int start, int end) throws IOException {
+        separator();
+        string(value, start, end);
+        return this;
+    }
+
+    /** Writes a string value given as UTF-8 bytes */
+    public JsonWriter value(byte[] utf8, int offset, int length) throws IOException {
+        separator();
+        string(utf8, offset, length);
+        return this;
+    }
+
+    /** Writes a string value given as UTF-8 bytes between the buffer's position and limit */
+    public JsonWriter value(ByteBuffer utf8) throws IOException {
+        separator();
+        if (utf8.hasArray()) {
+            string(utf8.array(), utf8.arrayOffset() + utf8.position(), utf8.remaining());
+        } else {
+            byte[] bytes = new byte[utf8.remaining()];
+            utf8.duplicate().get(bytes);
+            string(bytes, 0, bytes.length);
+        }
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separator();
+        writeBytes(value ? TRUE : FALSE);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separator();
+        writeLong(value);
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            // not representable as a JSON number
+            return value(Double.toString(value));
+        }
+        separator();
+        if (value == (long) value && Math.abs(value) < 1e15) {
+            writeLong((long) value);
+            writeByte('.');
+            writeByte('0');
+        } else {
+            writeAscii(Double.toString(value));
+        }
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        separator();
+        writeBytes(NULL);
+        return this;
+    }
+
+    /** Writes a line break, e.g. between the records of a newline-delimited stream */
+    public JsonWriter newline() throws IOException {
+        writeByte('\n');
+        if (depth == 0) {
+            hasValue[0] = false;
+        }
+        return this;
+    }
+
+    public void flush() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        out.flush();
+    }
+
+    //================================================================================
+    // Internals
+    //================================================================================
+
+    private JsonWriter open(char c) throws IOException {
+        separator();
+        writeByte(c);
+        depth++;
+        if (depth == hasValue.length) {
+            boolean[] grown = new boolean[hasValue.length * 2];
+            System.arraycopy(hasValue, 0, grown, 0, hasValue.length);
+            hasValue = grown;
+        }
+        hasValue[depth] = false;
+        return this;
+    }
+
+    private JsonWriter close(char c) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("Nothing to close");
+        }
+        depth--;
+        writeByte(c);
+        return this;
+    }
+
+    private void separator() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (hasValue[depth]) {
+            writeByte(',');
+        } else {
+            hasValue[depth] = true;
+        }
+    }
+
+    private void string(String value) throws IOException {
+        string(value, 0, value.length());
+    }
+
+    private void string(String value, int start, int end) throws IOException {
+        writeByte('"');
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                escaped(c);
+            } else if (c < 0x800) {
+                writeByte(0xc0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                writeByte(0xf0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+                writeByte(0x80 | (codePoint & 0x3f));
+            } else {
+                writeByte(0xe0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3f));
+                writeByte(0x80 | (c & 0x3f));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void string(byte[] utf8, int offset, int length) throws IOException {
+        writeByte('"');
+        int end = offset + length;
+        int runStart = offset;
+        for (int i = offset; i < end; i++) {
+            int b = utf8[i] & 0xff;
+            if (b < 0x20 || b == '"' || b == '\\') {
+                writeBytes(utf8, runStart, i - runStart);
+                escaped((char) b);
+                runStart = i + 1;
+            }
+        }
+        writeBytes(utf8, runStart, end - runStart);
+        writeByte('"');
+    }
+
+    private void escaped(char c) throws IOException {
+        switch (c) {
+            case '"': writeByte('\\'); writeByte('"'); break;
+            case '\\': writeByte('\\'); writeByte('\\'); break;
+            case '\n': writeByte('\\'); writeByte('n'); break;
+            case '\r': writeByte('\\'); writeByte('r'); break;
+            case '\t': writeByte('\\'); writeByte('t'); break;
+            case '\b': writeByte('\\'); writeByte('b'); break;
+            case '\f': writeByte('\\'); writeByte('f'); break;
+            default:
+                if (c < 0x20) {
+                    writeByte('\\');
+                    writeByte('u');
+                    writeByte('0');
+                    writeByte('0');
+                    writeByte(HEX[c >> 4]);
+                    writeByte(HEX[c & 0xf]);
+                } else {
+                    writeByte(c);
+                }
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeBytes(MIN_LONG);
+            return;
+        }
+        if (position + 20 > buffer.length) {
+            flushBuffer();
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        int i = position + digits;
+        position = i;
+        do {
+            buffer[--i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value > 0);
+    }
+
+    private void writeAscii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            writeByte(value.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (length > buffer.length - position) {
+            flushBuffer();
+            if (length > buffer.length) {
+                out.write(bytes, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+}
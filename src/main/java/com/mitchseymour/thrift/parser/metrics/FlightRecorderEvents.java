@@ -0,0 +1,240 @@
+package com.mitchseymour.thrift.parser.metrics;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events emitted by the parser, in the "Thrift" category:
+ *
+ * <ul>
+ *     <li>{@code com.mitchseymour.thrift.FileParsed}: path, size and definition count of every parsed file</li>
+ *     <li>{@code com.mitchseymour.thrift.ParseFailure}: path, size, error count and first error of a failed parse</li>
+ *     <li>{@code com.mitchseymour.thrift.IncludeResolved}: every include, and whether it was found</li>
+ *     <li>{@code com.mitchseymour.thrift.IncludeCacheHit}, {@code IncludeCacheMiss} and
+ *     {@code IncludeCacheEviction}: include cache activity by key</li>
+ * </ul>
+ *
+ * The parser is compiled for Java 8, which has no {@code jdk.jfr} API, so the event types are
+ * defined at runtime through {@code jdk.jfr.EventFactory} (JDK 12 and later). On older JVMs,
+ * or when JFR is unavailable, no events are emitted. Events are only created while a recording
+ * is running, so a disabled flight recorder costs a single volatile read per event.
+ */
+public final class FlightRecorderEvents {
+
+    public static final EventType FILE_PARSED = new EventType("FileParsed", "Thrift File Parsed",
+            "path", String.class, "size", long.class, "definitions", int.class);
+    public static final EventType PARSE_FAILURE = new EventType("ParseFailure", "Thrift Parse Failure",
+            "path", String.class, "size", long.class, "errors", int.class, "message", String.class);
+    public static final EventType INCLUDE_RESOLVED = new EventType("IncludeResolved", "Thrift Include Resolved",
+            "include", String.class, "found", boolean.class);
+    public static final EventType INCLUDE_CACHE_HIT = new EventType("IncludeCacheHit", "Thrift Include Cache Hit",
+            "key", String.class);
+    public static final EventType INCLUDE_CACHE_MISS = new EventType("IncludeCacheMiss", "Thrift Include Cache Miss",
+            "key", String.class);
+    public static final EventType INCLUDE_CACHE_EVICTION = new EventType("IncludeCacheEviction",
+            "Thrift Include Cache Eviction", "key", String.class);
+
+    private static final Event DISABLED = new Event(null, null);
+
+    private static final Jfr JFR = Jfr.load();
+    private static volatile boolean recording = false;
+
+    static {
+        if (JFR != null) {
+            JFR.listen();
+        }
+    }
+
+    private FlightRecorderEvents() {
+    }
+
+    /** True if a flight recording is running and the event types are registered */
+    public static boolean recording() {
+        return recording;
+    }
+
+    //================================================================================
+    // Event types
+    //================================================================================
+
+    public static class EventType {
+        private final String name;
+        private final String label;
+        private final Object[] fields;
+        // the jdk.jfr.EventFactory of this type, or null if JFR is unavailable
+        private Object factory;
+
+        EventType(String name, String label, Object... fields) {
+            this.name = "com.mitchseymour.thrift." + name;
+            this.label = label;
+            this.fields = fields;
+        }
+
+        /**
+         * Starts timing an event of this type. The returned event does nothing unless a
+         * recording is running.
+         */
+        public Event begin() {
+            if (!recording || factory == null) {
+                return DISABLED;
+            }
+            try {
+                Object event = JFR.newEvent.invoke(factory);
+                JFR.begin.invoke(event);
+                return new Event(this, event);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return DISABLED;
+            }
+        }
+
+        /** Commits an event of this type without a duration */
+        public void emit(Object... values) {
+            if (recording) {
+                begin().commit(values);
+            }
+        }
+
+        public String name() {
+            return name;
+        }
+    }
+
+    public static class Event {
+        private final EventType type;
+        private final Object event;
+
+        Event(EventType type, Object event) {
+            this.type = type;
+            this.event = event;
+        }
+
+        public boolean enabled() {
+            return event != null;
+        }
+
+        /** Ends the event and commits it with the given field values, in declaration order */
+        public void commit(Object... values) {
+            if (event == null) {
+                return;
+            }
+            if (values.length * 2 != type.fields.length) {
+                throw new IllegalArgumentException(String.format(
+                        "%s has %d fields, got %d values", type.name, type.fields.length / 2, values.length));
+            }
+            try {
+                JFR.end.invoke(event);
+                for (int i = 0; i < values.length; i++) {
+                    JFR.set.invoke(event, i, values[i]);
+                }
+                JFR.commit.invoke(event);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // a failed event must never fail the parse
+            }
+        }
+    }
+
+    //================================================================================
+    // Reflective access to jdk.jfr
+    //================================================================================
+
+    private static class Jfr {
+        final Class<?> flightRecorder;
+        final Class<?> listener;
+        final Method newEvent;
+        final Method begin;
+        final Method end;
+        final Method set;
+        final Method commit;
+
+        private Jfr() throws ReflectiveOperationException {
+            flightRecorder = Class.forName("jdk.jfr.FlightRecorder");
+            listener = Class.forName("jdk.jfr.FlightRecorderListener");
+            Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            newEvent = eventFactory.getMethod("newEvent");
+            begin = event.getMethod("begin");
+            end = event.getMethod("end");
+            set = event.getMethod("set", int.class, Object.class);
+            commit = event.getMethod("commit");
+
+            Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+            Constructor<?> field = valueDescriptor.getConstructor(Class.class, String.class);
+            Method create = eventFactory.getMethod("create", List.class, List.class);
+
+            for (EventType type : Arrays.asList(FILE_PARSED, PARSE_FAILURE, INCLUDE_RESOLVED,
+                    INCLUDE_CACHE_HIT, INCLUDE_CACHE_MISS, INCLUDE_CACHE_EVICTION)) {
+                Object categories = Array.newInstance(String.class, 2);
+                Array.set(categories, 0, "Thrift");
+                Array.set(categories, 1, "Parser");
+                List<Object> annotations = new ArrayList<>();
+                annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Name"), type.name));
+                annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Label"), type.label));
+                annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Category"), categories));
+                List<Object> fields = new ArrayList<>();
+                for (int i = 0; i < type.fields.length; i += 2) {
+                    fields.add(field.newInstance(type.fields[i + 1], type.fields[i]));
+                }
+                type.factory = create.invoke(null, annotations, fields);
+            }
+        }
+
+        static Jfr load() {
+            try {
+                return new Jfr();
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                return null;
+            }
+        }
+
+        // tracks whether any recording is running, without initializing the flight recorder
+        void listen() {
+            InvocationHandler handler = (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "recorderInitialized":
+                    case "recordingStateChanged":
+                        update();
+                        return null;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "FlightRecorderEvents";
+                    default:
+                        return null;
+                }
+            };
+            try {
+                Object proxy = Proxy.newProxyInstance(listener.getClassLoader(), new Class<?>[]{listener}, handler);
+                flightRecorder.getMethod("addListener", listener).invoke(null, proxy);
+                update();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                recording = false;
+            }
+        }
+
+        private void update() throws ReflectiveOperationException {
+            if (!(Boolean) flightRecorder.getMethod("isInitialized").invoke(null)) {
+                recording = false;
+                return;
+            }
+            Object recorder = flightRecorder.getMethod("getFlightRecorder").invoke(null);
+            List<?> recordings = (List<?>) flightRecorder.getMethod("getRecordings").invoke(recorder);
+            boolean running = false;
+            for (Object recording : recordings == null ? Collections.emptyList() : recordings) {
+                Object state = recording.getClass().getMethod("getState").invoke(recording);
+                running |= "RUNNING".equals(String.valueOf(state));
+            }
+            recording = running;
+        }
+    }
+}
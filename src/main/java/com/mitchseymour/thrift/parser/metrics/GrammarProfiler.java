@@ -0,0 +1,266 @@
+package com.mitchseymour.thrift.parser.metrics;
+
+import com.mitchseymour.thrift.parser.ParserClasses;
+import com.mitchseymour.thrift.parser.Preprocessor;
+import com.mitchseymour.thrift.parser.ThriftIdl;
+import com.mitchseymour.thrift.parser.ast.ThriftAst;
+import com.mitchseymour.thrift.parser.json.JsonWriter;
+import org.parboiled.Rule;
+import org.parboiled.matchers.ActionMatcher;
+import org.parboiled.parserunners.ProfilingParseRunner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Profiles the grammar rules over a corpus of IDL files, using Parboiled's profiling parse
+ * runner. For every rule the report counts invocations, matches and mismatches, and how often
+ * the rule was invoked again at an input position it had already been tried at. High
+ * reinvocation counts point at backtracking that memoization or a grammar change could avoid.
+ *
+ * <pre>
+ * GrammarProfiler profiler = new GrammarProfiler();
+ * profiler.profile(Paths.get("idl"));
+ * System.out.println(profiler.report().print(20));
+ * </pre>
+ *
+ * A profiler is not thread safe, and its runs accumulate into a single report.
+ */
+public class GrammarProfiler {
+
+    private final ProfilingParseRunner<Object> runner;
+    private int files = 0;
+    private long chars = 0;
+
+    /** Profiles the AST grammar of {@link ThriftAst} */
+    public GrammarProfiler() {
+        this(ParserClasses.createParser(ThriftAst.class).Document());
+    }
+
+    GrammarProfiler(Rule document) {
+        this.runner = new ProfilingParseRunner<>(document);
+    }
+
+    /** Profiles the recognizer grammar of {@link ThriftIdl} */
+    public static GrammarProfiler recognizer() {
+        return new GrammarProfiler(ParserClasses.createParser(ThriftIdl.class).Document());
+    }
+
+    public GrammarProfiler profile(String idl) {
+        String input = Preprocessor.stripComments(idl);
+        runner.run(input);
+        files++;
+        chars += input.length();
+        return this;
+    }
+
+    /** Profiles a file, or every .thrift file below a directory */
+    public GrammarProfiler profile(Path path) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(path)) {
+            files = walk.filter(file -> Files.isRegularFile(file) && file.toString().endsWith(".thrift"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        if (Files.isRegularFile(path) && files.isEmpty()) {
+            files = Collections.singletonList(path);
+        }
+        for (Path file : files) {
+            profile(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        }
+        return this;
+    }
+
+    public Report report() {
+        ProfilingParseRunner.Report report = runner.getReport();
+        Map<String, RuleStats> rules = new LinkedHashMap<>();
+        for (ProfilingParseRunner.RuleReport rule : report.ruleReports) {
+            if (!ProfilingParseRunner.Report.namedRules.apply(rule) || rule.getMatcher() instanceof ActionMatcher) {
+                continue;
+            }
+            // rules of the same name, e.g. the literals of several rule methods, are merged
+            String name = rule.getMatcher().getLabel();
+            RuleStats stats = rules.computeIfAbsent(name, RuleStats::new);
+            stats.invocations += rule.getInvocations();
+            stats.matches += rule.getMatches();
+            stats.mismatches += rule.getMismatches();
+            stats.reinvocations += rule.getReinvocations();
+            stats.rematches += rule.getRematches();
+            stats.remismatches += rule.getRemismatches();
+            stats.nanos += rule.getNanoTime();
+        }
+        return new Report(files, chars, report.totalInvocations, report.reinvocations, report.totalNanoTime,
+                new ArrayList<>(rules.values()));
+    }
+
+    public static class RuleStats {
+        public final String rule;
+        long invocations;
+        long matches;
+        long mismatches;
+        long reinvocations;
+        long rematches;
+        long remismatches;
+        long nanos;
+
+        RuleStats(String rule) {
+            this.rule = rule;
+        }
+
+        public long invocations() {
+            return invocations;
+        }
+
+        public long matches() {
+            return matches;
+        }
+
+        public long mismatches() {
+            return mismatches;
+        }
+
+        /** Invocations at an input position the rule was already tried at */
+        public long reinvocations() {
+            return reinvocations;
+        }
+
+        public long rematches() {
+            return rematches;
+        }
+
+        public long remismatches() {
+            return remismatches;
+        }
+
+        /** Time spent in the rule, including its sub rules and the profiling overhead */
+        public long nanos() {
+            return nanos;
+        }
+
+        public double matchRatio() {
+            return invocations == 0 ? 0 : (double) matches / invocations;
+        }
+    }
+
+    public static class Report {
+        public final int files;
+        public final long chars;
+        public final long invocations;
+        public final long reinvocations;
+        public final long nanos;
+        /** Named rules, sorted by reinvocations and then invocations */
+        public final List<RuleStats> rules;
+
+        Report(int files, long chars, long invocations, long reinvocations, long nanos, List<RuleStats> rules) {
+            this.files = files;
+            this.chars = chars;
+            this.invocations = invocations;
+            this.reinvocations = reinvocations;
+            this.nanos = nanos;
+            rules.sort(Comparator.comparingLong(RuleStats::reinvocations)
+                    .thenComparingLong(RuleStats::invocations)
+                    .reversed()
+                    .thenComparing(stats -> stats.rule));
+            this.rules = Collections.unmodifiableList(rules);
+        }
+
+        /** Returns the stats of the named rule, or null if it was never invoked */
+        public RuleStats rule(String name) {
+            for (RuleStats stats : rules) {
+                if (stats.rule.equals(name)) {
+                    return stats;
+                }
+            }
+            return null;
+        }
+
+        /** Prints a table of the top rules */
+        public String print(int top) {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%d files, %d chars, %d rule invocations, %d reinvocations (%.1f%%), %.1fms%n",
+                    files, chars, invocations, reinvocations,
+                    invocations == 0 ? 0 : 100.0 * reinvocations / invocations, nanos / 1e6));
+            out.append(String.format("%-28s %12s %8s %12s %12s %12s %10s%n",
+                    "Rule", "Invocations", "Match%", "Mismatches", "Reinvoked", "Rematches", "Time(ms)"));
+            for (RuleStats stats : rules.subList(0, Math.min(top, rules.size()))) {
+                out.append(String.format("%-28s %12d %7.1f%% %12d %12d %12d %10.2f%n",
+                        stats.rule, stats.invocations, 100 * stats.matchRatio(), stats.mismatches,
+                        stats.reinvocations, stats.rematches, stats.nanos / 1e6));
+            }
+            return out.toString();
+        }
+
+        /**
+         * Writes the report as JSON, so reports of different releases can be compared.
+         * Times are left out, since they depend on the machine.
+         */
+        public void writeJson(OutputStream out) throws IOException {
+            JsonWriter json = new JsonWriter(out);
+            json.beginObject()
+                    .name("files").value(files)
+                    .name("chars").value(chars)
+                    .name("invocations").value(invocations)
+                    .name("reinvocations").value(reinvocations)
+                    .name("rules").beginArray();
+            for (RuleStats stats : rules) {
+                json.beginObject()
+                        .name("rule").value(stats.rule)
+                        .name("invocations").value(stats.invocations)
+                        .name("matches").value(stats.matches)
+                        .name("mismatches").value(stats.mismatches)
+                        .name("reinvocations").value(stats.reinvocations)
+                        .name("rematches").value(stats.rematches)
+                        .name("remismatches").value(stats.remismatches)
+                        .endObject();
+            }
+            json.endArray().endObject().newline();
+            json.flush();
+        }
+    }
+
+    /**
+     * Profiles the given files and directories and prints the top rules.
+     * Usage: {@code GrammarProfiler [--recognizer] [--top N] [--json] path...}
+     */
+    public static void main(String[] args) throws IOException {
+        boolean recognizer = false;
+        boolean json = false;
+        int top = 25;
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--recognizer":
+                    recognizer = true;
+                    break;
+                case "--json":
+                    json = true;
+                    break;
+                case "--top":
+                    top = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    paths.add(Paths.get(args[i]));
+            }
+        }
+        if (paths.isEmpty()) {
+            System.err.println("Usage: GrammarProfiler [--recognizer] [--top N] [--json] path...");
+            System.exit(2);
+        }
+        GrammarProfiler profiler = recognizer ? recognizer() : new GrammarProfiler();
+        for (Path path : paths) {
+            profiler.profile(path);
+        }
+        if (json) {
+            profiler.report().writeJson(System.out);
+        } else {
+            System.out.print(profiler.report().print(top));
+        }
+    }
+}
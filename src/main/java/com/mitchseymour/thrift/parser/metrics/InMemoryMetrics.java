@@ -0,0 +1,108 @@
+package com.mitchseymour.thrift.parser.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps every measurement in memory, e.g. for tests or a quick look at where parsing time goes.
+ * Timers and histograms keep their count, sum, minimum and maximum.
+ */
+public class InMemoryMetrics implements ParseMetrics {
+
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Distribution> timers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Distribution> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public void count(String name, long delta) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    @Override
+    public void time(String name, long nanos) {
+        timers.computeIfAbsent(name, key -> new Distribution()).add(nanos);
+    }
+
+    @Override
+    public void record(String name, long value) {
+        histograms.computeIfAbsent(name, key -> new Distribution()).add(value);
+    }
+
+    /** Returns the value of the counter, or 0 if it was never incremented */
+    public long counter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /** Returns the durations recorded for the timer, in nanoseconds */
+    public Distribution timer(String name) {
+        return timers.getOrDefault(name, Distribution.EMPTY);
+    }
+
+    public Distribution histogram(String name) {
+        return histograms.getOrDefault(name, Distribution.EMPTY);
+    }
+
+    public void reset() {
+        counters.clear();
+        timers.clear();
+        histograms.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            out.append(String.format("%s: %d%n", counter.getKey(), counter.getValue().sum()));
+        }
+        for (Map.Entry<String, Distribution> timer : new TreeMap<>(timers).entrySet()) {
+            Distribution d = timer.getValue();
+            out.append(String.format("%s: count=%d total=%.3fms mean=%.3fus max=%.3fus%n",
+                    timer.getKey(), d.count(), d.sum() / 1e6, d.mean() / 1e3, d.max() / 1e3));
+        }
+        for (Map.Entry<String, Distribution> histogram : new TreeMap<>(histograms).entrySet()) {
+            Distribution d = histogram.getValue();
+            out.append(String.format("%s: count=%d min=%d mean=%.1f max=%d%n",
+                    histogram.getKey(), d.count(), d.min(), d.mean(), d.max()));
+        }
+        return out.toString();
+    }
+
+    public static class Distribution {
+        static final Distribution EMPTY = new Distribution();
+
+        private long count = 0;
+        private long sum = 0;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        synchronized void add(long value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        public synchronized long count() {
+            return count;
+        }
+
+        public synchronized long sum() {
+            return sum;
+        }
+
+        public synchronized long min() {
+            return count == 0 ? 0 : min;
+        }
+
+        public synchronized long max() {
+            return count == 0 ? 0 : max;
+        }
+
+        public synchronized double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+    }
+}
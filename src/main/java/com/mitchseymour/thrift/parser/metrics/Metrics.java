@@ -0,0 +1,84 @@
+package com.mitchseymour.thrift.parser.metrics;
+
+import org.parboiled.support.ParsingResult;
+
+/**
+ * The registered {@link ParseMetrics} and the names of the metrics emitted by the parser.
+ *
+ * <pre>
+ * InMemoryMetrics metrics = new InMemoryMetrics();
+ * Metrics.register(metrics);
+ * ThriftParser.parseThriftFileAst("/monkeys.thrift");
+ * System.out.println(metrics);
+ * </pre>
+ */
+public final class Metrics {
+
+    /** Timer: reading an IDL file */
+    public static final String READ = "thrift.read";
+    /** Histogram: the size of every IDL file read, in characters */
+    public static final String READ_CHARS = "thrift.read.chars";
+    /** Timer: stripping comments before parsing */
+    public static final String PREPROCESS = "thrift.preprocess";
+    /** Timer: building a parser's rule tree, once per thread for the recognizer and once per concurrent run for the AST parser */
+    public static final String PARSER_CREATE = "thrift.parser.create";
+    /** Timer: running the parser, including the AST actions it executes */
+    public static final String PARSE = "thrift.parse";
+    /** Timer: validating one input with the {@code ThriftValidator} */
+    public static final String VALIDATE = "thrift.validate";
+    /** Timer: formatting one input with the {@code ThriftFormatter} */
+    public static final String FORMAT = "thrift.format";
+    /** Histogram: the size of every parsed input, in characters */
+    public static final String PARSE_CHARS = "thrift.parse.chars";
+    /** Counter: parse errors reported by the parser */
+    public static final String PARSE_ERRORS = "thrift.parse.errors";
+    /** Timer prefix: executing one AST action, followed by the action's name */
+    public static final String ACTION = "thrift.action.";
+    /** Timer: resolving one include, including parsing the included file */
+    public static final String INCLUDE = "thrift.include";
+    /** Counter: includes served from, or added to, an include cache */
+    public static final String INCLUDE_CACHE_HIT = "thrift.include.cache.hit";
+    public static final String INCLUDE_CACHE_MISS = "thrift.include.cache.miss";
+    /** Counter: cached include contents dropped because the file changed or was removed */
+    public static final String INCLUDE_CACHE_EVICTION = "thrift.include.cache.eviction";
+
+    private static volatile ParseMetrics metrics = ParseMetrics.NOOP;
+
+    private Metrics() {
+    }
+
+    public static ParseMetrics get() {
+        return metrics;
+    }
+
+    /** Registers the metrics for all subsequent parses. Null restores the no-op default. */
+    public static void register(ParseMetrics metrics) {
+        Metrics.metrics = metrics == null ? ParseMetrics.NOOP : metrics;
+    }
+
+    /** True if measurements are recorded, so callers can skip taking timestamps otherwise */
+    public static boolean enabled() {
+        return metrics != ParseMetrics.NOOP;
+    }
+
+    /** Returns a start timestamp for {@link #stop}, or 0 if no metrics are registered */
+    public static long start() {
+        return enabled() ? System.nanoTime() : 0;
+    }
+
+    /** Records the time elapsed since the given {@link #start} timestamp */
+    public static void stop(String name, long start) {
+        if (start != 0) {
+            metrics.time(name, System.nanoTime() - start);
+        }
+    }
+
+    /** Records the input size and the parse errors of one parser run */
+    public static void recordParse(String input, ParsingResult<?> result) {
+        ParseMetrics metrics = Metrics.metrics;
+        if (metrics != ParseMetrics.NOOP) {
+            metrics.record(PARSE_CHARS, input.length());
+            metrics.count(PARSE_ERRORS, result.parseErrors.size());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.mitchseymour.thrift.parser.metrics;
+
+/**
+ * Receives measurements from the phases of parsing. Implementations must be thread safe,
+ * since files are parsed concurrently. Register an implementation with {@link Metrics#register}.
+ *
+ * Metric names are dotted, e.g. {@code thrift.parse} or {@code thrift.action.pushStructNode}.
+ * See {@link Metrics} for the names emitted by the parser.
+ */
+public interface ParseMetrics {
+
+    /** Discards every measurement. This is the default. */
+    ParseMetrics NOOP = new ParseMetrics() {
+        @Override
+        public void count(String name, long delta) {
+        }
+
+        @Override
+        public void time(String name, long nanos) {
+        }
+
+        @Override
+        public void record(String name, long value) {
+        }
+    };
+
+    /** Adds the delta to a counter */
+    void count(String name, long delta);
+
+    /** Records the duration of one execution of a timed phase */
+    void time(String name, long nanos);
+
+    /** Records one value of a distribution, e.g. an input size */
+    void record(String name, long value);
+}
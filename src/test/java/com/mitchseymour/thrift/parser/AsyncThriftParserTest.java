@@ -0,0 +1,83 @@
+package com.mitchseymour.thrift.parser;
+
+import static org.junit.Assert.*;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+public class AsyncThriftParserTest {
+
+    @Test
+    public void parseFile() throws Exception {
+        Path monkey = Paths.get(getClass().getResource("/testmonkey.thrift").toURI());
+        try (AsyncThriftParser parser = new AsyncThriftParser(2, 16)) {
+            DocumentNode document = parser.parse(monkey).get(10, TimeUnit.SECONDS);
+            assert(document.getFieldsForStruct("Gorilla").size() == 2);
+            try {
+                parser.parse("struct Broken {").get(10, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ParseException);
+            }
+        }
+    }
+
+    @Test
+    public void coalesceCancelAndShed() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        CountDownLatch blocked = new CountDownLatch(1);
+        pool.submit(() -> {
+            blocked.await();
+            return null;
+        });
+        try (AsyncThriftParser parser = new AsyncThriftParser(pool, 2)) {
+            String idl = "struct A {\n    1: string a,\n}\n";
+            CompletableFuture<DocumentNode> first = parser.parse(idl);
+            CompletableFuture<DocumentNode> second = parser.parse(idl);
+            assertEquals(1, parser.inFlight());
+
+            CompletableFuture<DocumentNode> other = parser.parse("struct B {\n    1: string b,\n}\n");
+            try {
+                parser.parse("struct C {\n    1: string c,\n}\n").join();
+                fail();
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+
+            // cancelling every caller of a parse abandons it and frees its slot
+            other.cancel(true);
+            assertEquals(1, parser.inFlight());
+
+            first.cancel(true);
+            blocked.countDown();
+            assertTrue(first.isCancelled());
+            assertEquals(1, second.get(10, TimeUnit.SECONDS).getFieldsForStruct("A").size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void closeCancelsQueuedParses() throws Exception {
+        List<CompletableFuture<DocumentNode>> futures = new ArrayList<>();
+        AsyncThriftParser parser = new AsyncThriftParser(1, 64);
+        for (int i = 0; i < 32; i++) {
+            futures.add(parser.parse(String.format("struct S%d {\n    1: string s,\n}\n", i)));
+        }
+        parser.close();
+        for (CompletableFuture<DocumentNode> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            } catch (CancellationException | ExecutionException e) {
+                // cancelled by the close, or interrupted while parsing
+            }
+        }
+        assertEquals(0, parser.inFlight());
+    }
+}
@@ -0,0 +1,132 @@
+package com.mitchseymour.thrift.parser;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+public class DefinitionPublisherTest {
+
+    private static class Collector implements DefinitionPublisher.Subscriber {
+        final int batch;
+        final List<DefinitionPublisher.Item> items = new CopyOnWriteArrayList<>();
+        final CountDownLatch terminated = new CountDownLatch(1);
+        volatile DefinitionPublisher.Subscription subscription;
+        volatile Throwable error;
+        volatile boolean completed;
+
+        Collector(int batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(DefinitionPublisher.Subscription subscription) {
+            this.subscription = subscription;
+            if (batch > 0) {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onNext(DefinitionPublisher.Item item) {
+            items.add(item);
+            if (batch > 0 && items.size() % batch == 0) {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            terminated.countDown();
+        }
+    }
+
+    private static List<Path> corpus(int files) throws Exception {
+        Path dir = Files.createTempDirectory("thrift");
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < files; i++) {
+            Path file = dir.resolve("file" + i + ".thrift");
+            Files.write(file, String.format("struct A%d {\n    1: string a,\n}\nstruct B%d {\n    1: i32 b,\n}\n", i, i)
+                    .getBytes(StandardCharsets.UTF_8));
+            paths.add(file);
+        }
+        return paths;
+    }
+
+    @Test
+    public void publishesAllDefinitions() throws Exception {
+        List<Path> files = corpus(20);
+        Collector collector = new Collector(3);
+        new DefinitionPublisher(files, new ParseOptions().parallelism(4), 4).subscribe(collector);
+
+        assertTrue(collector.terminated.await(10, TimeUnit.SECONDS));
+        assertTrue(collector.completed);
+        assertEquals(40, collector.items.size());
+        Map<Path, List<String>> names = new HashMap<>();
+        for (DefinitionPublisher.Item item : collector.items) {
+            names.computeIfAbsent(item.file, file -> new ArrayList<>()).add(item.definition.value.getName());
+        }
+        for (int i = 0; i < files.size(); i++) {
+            // the definitions of a file are published in source order
+            assertEquals(Arrays.asList("A" + i, "B" + i), names.get(files.get(i)));
+        }
+    }
+
+    @Test
+    public void backpressure() throws Exception {
+        List<Path> files = corpus(50);
+        Collector collector = new Collector(0);
+        new DefinitionPublisher(files, new ParseOptions().parallelism(2), 4).subscribe(collector);
+
+        Thread.sleep(100);
+        assertTrue(collector.items.isEmpty());
+        collector.subscription.request(5);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (collector.items.size() < 5 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        // no more than requested
+        assertEquals(5, collector.items.size());
+        assertFalse(collector.completed);
+
+        collector.subscription.cancel();
+        collector.subscription.request(10);
+        Thread.sleep(100);
+        assertEquals(5, collector.items.size());
+        assertEquals(1, collector.terminated.getCount());
+    }
+
+    @Test
+    public void parseErrorFailsStream() throws Exception {
+        List<Path> files = corpus(3);
+        Files.write(files.get(1), "struct Broken {\n".getBytes(StandardCharsets.UTF_8));
+        Collector collector = new Collector(Integer.MAX_VALUE);
+        new DefinitionPublisher(files, new ParseOptions().parallelism(1), 16).subscribe(collector);
+
+        assertTrue(collector.terminated.await(10, TimeUnit.SECONDS));
+        assertFalse(collector.completed);
+        assertTrue(collector.error instanceof ParseException);
+        assertTrue(collector.error.getMessage().contains(files.get(1).toString()));
+    }
+
+    @Test
+    public void emptyCorpus() throws Exception {
+        Collector collector = new Collector(1);
+        new DefinitionPublisher(Collections.emptyList()).subscribe(collector);
+        assertTrue(collector.terminated.await(1, TimeUnit.SECONDS));
+        assertTrue(collector.completed);
+    }
+}
@@ -0,0 +1,57 @@
+package com.mitchseymour.thrift.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Test;
+
+public class IdlBundleTest {
+
+    private static Path archive(String... entries) throws Exception {
+        Path archive = Files.createTempDirectory("thrift").resolve("schemas.zip");
+        try (OutputStream file = Files.newOutputStream(archive);
+             ZipOutputStream zip = new ZipOutputStream(file)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return archive;
+    }
+
+    @Test
+    public void parsesEntriesWithIncludes() throws Exception {
+        Path archive = archive(
+                "shared/base.thrift", "struct Base {\n    1: string name,\n}\n",
+                "shared/README", "not idl",
+                "monkeys/child.thrift", "include \"../shared/base.thrift\"\nstruct Child {\n    1: base.Base parent,\n}\n",
+                "monkeys/vendor.thrift", "include \"base.thrift\"\nstruct Vendor {\n    1: base.Base parent,\n}\n");
+
+        try (IdlBundle bundle = IdlBundle.open(archive)) {
+            assertEquals(Arrays.asList("/monkeys/child.thrift", "/monkeys/vendor.thrift", "/shared/base.thrift"),
+                    bundle.files().stream().map(Path::toString).collect(Collectors.toList()));
+
+            List<ParseResult> results = bundle.parseAll(new ParseOptions().parallelism(2));
+            assertTrue(results.get(0).toString(), results.get(0).succeeded());
+            assertEquals(2, results.get(0).document.get().definitions.size());
+            // not relative to the entry, and not in an include directory
+            assertFalse(results.get(1).succeeded());
+            assertTrue(results.get(1).diagnostics.get(0).contains("Include not found: base.thrift"));
+            assertTrue(results.get(2).succeeded());
+
+            ParseResult vendor = bundle.parse("monkeys/vendor.thrift",
+                    new ParseOptions().includeResolver(new IncludeResolver(bundle.path("shared"))));
+            assertTrue(vendor.toString(), vendor.succeeded());
+            assertEquals(2, vendor.document.get().definitions.size());
+        }
+    }
+}
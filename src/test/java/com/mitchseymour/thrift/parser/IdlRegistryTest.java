@@ -0,0 +1,88 @@
+package com.mitchseymour.thrift.parser;
+
+import static org.junit.Assert.*;
+
+import com.mitchseymour.thrift.parser.ast.Nodes;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class IdlRegistryTest {
+
+    private static Path write(Path file, String content) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toAbsolutePath().normalize();
+    }
+
+    private static IdlRegistry.Snapshot awaitUpdate(IdlRegistry registry, IdlRegistry.Snapshot previous) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (registry.snapshot() == previous && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotSame("no update", previous, registry.snapshot());
+        return registry.snapshot();
+    }
+
+    @Test
+    public void reparsesChangedFilesAndDependents() throws Exception {
+        Path dir = Files.createTempDirectory("thrift");
+        Path base = write(dir.resolve("base.thrift"), "struct Base {\n    1: string name,\n}\n");
+        Path child = write(dir.resolve("nested/child.thrift"),
+                "include \"../base.thrift\"\nstruct Child {\n    1: base.Base parent,\n}\n");
+        Path other = write(dir.resolve("other.thrift"), "struct Other {\n    1: i32 id,\n}\n");
+
+        try (IdlRegistry registry = new IdlRegistry(dir, new ParseOptions())) {
+            registry.start();
+            IdlRegistry.Snapshot first = registry.snapshot();
+            assertEquals(1, first.version);
+            assertEquals(3, first.results.size());
+            assertEquals(2, first.document(child).get().definitions.size());
+            assertTrue(first.document(child).get() instanceof Nodes.FrozenDocumentNode);
+            assertEquals(Collections.singleton(base), first.includes(child));
+            assertEquals(Collections.singleton(child), first.includedBy(base));
+
+            write(base, "struct Base {\n    1: string name,\n}\nstruct Extra {\n    1: i64 id,\n}\n");
+            IdlRegistry.Snapshot second = awaitUpdate(registry, first);
+            assertEquals(2, second.document(base).get().definitions.size());
+            assertEquals(3, second.document(child).get().definitions.size());
+            // unaffected files are not parsed again, and old snapshots do not change
+            assertSame(first.results.get(other), second.results.get(other));
+            assertEquals(2, first.document(child).get().definitions.size());
+
+            Files.delete(base);
+            IdlRegistry.Snapshot third = awaitUpdate(registry, second);
+            assertFalse(third.results.containsKey(base));
+            assertFalse(third.results.get(child).succeeded());
+
+            write(base, "struct Base {\n    1: string name,\n}\n");
+            IdlRegistry.Snapshot fourth = awaitUpdate(registry, third);
+            assertTrue(fourth.results.get(child).toString(), fourth.results.get(child).succeeded());
+            assertSame(third.results.get(other), fourth.results.get(other));
+        }
+    }
+
+    @Test
+    public void picksUpNewDirectories() throws Exception {
+        Path dir = Files.createTempDirectory("thrift");
+        try (IdlRegistry registry = new IdlRegistry(dir, new ParseOptions())) {
+            registry.start();
+            IdlRegistry.Snapshot first = registry.snapshot();
+            assertTrue(first.results.isEmpty());
+
+            // directories created while a new directory is being registered are watched too
+            Path file = write(dir.resolve("a/b/new.thrift"), "enum Color {\n    RED\n}\n");
+            Path deeper = write(dir.resolve("a/b/c/d/deeper.thrift"), "enum Shade {\n    DARK\n}\n");
+            IdlRegistry.Snapshot next = awaitUpdate(registry, first);
+            while (!next.results.containsKey(file) || !next.results.containsKey(deeper)) {
+                next = awaitUpdate(registry, next);
+            }
+            assertTrue(next.document(file).isPresent());
+            assertTrue(next.document(deeper).isPresent());
+            assertFalse(registry.failure().isPresent());
+        }
+    }
+}
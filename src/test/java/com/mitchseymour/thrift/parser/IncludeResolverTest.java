@@ -0,0 +1,74 @@
+package com.mitchseymour.thrift.parser;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.Test;
+
+public class IncludeResolverTest {
+
+    private static Path write(Path file, String content) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toAbsolutePath().normalize();
+    }
+
+    @Test
+    public void resolvesRelativeThenRoots() throws Exception {
+        Path dir = Files.createTempDirectory("thrift");
+        Path first = write(dir.resolve("first/common.thrift"), "struct First {}\n");
+        write(dir.resolve("second/common.thrift"), "struct Second {}\n");
+        Path other = write(dir.resolve("second/shared/other.thrift"), "struct Other {}\n");
+        Path sibling = write(dir.resolve("src/sibling.thrift"), "struct Sibling {}\n");
+        Path file = write(dir.resolve("src/main.thrift"), "");
+
+        IncludeResolver resolver = new IncludeResolver(dir.resolve("first"), dir.resolve("second"));
+        assertEquals(Optional.of(sibling), resolver.resolve(file, "sibling.thrift"));
+        assertEquals(Optional.of(first), resolver.resolve(file, "common.thrift"));
+        assertEquals(Optional.of(other), resolver.resolve(file, "shared/other.thrift"));
+        assertEquals(Optional.of(sibling), resolver.resolve(file, "../src/sibling.thrift"));
+        assertEquals(Optional.empty(), resolver.resolve(file, "missing.thrift"));
+        assertEquals(Optional.of(first), resolver.resolve(null, "common.thrift"));
+
+        // a cached resolution is searched again once its file is gone
+        Files.delete(first);
+        assertEquals(Optional.of(dir.resolve("second/common.thrift").toAbsolutePath().normalize()),
+                resolver.resolve(file, "common.thrift"));
+    }
+
+    @Test
+    public void cachesContentsUntilChanged() throws Exception {
+        Path file = write(Files.createTempDirectory("thrift").resolve("a.thrift"), "struct A {}\n");
+        IncludeResolver resolver = new IncludeResolver();
+        String content = resolver.read(file);
+        assertEquals("struct A {}\n", content);
+        assertSame(content, resolver.read(file));
+
+        write(file, "struct Changed {}\n");
+        assertEquals("struct Changed {}\n", resolver.read(file));
+
+        resolver.clear();
+        assertEquals("struct Changed {}\n", resolver.read(file));
+    }
+
+    @Test
+    public void parsesWithIncludeDirectories() throws Exception {
+        Path dir = Files.createTempDirectory("thrift");
+        write(dir.resolve("shared/base.thrift"), "struct Base {\n    1: string name,\n}\n");
+        write(dir.resolve("shared/ids.thrift"), "include \"base.thrift\"\ntypedef i64 Id\n");
+        Path file = write(dir.resolve("src/child.thrift"),
+                "include \"ids.thrift\"\nstruct Child {\n    1: ids.Id id,\n}\n");
+
+        ParseResult missing = ThriftParser.parseFile(file, new ParseOptions());
+        assertFalse(missing.succeeded());
+
+        ParseResult result = ThriftParser.parseFile(file,
+                new ParseOptions().includeResolver(new IncludeResolver(dir.resolve("shared"))));
+        assertTrue(result.toString(), result.succeeded());
+        // the include of the included file is found relative to it
+        assertEquals(3, result.document.get().definitions.size());
+    }
+}
@@ -0,0 +1,49 @@
+package com.mitchseymour.thrift.parser;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Measures lexer throughput, and checks that a warmed up lexer tokenizes without allocating.
+ * Allocation is measured with the HotSpot thread allocation counter, where available.
+ * Run with: java -cp ... com.mitchseymour.thrift.parser.LexerBenchmark [seconds]
+ */
+public class LexerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 3;
+        byte[] input = Files.readAllBytes(Paths.get(LexerBenchmark.class.getResource("/testmonkey.thrift").toURI()));
+        ThriftLexer lexer = new ThriftLexer().comments(true);
+
+        for (int round = 0; round < 3; round++) {
+            long tokens = 0;
+            long runs = 0;
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            long deadline = start + (long) (seconds * 1e9);
+            while (System.nanoTime() < deadline) {
+                tokens += lexer.tokenize(input);
+                runs++;
+            }
+            long nanos = System.nanoTime() - start;
+            allocated = allocatedBytes() - allocated;
+            System.out.printf("%10.1f MB/s, %10.1f M tokens/s, %8.3f bytes allocated/run%n",
+                    runs * input.length / (nanos / 1e9) / 1e6, tokens / (nanos / 1e9) / 1e6, (double) allocated / runs);
+        }
+    }
+
+    // com.sun.management.ThreadMXBean#getThreadAllocatedBytes, or 0 if unsupported
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        try {
+            Method method = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+            return (Long) method.invoke(threads, Thread.currentThread().getId());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return 0;
+        }
+    }
+}
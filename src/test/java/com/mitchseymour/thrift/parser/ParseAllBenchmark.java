@@ -0,0 +1,30 @@
+package com.mitchseymour.thrift.parser;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures parseAll throughput over a synthetic corpus at increasing parallelism.
+ * Run with: java -cp ... com.mitchseymour.thrift.parser.ParseAllBenchmark [files]
+ */
+public class ParseAllBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        Path monkey = Paths.get(ParseAllBenchmark.class.getResource("/testmonkey.thrift").toURI());
+        List<Path> corpus = Collections.nCopies(files, monkey);
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        // warm up the pooled parsers
+        ThriftParser.parseAll(corpus, new ParseOptions().parallelism(cores));
+
+        for (int parallelism = 1; parallelism <= cores; parallelism *= 2) {
+            long start = System.nanoTime();
+            ThriftParser.parseAll(corpus, new ParseOptions().parallelism(parallelism));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("parallelism %d: %.0f files/s%n", parallelism, files / seconds);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.mitchseymour.thrift.parser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the time a new JVM takes to parse its first document, with parser classes
+ * generated at runtime and with the classes generated ahead of time by {@link ParserClasses}.
+ * Every run is a separate process, since the cost is paid once per process.
+ * Run with: java -cp ... com.mitchseymour.thrift.parser.StartupBenchmark [runs]
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        String classpath = System.getProperty("java.class.path");
+        Path generated = Files.createTempDirectory("generated-parsers");
+        run(classpath, ParserClasses.class.getName(), generated.toString());
+        String aheadOfTime = generated + File.pathSeparator + classpath;
+
+        for (int round = 0; round < runs; round++) {
+            String runtime = run(classpath, FirstParse.class.getName());
+            String ahead = run(aheadOfTime, FirstParse.class.getName());
+            System.out.printf("runtime generation: %s    ahead of time: %s%n", runtime, ahead);
+        }
+    }
+
+    private static String run(String classpath, String main, String... args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        // Parboiled defines the classes it generates with ClassLoader.defineClass
+        command.addAll(Arrays.asList("--add-opens", "java.base/java.lang=ALL-UNNAMED", "-cp", classpath, main));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line);
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException(String.format("%s failed: %s", main, output));
+        }
+        return output.toString();
+    }
+
+    /** Parses one document and prints the time since the JVM started */
+    public static class FirstParse {
+        public static void main(String[] args) throws Exception {
+            long start = System.nanoTime();
+            if (!ThriftParser.applyAst("struct A {\n    1: string a,\n}\n").isPresent()) {
+                throw new IllegalStateException("Could not parse");
+            }
+            long parse = System.nanoTime() - start;
+            long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+            System.out.printf("first parse %4d ms, process %4d ms", parse / 1000000, uptime);
+        }
+    }
+}
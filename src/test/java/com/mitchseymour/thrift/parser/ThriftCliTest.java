@@ -0,0 +1,82 @@
+package com.mitchseymour.thrift.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+public class ThriftCliTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private int run(String... args) throws Exception {
+        out.reset();
+        err.reset();
+        return new ThriftCli(new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8")).run(args);
+    }
+
+    private static Path corpus() throws Exception {
+        Path dir = Files.createTempDirectory("thrift");
+        Files.createDirectories(dir.resolve("nested"));
+        Files.write(dir.resolve("base.thrift"), "struct Base {\n    1: string name\n}\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("nested/child.thrift"),
+                "include \"../base.thrift\"\nstruct  Child{1:base.Base parent}".getBytes(StandardCharsets.UTF_8));
+        return dir;
+    }
+
+    @Test
+    public void validate() throws Exception {
+        Path dir = corpus();
+        assertEquals(ThriftCli.OK, run("validate", "--threads", "2", dir.toString()));
+        assertEquals("", out.toString("UTF-8"));
+
+        Files.write(dir.resolve("broken.thrift"), "struct Broken {\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(ThriftCli.FAILED, run("validate", "--stats", dir.toString()));
+        assertTrue(out.toString("UTF-8"), out.toString("UTF-8").startsWith(dir.resolve("broken.thrift") + ":2:1: "));
+        assertTrue(err.toString("UTF-8"), err.toString("UTF-8").contains("3 files, 1 failed"));
+        assertTrue(err.toString("UTF-8").contains("thrift.validate: count=3"));
+    }
+
+    @Test
+    public void dump() throws Exception {
+        Path dir = corpus();
+        assertEquals(ThriftCli.OK, run("dump", dir.toString()));
+        String text = out.toString("UTF-8");
+        assertTrue(text, text.startsWith("# " + dir.resolve("base.thrift")));
+        assertTrue(text, text.contains("Struct: Child"));
+
+        assertEquals(ThriftCli.OK, run("dump", "--format", "json", dir.resolve("nested/child.thrift").toString()));
+        String json = out.toString("UTF-8");
+        assertEquals(1, json.split("\n").length);
+        // the include is resolved relative to the file
+        assertTrue(json, json.contains("{\"kind\":\"struct\",\"name\":\"Base\"") && json.contains("\"diagnostics\":[]"));
+    }
+
+    @Test
+    public void format() throws Exception {
+        Path dir = corpus();
+        assertEquals(ThriftCli.FAILED, run("format", "--check", dir.toString()));
+        assertEquals(dir.resolve("nested/child.thrift") + ": not formatted\n", out.toString("UTF-8"));
+
+        assertEquals(ThriftCli.OK, run("format", dir.toString()));
+        assertEquals("include \"../base.thrift\"\n\nstruct Child {\n    1: base.Base parent\n}\n",
+                new String(Files.readAllBytes(dir.resolve("nested/child.thrift")), StandardCharsets.UTF_8));
+        assertEquals(ThriftCli.OK, run("format", "--check", dir.toString()));
+    }
+
+    @Test
+    public void usage() throws Exception {
+        assertEquals(ThriftCli.USAGE, run());
+        assertEquals(ThriftCli.USAGE, run("compile", "a.thrift"));
+        assertEquals(ThriftCli.USAGE, run("validate"));
+        assertEquals(ThriftCli.USAGE, run("dump", "--format", "xml", "a.thrift"));
+        assertEquals(ThriftCli.USAGE, run("validate", "does-not-exist.thrift"));
+        assertTrue(err.toString("UTF-8").contains("No such file"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.mitchseymour.thrift.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ThriftFormatterTest {
+
+    @Test
+    public void layout() {
+        String idl = "// leading comment\n"
+                + "namespace   java   com.example   // trailing\n"
+                + "include \"base.thrift\"\n"
+                + "const map<string,list<i32>> M={\"a\":[1,2],'b':[]};\n"
+                + "/* block\n   comment */\n"
+                + "struct   A  xsd_all{1:required i32 x=0,2:optional list<i32> cpp_type 'v' y ; string name   // name\n"
+                + "\n\n"
+                + "  3: map cpp_type \"M\" <string,i32> m /* inline */ = {}\n"
+                + "  // last\n"
+                + "}\n"
+                + "struct Empty {}\n"
+                + "service S extends base.B{oneway void ping() void pong(1:i32 a,2:i32 b)throws(1:E e);}\n"
+                + "typedef i32 X\n"
+                + "enum E{A=1 B C=3}";
+        assertEquals("// leading comment\n"
+                + "namespace java com.example // trailing\n"
+                + "include \"base.thrift\"\n"
+                + "\n"
+                + "const map<string, list<i32>> M = {\"a\": [1, 2], 'b': []};\n"
+                + "\n"
+                + "/* block\n   comment */\n"
+                + "struct A xsd_all {\n"
+                + "    1: required i32 x = 0,\n"
+                + "    2: optional list<i32> cpp_type 'v' y;\n"
+                + "    string name // name\n"
+                + "\n"
+                + "    3: map cpp_type \"M\" <string, i32> m /* inline */ = {}\n"
+                + "    // last\n"
+                + "}\n"
+                + "\n"
+                + "struct Empty {}\n"
+                + "\n"
+                + "service S extends base.B {\n"
+                + "    oneway void ping()\n"
+                + "    void pong(1: i32 a, 2: i32 b) throws (1: E e);\n"
+                + "}\n"
+                + "\n"
+                + "typedef i32 X\n"
+                + "\n"
+                + "enum E {\n"
+                + "    A = 1\n"
+                + "    B\n"
+                + "    C = 3\n"
+                + "}\n", new ThriftFormatter().format(idl));
+    }
+
+    @Test
+    public void onlyWhitespaceChanges() throws Exception {
+        ThriftFormatter formatter = new ThriftFormatter();
+        for (String file : new String[]{"/testmonkey.thrift", "/struct.thrift", "/gorillas.thrift", "/enum.thrift"}) {
+            String idl = ThriftParser.readFile(file);
+            String formatted = formatter.format(idl);
+            assertEquals(file, tokens(idl), tokens(formatted));
+            assertEquals(file, formatted, formatter.format(formatted));
+        }
+        assertEquals("namespace smalltalk.categoryThrift-Test\nnamespace smalltalk.prefixST\n",
+                formatter.format("namespace  smalltalk.categoryThrift-Test namespace smalltalk.prefixST"));
+        assertEquals("", formatter.format("  \n"));
+    }
+
+    @Test
+    public void cppTypesAndSenums() throws Exception {
+        String formatted = new ThriftFormatter().format(
+                "senum S {'a' , 'b'}\n"
+                        + "struct A { 1: map m, 2: list< i32>cpp_type 'v'l; 3: set cpp_type 'S'<map> s }");
+        assertEquals("senum S {\n"
+                + "    'a',\n"
+                + "    'b'\n"
+                + "}\n"
+                + "\n"
+                + "struct A {\n"
+                + "    1: map m,\n"
+                + "    2: list<i32> cpp_type 'v' l;\n"
+                + "    3: set cpp_type 'S' <map> s\n"
+                + "}\n", formatted);
+        assertTrue(ThriftParser.applyAst(formatted).isPresent());
+    }
+
+    @Test
+    public void invalidInput() {
+        try {
+            new ThriftFormatter().format("struct A {\n    1: i32\n}\n");
+            fail();
+        } catch (ParseException e) {
+            assertTrue(e.getMessage(), e.diagnostics.get(0).contains("line 3, pos 1"));
+        }
+    }
+
+    private static List<String> tokens(String idl) {
+        ThriftLexer lexer = new ThriftLexer().comments(true);
+        int size = lexer.tokenize(idl);
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            tokens.add(lexer.text(i).trim());
+        }
+        return tokens;
+    }
+}
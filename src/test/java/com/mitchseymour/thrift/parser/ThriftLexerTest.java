@@ -0,0 +1,82 @@
+package com.mitchseymour.thrift.parser;
+
+import static com.mitchseymour.thrift.parser.Token.*;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class ThriftLexerTest {
+
+    private static int[] kinds(ThriftLexer lexer, String idl) {
+        return Arrays.copyOf(lexer.kinds(), lexer.tokenize(idl));
+    }
+
+    @Test
+    public void tokens() {
+        ThriftLexer lexer = new ThriftLexer();
+        assertArrayEquals(new int[]{
+                        STRUCT, IDENTIFIER, LBRACE,
+                        INT_CONSTANT, COLON, REQUIRED, MAP, LT, I64, COMMA, LIST, LT, IDENTIFIER, GT, GT, IDENTIFIER,
+                        EQUALS, LBRACE, LITERAL, COLON, LBRACKET, DOUBLE_CONSTANT, COMMA, DOUBLE_CONSTANT, RBRACKET, RBRACE,
+                        SEMICOLON, RBRACE, EOF},
+                kinds(lexer, "struct Structs {\n"
+                        + "  1: required map<i64, list<base.Type>> i64s = {'a': [-1.5, 2e3]};\n"
+                        + "}\n"));
+        assertEquals("base.Type", lexer.text(12));
+        assertEquals("'a'", lexer.text(18));
+        assertEquals("-1.5", lexer.text(21));
+        assertEquals(0, lexer.start(0));
+        assertEquals(6, lexer.end(0));
+        assertEquals(lexer.end(27), lexer.start(28) - 1);
+
+        assertArrayEquals(new int[]{SERVICE, IDENTIFIER, EXTENDS, IDENTIFIER, LBRACE, ONEWAY, VOID, IDENTIFIER,
+                        LPAREN, RPAREN, THROWS, LPAREN, RPAREN, RBRACE, EOF},
+                kinds(lexer, "service S extends _base { oneway void ping() throws () }"));
+    }
+
+    @Test
+    public void comments() {
+        String idl = "// line\nenum /* block */ E {}\n";
+        ThriftLexer lexer = new ThriftLexer();
+        assertArrayEquals(new int[]{ENUM, IDENTIFIER, LBRACE, RBRACE, EOF}, kinds(lexer, idl));
+        lexer.comments(true);
+        assertArrayEquals(new int[]{COMMENT, ENUM, COMMENT, IDENTIFIER, LBRACE, RBRACE, EOF}, kinds(lexer, idl));
+        assertEquals("// line", lexer.text(0));
+        assertEquals("/* block */", lexer.text(2));
+    }
+
+    @Test
+    public void errors() {
+        ThriftLexer lexer = new ThriftLexer();
+        assertArrayEquals(new int[]{IDENTIFIER, ERROR, IDENTIFIER, ERROR, EOF}, kinds(lexer, "a # b 'open"));
+        assertEquals(2, lexer.errors());
+        assertEquals("#", lexer.text(1));
+        assertEquals("'open", lexer.text(3));
+        assertArrayEquals(new int[]{INT_CONSTANT, ERROR, EOF}, kinds(lexer, "1 /* open"));
+        assertArrayEquals(new int[]{STRUCT, IDENTIFIER, LBRACE, ERROR, RBRACE, EOF}, kinds(lexer, "struct A { -}"));
+        assertEquals("-", lexer.text(3));
+    }
+
+    @Test
+    public void growsAndReuses() {
+        ThriftLexer lexer = new ThriftLexer(1);
+        StringBuilder idl = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            idl.append(i).append(", ");
+        }
+        assertEquals(2001, lexer.tokenize(idl.toString()));
+        assertEquals("999", lexer.text(1998));
+        assertEquals(2, lexer.tokenize("x"));
+        assertEquals(2, lexer.size());
+        assertEquals(IDENTIFIER, lexer.kind(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void tokenOutOfRange() {
+        ThriftLexer lexer = new ThriftLexer();
+        lexer.tokenize("x");
+        lexer.kind(2);
+    }
+}
@@ -1,12 +1,27 @@
 package com.mitchseymour.thrift.parser;
 
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 import static com.mitchseymour.thrift.parser.ThriftParser.*;
 
 import com.mitchseymour.thrift.parser.ast.Nodes;
 import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import com.mitchseymour.thrift.parser.metrics.InMemoryMetrics;
+import com.mitchseymour.thrift.parser.metrics.Metrics;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
@@ -56,4 +71,155 @@ public class ThriftParserTest {
         assert(enumValueNode.value.map(intConstNode -> intConstNode.value).orElse(-1) == 0);
         System.out.println(document.printTree());
     }
+
+    @Test
+    public void parserNodes() throws Exception {
+        DocumentNode document = applyAst("cpp_include \"<vector>\"\n"
+                + "senum S {'a', 'b' 'c' }\n"
+                + "struct A {\n    1: list<i32> cpp_type 'std::vector<int>' values\n}\n"
+                + "typedef i32/**/X\n"
+                + "const string URL = \"http://example.com\" // trailing\n").get();
+        assertEquals("<vector>", ((Nodes.CppIncludeNode) document.headers.get(0).value).name);
+
+        List<String> values = new ArrayList<>();
+        ((Nodes.SenumNode) document.definitions.get(0).value).values.forEach(value -> values.add(value.value));
+        assertEquals(Arrays.asList("'a'", "'b'", "'c'"), values);
+
+        Nodes.FieldNode field = document.getFieldsForStruct("A").get(0);
+        Nodes.ListTypeNode list = (Nodes.ListTypeNode) field.fieldType.fieldType;
+        assertEquals("'std::vector<int>'", list.cppType.get().value.value);
+        assertEquals("values", field.getName());
+
+        // a block comment separates tokens, and "//" inside a literal is not a comment
+        assertEquals("X", document.definitions.get(2).value.getName());
+        Nodes.ConstNode constant = (Nodes.ConstNode) document.definitions.get(3).value;
+        assertEquals("URL", constant.getName());
+        assertEquals("\"http://example.com\"", ((Nodes.LiteralNode) constant.value.value).value);
+    }
+
+    @Test
+    public void parseAllFiles() throws Exception {
+        Path dir = Files.createTempDirectory("thrift");
+        Files.write(dir.resolve("base.thrift"),
+                "struct Base {\n    1: string name,\n}\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("child.thrift"),
+                "include \"base.thrift\"\nstruct Child {\n    1: base.Base parent,\n}\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("broken.thrift"),
+                "struct Broken {\n".getBytes(StandardCharsets.UTF_8));
+        Path monkey = Paths.get(getClass().getResource("/testmonkey.thrift").toURI());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<ParseResult> results = parseAll(
+                    Arrays.asList(dir.resolve("child.thrift"), dir.resolve("broken.thrift"), monkey),
+                    new ParseOptions().executor(executor).parallelism(2));
+            assert(results.size() == 3);
+            assert(results.get(0).succeeded());
+            assert(results.get(0).document.get().definitions.size() == 2);
+            assert(!results.get(1).succeeded());
+            assert(!results.get(1).diagnostics.isEmpty());
+            assert(results.get(2).succeeded());
+            assert(results.get(2).document.get().getFieldsForStruct("Gorilla").size() == 2);
+            System.out.println(results);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void parseAllWithThreadPerTask() throws Exception {
+        Path monkey = Paths.get(getClass().getResource("/testmonkey.thrift").toURI());
+        List<Path> files = Collections.nCopies(50, monkey);
+        // no thread is reused, so the rule trees must not be kept per thread
+        ExecutorService executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.SECONDS,
+                new SynchronousQueue<>());
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        Metrics.register(metrics);
+        try {
+            for (boolean memoize : new boolean[]{false, true}) {
+                List<ParseResult> results = parseAll(files,
+                        new ParseOptions().executor(executor).parallelism(2).memoizeMismatches(memoize));
+                assertEquals(files.size(), results.size());
+                for (ParseResult result : results) {
+                    assertTrue(result.diagnostics.toString(), result.succeeded());
+                }
+            }
+            assertTrue(metrics.toString(), metrics.timer(Metrics.PARSER_CREATE).count() <= 4);
+        } finally {
+            Metrics.register(null);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void includeDiagnosticsReachEveryIncluder() throws Exception {
+        Path dir = Files.createTempDirectory("thrift");
+        Files.write(dir.resolve("broken.thrift"), "struct Broken {\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("x.thrift"), "include \"broken.thrift\"\nstruct X {}\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("y.thrift"), "include \"broken.thrift\"\nstruct Y {}\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("a.thrift"), "include \"b.thrift\"\nstruct A {}\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("b.thrift"), "include \"a.thrift\"\nstruct B {}\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("c.thrift"), "include \"b.thrift\"\nstruct C {}\n".getBytes(StandardCharsets.UTF_8));
+
+        IncludeCache includes = new IncludeCache();
+        ParseResult x = parsePath(dir.resolve("x.thrift"), includes);
+        ParseResult y = parsePath(dir.resolve("y.thrift"), includes);
+        assertFalse(x.succeeded());
+        assertFalse(y.succeeded());
+        assertEquals(x.diagnostics, y.diagnostics);
+        assertEquals(1, y.diagnostics.size());
+        assertTrue(y.diagnostics.get(0).startsWith(dir.resolve("broken.thrift") + ": "));
+
+        // b was parsed without a while a was being parsed, so c parses it again with a
+        ParseResult a = parsePath(dir.resolve("a.thrift"), includes);
+        ParseResult c = parsePath(dir.resolve("c.thrift"), includes);
+        assertFalse(a.succeeded());
+        assertFalse(c.succeeded());
+        List<String> names = new ArrayList<>();
+        c.document.get().definitions.forEach(definition -> names.add(definition.value.getName()));
+        assertEquals(Arrays.asList("C", "B", "A"), names);
+    }
+
+    @Test
+    public void memoizeMismatches() throws Exception {
+        Path dir = Files.createTempDirectory("thrift");
+        Path nested = dir.resolve("nested.thrift");
+        Files.write(nested, ("struct Nested {\n    1: map<string, list<set<i32>>> values,\n}\n"
+                + "const map<string, string> NAMES = {\"a\": \"b\", \"c\": \"d\"}\n")
+                .getBytes(StandardCharsets.UTF_8));
+        List<ParseResult> results = parseAll(Arrays.asList(nested, nested),
+                new ParseOptions().memoizeMismatches(true));
+        assert(results.get(0).succeeded());
+        assert(results.get(0).document.get().definitions.size() == 2);
+        assert(results.get(0).document.get().toString().equals(
+                parsePath(nested, new IncludeCache()).document.get().toString()));
+    }
+
+    @Test
+    public void constLiterals() throws IOException {
+        DocumentNode document = applyAst(
+                "const list<double> MIXED = [1, -2.5, 3e2, \"four\", FIVE, [6, [7]], {\"k\": 8}]\n"
+                + "const map<string, list<i32>> NESTED = {\"a\": [1, 2], \"b\": [3]}\n").get();
+        assert(document.definitions.size() == 2);
+
+        Nodes.ConstNode mixed = (Nodes.ConstNode) document.definitions.get(0).value;
+        List<Nodes.ConstListItemNode> items = ((Nodes.ConstListNode) mixed.value.value).values;
+        assert(items.size() == 7);
+        assert(((Nodes.IntConstNode) items.get(0).value).value == 1);
+        assert(((Nodes.DoubleConstNode) items.get(1).value).value == -2.5);
+        assert(((Nodes.DoubleConstNode) items.get(2).value).value == 300.0);
+        assert(((Nodes.LiteralNode) items.get(3).value).value.equals("\"four\""));
+        assert(((Nodes.IdentifierNode) items.get(4).value).name.equals("FIVE"));
+        List<Nodes.ConstListItemNode> inner = ((Nodes.ConstListNode) items.get(5).value).values;
+        assert(inner.size() == 2);
+        assert(((Nodes.ConstListNode) inner.get(1).value).values.size() == 1);
+        assert(((Nodes.ConstMapNode) items.get(6).value).mappings.size() == 1);
+
+        Nodes.ConstNode nested = (Nodes.ConstNode) document.definitions.get(1).value;
+        List<Nodes.ConstMapEntryNode> entries = ((Nodes.ConstMapNode) nested.value.value).mappings;
+        assert(entries.size() == 2);
+        assert(((Nodes.LiteralNode) entries.get(0).key).value.equals("\"a\""));
+        assert(((Nodes.ConstListNode) entries.get(0).value).values.size() == 2);
+        assert(((Nodes.ConstListNode) entries.get(1).value).values.size() == 1);
+    }
 }
@@ -0,0 +1,193 @@
+package com.mitchseymour.thrift.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.mitchseymour.thrift.parser.ast.ThriftAst;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class ThriftValidatorTest {
+
+    @Test
+    public void validFiles() throws Exception {
+        ThriftValidator validator = new ThriftValidator();
+        for (String file : new String[]{"/testmonkey.thrift", "/struct.thrift", "/gorillas.thrift", "/enum.thrift"}) {
+            Path path = Paths.get(getClass().getResource(file).toURI());
+            assertTrue(file + ": " + validator.validate(path) + " " + validator.errorMessage(), validator.errorOffset() < 0);
+            // the validator agrees with the AST parser
+            assertTrue(ThriftParser.parseThriftFileAst(file).isPresent());
+        }
+        assertNull(validator.errorMessage());
+    }
+
+    // every construct of the grammar
+    private static final String CONSTRUCTS = "include \"base.thrift\"\n"
+            + "cpp_include 'vector'\n"
+            + "namespace * all.things\n"
+            + "namespace php things\n"
+            + "namespace smalltalk.categoryThrift-Test\n"
+            + "namespace smalltalk.prefixST\n"
+            + "/* block\n comment */\n"
+            + "const map<string, list<double>> RATES = {\"a\": [1, -2.5, 3e2, .5], 'b': []}; // trailing\n"
+            + "const i64 BIG = 9223372036854775807\n"
+            + "const i64 SMALL = -9223372036854775808 ;\n"
+            + "typedef i32 Count\n"
+            + "enum Color { RED = 1, GREEN; BLUE }\n"
+            + "senum Names { \"a\" , \"b\" }\n"
+            + "struct Point xsd_all { 1: required i32 x = 0 , 2: optional list< i32 > cpp_type 'v' y; string name; map m }\n"
+            + "union Shape { 1: Point point }\n"
+            + "exception Oops { 1: string message }\n"
+            + "service Shapes extends base.Base {\n"
+            + "    oneway void ping(),\n"
+            + "    map cpp_type \"M\" < string, set<i32>> index()\n"
+            + "    Point move(1: Point from, 2: i32 by) throws (1: Oops oops);\n"
+            + "    list<i32> cpp_type() throws y()\n"
+            + "}\n";
+
+    @Test
+    public void validConstructs() {
+        assertTrue(ThriftValidator.isValid(""));
+        assertTrue(ThriftValidator.isValid(CONSTRUCTS));
+        assertTrue(parses(CONSTRUCTS));
+        // whitespace the Apache compiler accepts
+        for (String idl : new String[]{"struct A { 1: list< i32> l }",
+                "struct A { 1: map cpp_type 'M' <i32, i32> m }", "const i32 X = 1 ,", "senum S { 'a' }"}) {
+            assertTrue(idl, ThriftValidator.isValid(idl));
+            assertTrue(idl, parses(idl));
+        }
+    }
+
+    @Test
+    public void rejectsWhatTheAstParserRejects() {
+        String[] invalid = {
+                // the grammar takes the names of smalltalk scopes without whitespace
+                "namespace smalltalk.category Thrift",
+                "namespace smalltalk.prefix ST",
+                // an int may not run into a fraction
+                "enum E { A = 1. }",
+                // the AST parser cannot build these
+                "const i64 X = 9223372036854775808",
+                "typedef list<i32> L",
+                "php_namespace 'x'",
+        };
+        ThriftValidator validator = new ThriftValidator();
+        for (String idl : invalid) {
+            assertFalse(idl, validator.validate(idl));
+            assertFalse(idl, parses(idl));
+        }
+    }
+
+    @Test
+    public void agreesWithAstParser() throws Exception {
+        List<String> seeds = new ArrayList<>();
+        for (String file : new String[]{"/testmonkey.thrift", "/struct.thrift", "/gorillas.thrift", "/enum.thrift"}) {
+            seeds.add(ThriftParser.readFile(file));
+        }
+        seeds.add(CONSTRUCTS);
+        String inserts = " \n,;:<>{}()[]=.-'\"1eEx";
+        Random random = new Random(39);
+        ThriftValidator validator = new ThriftValidator();
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder idl = new StringBuilder(seeds.get(random.nextInt(seeds.size())));
+            for (int edits = 1 + random.nextInt(3); edits > 0 && idl.length() > 0; edits--) {
+                int at = random.nextInt(idl.length());
+                if (random.nextBoolean()) {
+                    idl.deleteCharAt(at);
+                } else {
+                    idl.insert(at, inserts.charAt(random.nextInt(inserts.length())));
+                }
+            }
+            String mutated = idl.toString();
+            boolean valid = validator.validate(mutated);
+            boolean parsed = parses(mutated);
+            if (valid != parsed && !(parsed && gluedKeyword(mutated))) {
+                fail(String.format("validator %s, AST parser %s: %s", valid, parsed, mutated));
+            }
+        }
+    }
+
+    // the AST parser, without resolving includes; exceptions of its actions count as rejects
+    private static boolean parses(String idl) {
+        try {
+            return new ThriftAst().parseThriftIdl(idl).isPresent();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    // the AST parser also takes a keyword that runs into the name after it, e.g. "structA {}"
+    private static boolean gluedKeyword(String idl) {
+        ThriftLexer lexer = new ThriftLexer();
+        int size = lexer.tokenize(idl);
+        for (int token = 0; token < size; token++) {
+            if (lexer.kind(token) != Token.IDENTIFIER) {
+                continue;
+            }
+            String text = lexer.text(token);
+            for (int kind = Token.FIRST_KEYWORD; kind < Token.KINDS; kind++) {
+                if (text.length() > Token.name(kind).length() && text.startsWith(Token.name(kind))) {
+                    return true;
+                }
+            }
+            for (String scope : new String[]{"cpp", "java", "py", "perl", "php", "rb", "cocoa", "csharp"}) {
+                if (text.length() > scope.length() && text.startsWith(scope)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void firstError() {
+        ThriftValidator validator = new ThriftValidator();
+        assertFalse(validator.validate("struct Point {\n    1: i32 x,\n    2: i32 = 5\n}\n"));
+        assertEquals("identifier", validator.expected());
+        assertEquals(3, validator.errorLine());
+        assertEquals(12, validator.errorColumn());
+        assertEquals("Expected identifier, found '=' (line 3, pos 12)", validator.errorMessage());
+
+        assertFalse(validator.validate("struct Point {\n    1: i32 x,\n"));
+        assertEquals("Expected field type, found end of input (line 3, pos 1)", validator.errorMessage());
+
+        assertFalse(validator.validate("const string S = \"unterminated\n"));
+        assertEquals("invalid token", Token.name(Token.ERROR));
+        assertEquals(1, validator.errorLine());
+        assertEquals(18, validator.errorColumn());
+
+        // headers must come before definitions
+        assertFalse(validator.validate("struct A {}\ninclude \"b.thrift\"\n"));
+        assertEquals("definition", validator.expected());
+
+        assertFalse(validator.validate("namespace go example\n"));
+        assertEquals("namespace scope", validator.expected());
+
+        assertFalse(validator.validate("typedef Point Alias\n"));
+        assertFalse(validator.validate("const i32 X = 1 /* unterminated"));
+        assertFalse(validator.validate("enum E { A = 1.5 }"));
+        assertFalse(validator.validate("const list<i32> L = [1, 2"));
+
+        // the validator can be reused after an error
+        assertTrue(validator.validate("struct A {}"));
+        assertEquals(-1, validator.errorOffset());
+    }
+
+    @Test
+    public void offsets() throws IOException {
+        byte[] input = "xxstruct A { 1: }yy".getBytes("UTF-8");
+        ThriftValidator validator = new ThriftValidator();
+        assertFalse(validator.validate(input, 2, input.length - 4));
+        assertEquals(14, validator.errorOffset());
+        assertEquals(15, validator.errorColumn());
+    }
+}
@@ -0,0 +1,50 @@
+package com.mitchseymour.thrift.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Compares the throughput of the hand-written validator with the Parboiled recognizer.
+ * Run with: java -cp ... com.mitchseymour.thrift.parser.ValidatorBenchmark [seconds]
+ */
+public class ValidatorBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 3;
+        Path monkey = Paths.get(ValidatorBenchmark.class.getResource("/testmonkey.thrift").toURI());
+        String idl = new String(Files.readAllBytes(monkey), StandardCharsets.UTF_8);
+        byte[] bytes = idl.getBytes(StandardCharsets.UTF_8);
+
+        ThriftValidator validator = new ThriftValidator();
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            long deadline = start + (long) (seconds * 1e9);
+            long runs = 0;
+            while (System.nanoTime() < deadline) {
+                if (!validator.validate(bytes)) {
+                    throw new RuntimeException(validator.errorMessage());
+                }
+                runs++;
+            }
+            report("validator", runs, bytes.length, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            deadline = start + (long) (seconds * 1e9);
+            runs = 0;
+            while (System.nanoTime() < deadline) {
+                if (!ThriftParser.apply(idl).matched) {
+                    throw new RuntimeException("Benchmark document does not parse");
+                }
+                runs++;
+            }
+            report("recognizer", runs, bytes.length, System.nanoTime() - start);
+        }
+    }
+
+    private static void report(String name, long runs, int size, long nanos) {
+        System.out.printf("%-10s %10.1f MB/s, %8.2f us/file%n",
+                name, runs * size / (nanos / 1e9) / 1e6, nanos / 1e3 / runs);
+    }
+}
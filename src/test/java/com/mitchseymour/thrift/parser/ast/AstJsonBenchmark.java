@@ -0,0 +1,106 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import com.mitchseymour.thrift.parser.json.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Compares {@link AstJson} with serializing the nodes by reflection over their public fields,
+ * the way a data binding library does without custom serializers, on a large generated document.
+ * Both write to the same {@link JsonWriter}, so the difference is the cost of the reflection.
+ * Run with: java -cp ... com.mitchseymour.thrift.parser.ast.AstJsonBenchmark [structs]
+ */
+public class AstJsonBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int structs = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Nodes.DocumentNode document = new ThriftAst().parseThriftIdl(LazyDocumentBenchmark.document(structs)).get();
+        CountingStream sink = new CountingStream();
+
+        for (int round = 0; round < 10; round++) {
+            sink.bytes = 0;
+            long start = System.nanoTime();
+            AstJson.write(document, sink);
+            long handNanos = System.nanoTime() - start;
+            long handBytes = sink.bytes;
+
+            sink.bytes = 0;
+            start = System.nanoTime();
+            JsonWriter writer = new JsonWriter(sink);
+            new Reflective().write(document, writer);
+            writer.flush();
+            long reflectiveNanos = System.nanoTime() - start;
+
+            System.out.printf("round %d: AstJson %.1f ms (%d bytes), reflection %.1f ms (%d bytes)%n",
+                    round, handNanos / 1e6, handBytes, reflectiveNanos / 1e6, sink.bytes);
+        }
+    }
+
+    private static class CountingStream extends OutputStream {
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+
+    // writes the public fields of every object, and Optionals as objects, like a bean serializer
+    private static class Reflective {
+        private final Map<Class<?>, Field[]> fields = new HashMap<>();
+
+        void write(Object value, JsonWriter out) throws IOException, IllegalAccessException {
+            if (value == null) {
+                out.nullValue();
+            } else if (value instanceof String) {
+                out.value((String) value);
+            } else if (value instanceof Number) {
+                out.value(((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                out.value((Boolean) value);
+            } else if (value instanceof Class) {
+                out.value(((Class<?>) value).getName());
+            } else if (value instanceof Optional) {
+                Optional<?> optional = (Optional<?>) value;
+                out.beginObject().name("present").value(optional.isPresent());
+                if (optional.isPresent()) {
+                    out.name("value");
+                    write(optional.get(), out);
+                }
+                out.endObject();
+            } else if (value instanceof Collection) {
+                out.beginArray();
+                for (Object item : (Collection<?>) value) {
+                    write(item, out);
+                }
+                out.endArray();
+            } else {
+                out.beginObject();
+                for (Field field : fields.computeIfAbsent(value.getClass(), Reflective::publicFields)) {
+                    out.name(field.getName());
+                    write(field.get(value), out);
+                }
+                out.endObject();
+            }
+        }
+
+        private static Field[] publicFields(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Field field : type.getFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    fields.add(field);
+                }
+            }
+            return fields.toArray(new Field[0]);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.*;
+import com.mitchseymour.thrift.parser.json.JsonWriter;
+import java.io.ByteArrayOutputStream;
+import org.junit.Test;
+
+public class AstJsonTest {
+
+    private static String json(String idl) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AstJson.write(new ThriftAst().parseThriftIdl(idl).get(), out);
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void writesHeadersAndDefinitions() throws Exception {
+        String json = json("include \"shared.thrift\"\nnamespace java com.example\n"
+                + "typedef i32 Id\n"
+                + "enum Color {\n    RED = 1,\n    GREEN\n}\n"
+                + "struct Monkey {\n"
+                + "    1: required string name = \"bob\",\n"
+                + "    2: optional list<map<string, Id>> tags,\n"
+                + "    3: Color color\n"
+                + "}\n");
+        assertEquals("{\"headers\":["
+                + "{\"kind\":\"include\",\"path\":\"shared.thrift\"},"
+                + "{\"kind\":\"namespace\",\"scope\":\"java\",\"name\":\"com.example\"}],"
+                + "\"definitions\":["
+                + "{\"kind\":\"typedef\",\"name\":\"Id\",\"type\":{\"kind\":\"base\",\"name\":\"i32\"}},"
+                + "{\"kind\":\"enum\",\"name\":\"Color\",\"values\":[{\"name\":\"RED\",\"value\":1},{\"name\":\"GREEN\"}]},"
+                + "{\"kind\":\"struct\",\"name\":\"Monkey\",\"fields\":["
+                + "{\"id\":1,\"name\":\"name\",\"type\":{\"kind\":\"base\",\"name\":\"string\"},\"default\":\"bob\"},"
+                + "{\"id\":2,\"name\":\"tags\",\"type\":{\"kind\":\"list\",\"element\":{\"kind\":\"map\","
+                + "\"key\":{\"kind\":\"base\",\"name\":\"string\"},\"value\":{\"kind\":\"ref\",\"name\":\"Id\"}}}},"
+                + "{\"id\":3,\"name\":\"color\",\"type\":{\"kind\":\"ref\",\"name\":\"Color\"}}]}]}", json);
+    }
+
+    @Test
+    public void writesServices() throws Exception {
+        String json = json("exception Oops {\n    1: string why\n}\n"
+                + "service Zoo extends shared.Base {\n"
+                + "    void feed(1: i64 id) throws (1: Oops oops),\n"
+                + "    set<i32> ids()\n"
+                + "}\n");
+        assertTrue(json, json.contains("{\"kind\":\"service\",\"name\":\"Zoo\",\"extends\":\"shared.Base\",\"functions\":["
+                + "{\"name\":\"feed\",\"returnType\":{\"kind\":\"void\"},"
+                + "\"arguments\":[{\"id\":1,\"name\":\"id\",\"type\":{\"kind\":\"base\",\"name\":\"i64\"}}],"
+                + "\"throws\":[{\"id\":1,\"name\":\"oops\",\"type\":{\"kind\":\"ref\",\"name\":\"Oops\"}}]},"
+                + "{\"name\":\"ids\",\"returnType\":{\"kind\":\"set\",\"element\":{\"kind\":\"base\",\"name\":\"i32\"}},"
+                + "\"arguments\":[]}]}"));
+    }
+
+    @Test
+    public void writesConstants() throws Exception {
+        String json = json("const list<i64> IDS = [1, 2, -3]\n"
+                + "const map<string, double> RATES = {'a': 1.5, \"b\\c\": 2}\n"
+                + "const Color FAVORITE = Color.RED\n"
+                + "const list<list<string>> NESTED = [[\"x\"], []]\n");
+        assertTrue(json, json.contains("\"name\":\"IDS\",\"type\":{\"kind\":\"list\",\"element\":{\"kind\":\"base\","
+                + "\"name\":\"i64\"}},\"value\":[1,2,-3]}"));
+        assertTrue(json, json.contains("\"value\":{\"map\":[[\"a\",1.5],[\"b\\\\c\",2]]}"));
+        assertTrue(json, json.contains("\"value\":{\"ref\":\"Color.RED\"}"));
+        assertTrue(json, json.contains("\"value\":[[\"x\"],[]]"));
+    }
+
+    @Test
+    public void writesSingleNodes() throws Exception {
+        StructNode struct = (StructNode) new ThriftAst()
+                .parseThriftIdl("struct A {\n    1: string a = \"\u00e9\",\n}\n").get().definitions.get(0).value;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(out);
+        AstJson.write(struct.fields.get(0), writer);
+        writer.flush();
+        assertEquals("{\"id\":1,\"name\":\"a\",\"type\":{\"kind\":\"base\",\"name\":\"string\"},\"default\":\"\u00e9\"}",
+                out.toString("UTF-8"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+
+import java.util.Optional;
+
+/**
+ * Parses generated const tables of increasing size, to check that const literal parsing
+ * stays linear in the size of the input, and measures the heap retained by an i64 table.
+ * Run with: java -cp ... com.mitchseymour.thrift.parser.ast.ConstTableBenchmark [max elements]
+ */
+public class ConstTableBenchmark {
+
+    public static void main(String[] args) {
+        int max = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        // warm up
+        parse(table(1000));
+        parse(table(1000));
+
+        for (int elements = 1000; elements <= max; elements *= 10) {
+            String idl = table(elements);
+            long start = System.nanoTime();
+            parse(idl);
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%7d elements, %9d chars: %8.1f ms, %6.0f ns/char%n",
+                    elements, idl.length(), nanos / 1e6, (double) nanos / idl.length());
+        }
+
+        String idl = longTable(max);
+        // the parser keeps state of its last run, so leave a small one behind first
+        parse("const i32 SMALL = 1\n");
+        long before = usedHeap();
+        Optional<DocumentNode> document = new ThriftAst().parseThriftIdl(idl);
+        parse("const i32 SMALL = 1\n");
+        long retained = usedHeap() - before;
+        System.out.printf("%7d element i64 list retains %d bytes, %.1f bytes/element%n",
+                ((Nodes.ConstListNode) ((Nodes.ConstNode) document.get().definitions.get(0).value).value.value).size(),
+                retained, (double) retained / max);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void parse(String idl) {
+        Optional<DocumentNode> document = new ThriftAst().parseThriftIdl(idl);
+        if (!document.isPresent()) {
+            throw new RuntimeException("Benchmark document does not parse");
+        }
+    }
+
+    static String longTable(int elements) {
+        StringBuilder idl = new StringBuilder("const list<i64> IDS = [");
+        for (int i = 0; i < elements; i++) {
+            idl.append(i * 1000003L).append(", ");
+        }
+        return idl.append("]\n").toString();
+    }
+
+    // a lookup table of mixed values, a string to double map and a nested list of lists
+    static String table(int elements) {
+        StringBuilder idl = new StringBuilder("const list<i32> TABLE = [");
+        for (int i = 0; i < elements; i++) {
+            idl.append(i % 3 == 0 ? String.valueOf(i) : i % 3 == 1 ? i + ".5" : "\"v" + i + "\"").append(", ");
+        }
+        idl.append("]\nconst map<string, double> RATES = {\n");
+        for (int i = 0; i < elements; i++) {
+            idl.append("    \"k").append(i).append("\": ").append(i).append(".25,\n");
+        }
+        idl.append("}\nconst list<list<i32>> NESTED = [");
+        for (int i = 0; i < elements / 10; i++) {
+            idl.append("[[").append(i).append(", ").append(i + 1).append("], [").append(i).append("]], ");
+        }
+        return idl.append("]\n").toString();
+    }
+}
@@ -0,0 +1,88 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.mitchseymour.thrift.parser.ThriftParser;
+import com.mitchseymour.thrift.parser.ast.Nodes.*;
+import java.io.IOException;
+import org.junit.Test;
+
+public class ConstTableTest {
+
+    private static AstNode constValue(String idl) throws IOException {
+        DocumentNode document = ThriftParser.applyAst(idl).get();
+        return ((ConstNode) document.definitions.get(0).value).value.value;
+    }
+
+    @Test
+    public void primitiveLists() throws IOException {
+        ConstListNode longs = (ConstListNode) constValue(
+                "const list<i64> IDS = [1, -2, 9223372036854775807]\n");
+        assertEquals(ConstKind.INT, longs.kind());
+        assertEquals(3, longs.size());
+        assertEquals(-2, longs.getLong(1));
+        assertEquals(Long.MAX_VALUE, longs.getLong(2));
+        IntConstNode item = (IntConstNode) longs.values.get(2).value;
+        assertEquals(Long.MAX_VALUE, item.longValue);
+        assertEquals(null, item.value);
+        assertEquals(Integer.valueOf(1), ((IntConstNode) longs.get(0)).value);
+
+        ConstListNode doubles = (ConstListNode) constValue("const list<double> RATES = [0.5, 1e3]\n");
+        assertEquals(ConstKind.DOUBLE, doubles.kind());
+        assertEquals(1000.0, doubles.getDouble(1), 0);
+
+        ConstListNode literals = (ConstListNode) constValue("const list<string> NAMES = [\"a\", 'b']\n");
+        assertEquals(ConstKind.LITERAL, literals.kind());
+        assertEquals("b", literals.getLiteral(1));
+        assertEquals("\"a\"", ((LiteralNode) literals.values.get(0).value).value);
+
+        ConstListNode mixed = (ConstListNode) constValue("const list<i64> MIXED = [1, 2.5]\n");
+        assertEquals(ConstKind.MIXED, mixed.kind());
+        assertTrue(mixed.get(1) instanceof DoubleConstNode);
+        assertEquals(ConstKind.MIXED, ((ConstListNode) constValue("const list<i64> EMPTY = []\n")).kind());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void primitiveAccessOfOtherKind() throws IOException {
+        ((ConstListNode) constValue("const list<string> NAMES = [\"a\"]\n")).getLong(0);
+    }
+
+    @Test
+    public void mapLookup() throws IOException {
+        ConstMapNode names = (ConstMapNode) constValue(
+                "const map<string, i32> IDS = {\"a\": 1, 'b': 2, \"a\": 3}\n");
+        assertEquals(ConstKind.LITERAL, names.keyKind());
+        assertEquals(ConstKind.INT, names.valueKind());
+        assertEquals(3, names.mappings.size());
+        // the last entry wins
+        assertEquals(3, ((IntConstNode) names.get("a").get()).longValue);
+        assertEquals(2, ((IntConstNode) names.get("b").get()).longValue);
+        assertFalse(names.get("c").isPresent());
+        assertFalse(names.get(1).isPresent());
+
+        ConstMapNode ids = (ConstMapNode) constValue("const map<i64, list<i32>> LISTS = {1: [1], 2: [2, 3]}\n");
+        assertEquals(ConstKind.MIXED, ids.valueKind());
+        assertEquals(2, ((ConstListNode) ids.get(2).get()).size());
+
+        ConstMapNode enums = (ConstMapNode) constValue("const map<Color, i32> CODES = {Color.RED: 1, \"x\": 2}\n");
+        assertEquals(ConstKind.MIXED, enums.keyKind());
+        assertEquals(1, ((IntConstNode) enums.get("Color.RED").get()).longValue);
+        assertEquals(2, ((IntConstNode) enums.get("x").get()).longValue);
+    }
+
+    @Test
+    public void largeMapLookup() throws IOException {
+        StringBuilder idl = new StringBuilder("const map<i64, string> NAMES = {");
+        for (int i = 0; i < 5000; i++) {
+            idl.append(i * 7L).append(": \"name").append(i).append("\", ");
+        }
+        ConstMapNode names = (ConstMapNode) constValue(idl.append("}\n").toString());
+        assertEquals(5000, names.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("\"name" + i + "\"", ((LiteralNode) names.get(i * 7L).get()).value);
+            assertFalse(names.get(i * 7L + 1).isPresent());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import static org.junit.Assert.*;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.parboiled.support.ToStringFormatter;
+import org.parboiled.trees.GraphUtils;
+
+public class FrozenDocumentNodeTest {
+
+    private static DocumentNode parse(String idl) {
+        return new ThriftAst().parseThriftIdl(idl).get();
+    }
+
+    private static List<String> trees(List<DefinitionNode> definitions) {
+        List<String> trees = new ArrayList<>();
+        for (DefinitionNode definition : definitions) {
+            trees.add(GraphUtils.printTree(definition, new ToStringFormatter<AstNode>()));
+        }
+        return trees;
+    }
+
+    @Test
+    public void freezeCopiesOnce() {
+        DocumentNode document = parse("namespace java a\nstruct A {\n    1: string a,\n}\nstruct B {\n    1: i32 b,\n}\n");
+        FrozenDocumentNode frozen = document.freeze();
+        assertSame(frozen, frozen.freeze());
+        assertEquals(trees(document.definitions), trees(frozen.definitions));
+        assertEquals(document.headers, frozen.headers);
+
+        // the frozen copy does not follow the document
+        document.addDefinitions(new ArrayList<>(parse("enum C {\n    X\n}\n").definitions));
+        assertEquals(3, document.definitions.size());
+        assertEquals(2, frozen.definitions.size());
+        assertEquals(1, frozen.getFieldsForStruct("B").size());
+    }
+
+    @Test
+    public void rejectsModification() {
+        FrozenDocumentNode frozen = parse("struct A {\n    1: string a,\n}\n").freeze();
+        try {
+            frozen.definitions.add(frozen.definitions.get(0));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            frozen.addHeaders(Collections.emptyList());
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void freezesMemberLists() {
+        DocumentNode document = parse("struct A {\n    1: string a,\n}\n"
+                + "exception E {\n    1: string e,\n}\n"
+                + "enum C {\n    X\n}\n"
+                + "service S {\n    void ping()\n}\n");
+        FrozenDocumentNode frozen = document.freeze();
+        StructNode struct = (StructNode) frozen.definitions.get(0).value;
+        ExceptionNode exception = (ExceptionNode) frozen.definitions.get(1).value;
+        EnumNode enumNode = (EnumNode) frozen.definitions.get(2).value;
+        ServiceNode service = (ServiceNode) frozen.definitions.get(3).value;
+        List<Runnable> modifications = Arrays.asList(
+                () -> struct.fields.add(struct.fields.get(0)),
+                () -> exception.fields.remove(0),
+                () -> enumNode.values.clear(),
+                () -> service.functions.set(0, service.functions.get(0)));
+        for (Runnable modification : modifications) {
+            try {
+                modification.run();
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+        }
+        assertSame(struct.fields, frozen.freeze().getFieldsForStruct("A"));
+
+        // the document keeps its own lists, and shares the nodes in them
+        List<FieldNode> fields = document.getFieldsForStruct("A");
+        assertSame(fields.get(0), struct.fields.get(0));
+        fields.add(fields.get(0));
+        assertEquals(2, fields.size());
+        assertEquals(1, struct.fields.size());
+        assertNotSame(struct.fields, document.freeze().getFieldsForStruct("A"));
+        assertEquals(2, document.freeze().getFieldsForStruct("A").size());
+        assertEquals(1, ((ServiceNode) document.definitions.get(3).value).functions.size());
+        assertEquals("ping", service.functions.get(0).getName());
+    }
+
+    @Test
+    public void mergeSharesLists() {
+        FrozenDocumentNode main = parse("include \"a.thrift\"\ninclude \"b.thrift\"\nstruct Main {\n    1: string m,\n}\n").freeze();
+        FrozenDocumentNode a = parse("namespace java a\nstruct A1 {\n    1: string a,\n}\nstruct A2 {\n    1: string a,\n}\n").freeze();
+        FrozenDocumentNode b = parse("enum B {\n    X\n}\n").freeze();
+        FrozenDocumentNode empty = parse("").freeze();
+
+        FrozenDocumentNode merged = main.merge(Arrays.asList(a, empty, b));
+        List<String> names = new ArrayList<>();
+        for (DefinitionNode definition : merged.definitions) {
+            names.add(definition.value.getName());
+        }
+        assertEquals(Arrays.asList("Main", "A1", "A2", "B"), names);
+        assertSame(a.definitions.get(1), merged.definitions.get(2));
+        assertSame(b.definitions.get(0), merged.definitions.get(3));
+        assertEquals(3, merged.headers.size());
+        assertEquals(Arrays.asList("a.thrift", "b.thrift"), merged.getIncludeFiles());
+
+        // merging merged documents keeps sharing the same segments
+        FrozenDocumentNode twice = parse("struct Top {\n    1: string t,\n}\n").freeze().merge(Arrays.asList(merged, a));
+        assertEquals(7, twice.definitions.size());
+        assertSame(b.definitions.get(0), twice.definitions.get(4));
+        assertSame(a.definitions.get(0), twice.definitions.get(5));
+        assertSame(main, main.merge(Collections.emptyList()));
+    }
+}
@@ -0,0 +1,44 @@
+package com.mitchseymour.thrift.parser.ast;
+
+/**
+ * Compares parsing a large generated document eagerly with indexing it lazily and parsing a
+ * single definition.
+ * Run with: java -cp ... com.mitchseymour.thrift.parser.ast.LazyDocumentBenchmark [structs]
+ */
+public class LazyDocumentBenchmark {
+
+    public static void main(String[] args) {
+        int structs = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        String idl = document(structs);
+        String wanted = "Struct" + structs / 2;
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            Nodes.DocumentNode eager = new ThriftAst().parseThriftIdl(idl).get();
+            long eagerNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            LazyDocument lazy = LazyDocument.parse(idl).get();
+            long indexNanos = System.nanoTime() - start;
+            lazy.definition(wanted).get();
+            long lazyNanos = System.nanoTime() - start;
+
+            System.out.printf("%d lines: eager %.1f ms, lazy index %.1f ms, index and one struct %.1f ms (%d definitions)%n",
+                    idl.split("\n").length, eagerNanos / 1e6, indexNanos / 1e6, lazyNanos / 1e6,
+                    eager.definitions.size());
+        }
+    }
+
+    static String document(int structs) {
+        StringBuilder idl = new StringBuilder("namespace java com.example\n\n");
+        for (int i = 0; i < structs; i++) {
+            idl.append("struct Struct").append(i).append(" {\n");
+            for (int field = 1; field <= 8; field++) {
+                idl.append("    ").append(field).append(": optional map<string, list<i64>> field").append(field)
+                        .append(" = {\"a\": [1, 2, 3]},\n");
+            }
+            idl.append("}\n\n");
+        }
+        return idl.toString();
+    }
+}
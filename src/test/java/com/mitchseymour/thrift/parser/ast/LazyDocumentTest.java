@@ -0,0 +1,97 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.mitchseymour.thrift.parser.ParseException;
+import com.mitchseymour.thrift.parser.ThriftParser;
+import com.mitchseymour.thrift.parser.ast.Nodes.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import org.junit.Test;
+
+public class LazyDocumentTest {
+
+    private static String monkeys() throws Exception {
+        return ThriftParser.readFile("/testmonkey.thrift");
+    }
+
+    @Test
+    public void index() throws Exception {
+        LazyDocument lazy = LazyDocument.parse(monkeys()).get();
+        DocumentNode eager = new ThriftAst().parseThriftIdl(monkeys()).get();
+
+        assertEquals(eager.headers.size(), lazy.headers.size());
+        assertEquals(eager.definitions.size(), lazy.entries().size());
+        for (int i = 0; i < eager.definitions.size(); i++) {
+            DefinitionNode definition = eager.definitions.get(i);
+            LazyDocument.Entry entry = lazy.entries().get(i);
+            assertEquals(definition.type, entry.type);
+            assertEquals(definition.value.getName(), entry.name);
+        }
+        assertEquals(0, lazy.parsed());
+
+        LazyDocument.Entry monkey = lazy.entry("Monkey").get();
+        assertTrue(monkey.source().startsWith("struct Monkey {"));
+        assertTrue(monkey.source().endsWith("}"));
+        assertEquals("const list<i64> FOREST_SECTIONS = [1,2]", lazy.entry("FOREST_SECTIONS").get().source().trim());
+        assertEquals("typedef string MonkeyType", lazy.entry("MonkeyType").get().source());
+        assertFalse(lazy.entry("Gorilla").isPresent());
+    }
+
+    @Test
+    public void parsesOnDemand() throws Exception {
+        LazyDocument lazy = LazyDocument.parse(monkeys()).get();
+        StructNode monkey = (StructNode) lazy.definition("Monkey").get().value;
+        assertEquals(7, monkey.fields.size());
+        assertEquals(1, lazy.parsed());
+        assertSame(monkey, lazy.definition("Monkey").get().value);
+
+        DocumentNode document = lazy.toDocument();
+        assertEquals(lazy.entries().size(), lazy.parsed());
+        assertEquals(new ThriftAst().parseThriftIdl(monkeys()).get().printTree(), document.printTree());
+    }
+
+    @Test
+    public void parsesOncePerDefinition() throws Exception {
+        LazyDocument lazy = LazyDocument.parse(monkeys()).get();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<DefinitionNode>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return lazy.definition("Chimp").get();
+                }));
+            }
+            start.countDown();
+            for (Future<DefinitionNode> future : futures) {
+                assertSame(futures.get(0).get(), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void errors() {
+        assertFalse(LazyDocument.parse("struct Open {\n    1: string name,\n").isPresent());
+        assertFalse(LazyDocument.parse("struct A {} # junk").isPresent());
+        assertFalse(LazyDocument.parse("const i32 = 1").isPresent());
+
+        // errors inside a body are found when it is parsed
+        LazyDocument lazy = LazyDocument.parse("struct Good { 1: i32 x }\n\nstruct Bad { 1: i32 }\n").get();
+        assertEquals(2, lazy.entries().size());
+        assertTrue(lazy.definition("Good").isPresent());
+        try {
+            lazy.definition("Bad");
+            throw new AssertionError("Bad was parsed");
+        } catch (ParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Cannot parse struct Bad at line 3"));
+        }
+    }
+}
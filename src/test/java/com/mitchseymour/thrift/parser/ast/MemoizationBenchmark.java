@@ -0,0 +1,70 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import org.parboiled.Parboiled;
+import org.parboiled.Rule;
+import org.parboiled.parserunners.ProfilingParseRunner;
+import org.parboiled.parserunners.ReportingParseRunner;
+
+/**
+ * Compares parsing with and without mismatch memoization on deeply nested container
+ * types and const literals.
+ * Run with: java -cp ... com.mitchseymour.thrift.parser.ast.MemoizationBenchmark [depth] [iterations]
+ */
+public class MemoizationBenchmark {
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        String idl = nested(depth);
+        Rule plain = Parboiled.createParser(ThriftAst.class).Document();
+        Rule memoizing = Parboiled.createParser(MemoizingThriftAst.class).Document();
+
+        for (int round = 0; round < 3; round++) {
+            System.out.printf("plain:     %.1f us/doc%n", measure(plain, idl, iterations));
+            System.out.printf("memoizing: %.1f us/doc%n", measure(memoizing, idl, iterations));
+        }
+        // memoized mismatches still count as (re)invocations, but return without running sub rules
+        for (Rule rule : new Rule[]{plain, memoizing}) {
+            ProfilingParseRunner<Object> profiler = new ProfilingParseRunner<>(rule);
+            profiler.run(idl);
+            ProfilingParseRunner.Report report = profiler.getReport();
+            System.out.printf("%s: %d invocations, %d reinvocations%n",
+                    rule == plain ? "plain" : "memoizing", report.totalInvocations, report.reinvocations);
+        }
+    }
+
+    private static double measure(Rule document, String idl, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (!new ReportingParseRunner<Object>(document).run(idl).matched) {
+                throw new RuntimeException("Benchmark document does not parse");
+            }
+        }
+        return (System.nanoTime() - start) / 1e3 / iterations;
+    }
+
+    static String nested(int depth) {
+        StringBuilder idl = new StringBuilder("struct Nested {\n");
+        for (int field = 1; field <= depth; field++) {
+            StringBuilder type = new StringBuilder("i32");
+            for (int level = 0; level < field; level++) {
+                switch (level % 3) {
+                    case 0: type.insert(0, "list<").append(">"); break;
+                    case 1: type.insert(0, "map<string, ").append(">"); break;
+                    default: type.insert(0, "set<").append(">"); break;
+                }
+            }
+            idl.append(String.format("    %d: %s field%d,%n", field, type, field));
+        }
+        idl.append("}\n\n");
+        for (int i = 0; i < depth; i++) {
+            StringBuilder value = new StringBuilder("[1, 2, 3]");
+            for (int level = 0; level < i; level++) {
+                value.insert(0, String.format("{\"k%d\": ", level)).append("}");
+            }
+            idl.append(String.format("const map<string, string> CONST%d = %s%n", i, value));
+            idl.append(String.format("const list<string> NAMES%d = [\"a\", \"b\", \"c\", NAME]%n", i));
+        }
+        return idl.toString();
+    }
+}
@@ -0,0 +1,158 @@
+package com.mitchseymour.thrift.parser.ast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.mitchseymour.thrift.parser.ThriftParser;
+import com.mitchseymour.thrift.parser.ast.Nodes.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.parboiled.support.ParsingResult;
+import org.junit.Test;
+
+public class ParseListenerTest {
+
+    private static class Recorder implements ParseListener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onHeader(HeaderNode header) {
+            events.add("header");
+        }
+
+        @Override
+        public void onStructStart(Class<? extends NamedNode> type, String name) {
+            events.add(type.getSimpleName() + " " + name + " {");
+        }
+
+        @Override
+        public void onField(FieldNode field) {
+            events.add("field " + field.identifier.name);
+        }
+
+        @Override
+        public void onStructEnd(NamedNode struct) {
+            events.add("} " + struct.getName());
+        }
+
+        @Override
+        public void onServiceStart(String name) {
+            events.add("service " + name + " {");
+        }
+
+        @Override
+        public void onFunction(FunctionNode function) {
+            events.add("function " + function.identifier.name);
+        }
+
+        @Override
+        public void onServiceEnd(ServiceNode service) {
+            events.add("} " + service.getName());
+        }
+
+        @Override
+        public void onDefinition(DefinitionNode definition) {
+            events.add("definition " + definition.value.getName());
+        }
+
+        @Override
+        public void onDocumentEnd() {
+            events.add("end");
+        }
+    }
+
+    @Test
+    public void events() {
+        Recorder recorder = new Recorder();
+        ParsingResult<?> result = new ThriftAst().parse(
+                "namespace java example\n"
+                        + "const i32 ANSWER = 42\n"
+                        + "exception Oops { 1: string message }\n"
+                        + "service Shapes {\n"
+                        + "    void move(1: i32 by) throws (1: Oops oops)\n"
+                        + "}\n", recorder);
+
+        assertTrue(result.matched);
+        assertTrue(result.valueStack.isEmpty());
+        assertEquals(Arrays.asList(
+                "header",
+                "definition ANSWER",
+                "ExceptionNode Oops {", "field message", "} Oops", "definition Oops",
+                "service Shapes {", "field by", "field oops", "function move", "} Shapes", "definition Shapes",
+                "end"), recorder.events);
+    }
+
+    @Test
+    public void streaming() throws Exception {
+        List<String> structs = new ArrayList<>();
+        int[] definitions = {0};
+        ParsingResult<?> result = new ThriftAst().parse(ThriftParser.readFile("/testmonkey.thrift"), new ParseListener() {
+            @Override
+            public void onStructEnd(NamedNode struct) {
+                structs.add(struct.getName());
+            }
+
+            @Override
+            public void onDefinition(DefinitionNode definition) {
+                definitions[0]++;
+            }
+        });
+
+        assertTrue(result.matched);
+        DocumentNode document = new ThriftAst().parseThriftIdl(ThriftParser.readFile("/testmonkey.thrift")).get();
+        assertEquals(document.definitions.size(), definitions[0]);
+        List<String> expected = new ArrayList<>();
+        for (DefinitionNode definition : document.definitions) {
+            if (definition.type == StructNode.class || definition.type == UnionNode.class
+                    || definition.type == ExceptionNode.class) {
+                expected.add(definition.value.getName());
+            }
+        }
+        assertEquals(expected, structs);
+    }
+
+    @Test
+    public void failedParseResetsListener() {
+        Recorder recorder = new Recorder();
+        ThriftAst parser = new ThriftAst();
+        assertFalse(parser.parse("struct A { 1: }", recorder).matched);
+        int events = recorder.events.size();
+
+        // the next run on this thread does not report to the previous listener
+        assertTrue(parser.parseThriftIdl("struct B { 1: i32 b }").isPresent());
+        assertEquals(events, recorder.events.size());
+    }
+
+    @Test
+    public void reentrantParse() {
+        Recorder recorder = new Recorder() {
+            @Override
+            public void onDefinition(DefinitionNode definition) {
+                super.onDefinition(definition);
+                // parsing from a listener must not take over the outer run
+                assertTrue(new ThriftAst().parseThriftIdl("struct Inner { 1: i32 i }").isPresent());
+            }
+        };
+        assertTrue(new ThriftAst().parse("struct A { 1: i32 a }\nstruct B { 1: i32 b }\n", recorder).matched);
+        assertEquals(Arrays.asList(
+                "StructNode A {", "field a", "} A", "definition A",
+                "StructNode B {", "field b", "} B", "definition B",
+                "end"), recorder.events);
+    }
+
+    @Test
+    public void serviceExtends() {
+        DocumentNode document = new ThriftAst().parseThriftIdl(
+                "struct Point { 1: i32 x }\n"
+                        + "service Base { void ping() }\n"
+                        + "service Shapes extends Base { Point origin() }\n").get();
+
+        assertEquals(3, document.definitions.size());
+        assertEquals("Point", document.definitions.get(0).value.getName());
+        ServiceNode shapes = (ServiceNode) document.definitions.get(2).value;
+        assertEquals("Base", shapes.parent.get().name);
+        assertEquals(1, shapes.functions.size());
+    }
+}
@@ -0,0 +1,42 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import static com.mitchseymour.thrift.parser.ThriftParser.parseThriftFileAst;
+import static org.junit.Assert.*;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import com.mitchseymour.thrift.parser.codec.ColumnBatch.*;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TMemoryBuffer;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ColumnarDecoderTest {
+
+    @Test
+    public void decodeMonkeys() throws Exception {
+        DocumentNode document = parseThriftFileAst("/testmonkey.thrift").get();
+        ColumnarDecoder decoder = ColumnarDecoder.forStruct(document, "Monkey");
+
+        TMemoryBuffer buffer = new TMemoryBuffer(1024);
+        TBinaryProtocol out = new TBinaryProtocol(buffer);
+        for (int i = 0; i < 100; i++) {
+            Monkeys.write(out, "monkey-" + i, i, i % 2);
+        }
+        ColumnBatch batch = decoder.decode(Arrays.copyOf(buffer.getArray(), buffer.length()));
+
+        assertEquals(100, batch.size());
+        IntColumn age = (IntColumn) batch.column("age");
+        BinaryColumn name = (BinaryColumn) batch.column("name");
+        IntColumn waterAnimal = (IntColumn) batch.column("bff.water_animal");
+        IntColumn forestAnimal = (IntColumn) batch.column("bff.forest_animal");
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, age.get(i));
+            assertEquals("monkey-" + i, name.getString(i));
+            assertEquals(1, waterAnimal.get(i));
+            assertTrue(forestAnimal.isNull(i));
+        }
+        System.out.println(batch.columns());
+    }
+}
@@ -0,0 +1,54 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import static com.mitchseymour.thrift.parser.ThriftParser.parseThriftFileAst;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import com.mitchseymour.thrift.parser.json.JsonWriter;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Measures binary-to-JSON throughput in MB/s of binary input.
+ * Run with: java -cp ... com.mitchseymour.thrift.parser.codec.JsonTranscoderBenchmark [records]
+ */
+public class JsonTranscoderBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        DocumentNode document = parseThriftFileAst("/testmonkey.thrift").get();
+        JsonTranscoder transcoder = JsonTranscoder.forStruct(document, "Monkey");
+
+        TMemoryBuffer buffer = new TMemoryBuffer(records * 128);
+        TBinaryProtocol writer = new TBinaryProtocol(buffer);
+        for (int i = 0; i < records; i++) {
+            Monkeys.write(writer, "monkey-" + i, i % 40, i % 2);
+        }
+        byte[] input = Arrays.copyOf(buffer.getArray(), buffer.length());
+
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) {}
+
+            @Override
+            public void write(byte[] b, int off, int len) {}
+        };
+
+        for (int round = 0; round < 10; round++) {
+            TBinaryProtocol in = new TBinaryProtocol(new TMemoryInputTransport(input));
+            JsonWriter out = new JsonWriter(sink, 64 * 1024);
+            long start = System.nanoTime();
+            for (int i = 0; i < records; i++) {
+                transcoder.transcode(in, out);
+                out.newline();
+            }
+            out.flush();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("round %d: %.1f MB/s (%d records, %d bytes)%n",
+                    round, input.length / seconds / (1024 * 1024), records, input.length);
+        }
+    }
+}
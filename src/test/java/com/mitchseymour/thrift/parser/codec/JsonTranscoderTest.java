@@ -0,0 +1,28 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import static com.mitchseymour.thrift.parser.ThriftParser.parseThriftFileAst;
+import static org.junit.Assert.assertEquals;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class JsonTranscoderTest {
+
+    @Test
+    public void transcodeMonkey() throws Exception {
+        DocumentNode document = parseThriftFileAst("/testmonkey.thrift").get();
+        JsonTranscoder transcoder = JsonTranscoder.forStruct(document, "Monkey");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transcoder.transcode(Monkeys.monkey("George", 12, 1), out);
+        String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        System.out.println(json);
+        assertEquals("{\"name\":\"George\",\"age\":12,\"ancestry\":\"ANCIENT_APE\","
+                + "\"offspring\":[\"Bubbles\",\"Mojo \\\"Jojo\\\"\"],"
+                + "\"food_likes\":{\"banana\":true},"
+                + "\"favorite_activities\":[\"CLIMBING\",\"SWINGING\"],"
+                + "\"bff\":{\"water_animal\":\"ALLIGATOR\"}}", json);
+    }
+}
@@ -0,0 +1,73 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.*;
+import org.apache.thrift.transport.TMemoryBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Writes Monkey records from testmonkey.thrift with the binary protocol.
+ */
+class Monkeys {
+
+    static byte[] monkey(String name, int age, int ancestry) throws TException {
+        TMemoryBuffer buffer = new TMemoryBuffer(256);
+        write(new TBinaryProtocol(buffer), name, age, ancestry);
+        return Arrays.copyOf(buffer.getArray(), buffer.length());
+    }
+
+    static void write(TProtocol out, String name, int age, int ancestry) throws TException {
+        out.writeStructBegin(new TStruct("Monkey"));
+
+        out.writeFieldBegin(new TField("name", TType.STRING, (short) 1));
+        out.writeString(name);
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("age", TType.I32, (short) 2));
+        out.writeI32(age);
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("ancestry", TType.I32, (short) 3));
+        out.writeI32(ancestry);
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("offspring", TType.LIST, (short) 4));
+        out.writeListBegin(new TList(TType.STRING, 2));
+        out.writeString("Bubbles");
+        out.writeString("Mojo \"Jojo\"");
+        out.writeListEnd();
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("food_likes", TType.MAP, (short) 5));
+        out.writeMapBegin(new TMap(TType.STRING, TType.BOOL, 1));
+        out.writeString("banana");
+        out.writeBool(true);
+        out.writeMapEnd();
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("favorite_activities", TType.SET, (short) 6));
+        out.writeSetBegin(new TSet(TType.I32, 2));
+        out.writeI32(1);
+        out.writeI32(2);
+        out.writeSetEnd();
+        out.writeFieldEnd();
+
+        out.writeFieldBegin(new TField("bff", TType.STRUCT, (short) 7));
+        out.writeStructBegin(new TStruct("BestFriend"));
+        out.writeFieldBegin(new TField("water_animal", TType.I32, (short) 2));
+        out.writeI32(1);
+        out.writeFieldEnd();
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeFieldEnd();
+
+        // not declared in the IDL
+        out.writeFieldBegin(new TField("unknown", TType.I64, (short) 99));
+        out.writeI64(42L);
+        out.writeFieldEnd();
+
+        out.writeFieldStop();
+        out.writeStructEnd();
+    }
+}
@@ -0,0 +1,59 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import static com.mitchseymour.thrift.parser.ThriftParser.parseThriftFileAst;
+import static org.junit.Assert.*;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import org.apache.thrift.protocol.TBinaryProtocol;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class RecordFileTest {
+
+    static File writeFrames(int records) throws Exception {
+        File file = File.createTempFile("monkeys", ".bin");
+        file.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < records; i++) {
+                byte[] record = Monkeys.monkey("monkey-" + i, i, i % 2);
+                out.writeInt(record.length);
+                out.write(record);
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void orderedParallelStream() throws Exception {
+        DocumentNode document = parseThriftFileAst("/testmonkey.thrift").get();
+        File file = writeFrames(1000);
+        try (RecordFile records = RecordFile.open(file.toPath())) {
+            assertEquals(1000, records.size());
+            List<Map<String, Object>> monkeys = records.stream(document, "Monkey", true)
+                    .collect(Collectors.toList());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("monkey-" + i, monkeys.get(i).get("name"));
+            }
+            assertEquals("ALLIGATOR", ((Map<?, ?>) monkeys.get(0).get("bff")).get("water_animal"));
+        }
+    }
+
+    @Test
+    public void unorderedAcrossSegments() throws Exception {
+        DocumentNode document = parseThriftFileAst("/testmonkey.thrift").get();
+        File file = writeFrames(1000);
+        try (RecordFile records = RecordFile.open(file.toPath(), new TBinaryProtocol.Factory(), 4096)) {
+            assertEquals(1000, records.size());
+            GenericDecoder decoder = GenericDecoder.forStruct(document, "Monkey");
+            int ageSum = records.stream(decoder, false).mapToInt(m -> (Integer) m.get("age")).sum();
+            assertEquals(999 * 1000 / 2, ageSum);
+        }
+    }
+}
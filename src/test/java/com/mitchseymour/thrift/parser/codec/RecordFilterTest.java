@@ -0,0 +1,66 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import static com.mitchseymour.thrift.parser.ThriftParser.parseThriftFileAst;
+import static com.mitchseymour.thrift.parser.codec.RecordFilter.field;
+import static org.junit.Assert.*;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class RecordFilterTest {
+
+    @Test
+    public void filterRecord() throws Exception {
+        DocumentNode document = parseThriftFileAst("/testmonkey.thrift").get();
+        RecordFilter filter = RecordFilter.compile(document, "Monkey",
+                field("age").gt(10).and(field("ancestry").eq("ANCIENT_APE")));
+
+        assertTrue(filter.matches(ByteBuffer.wrap(Monkeys.monkey("George", 12, 1))));
+        assertFalse(filter.matches(ByteBuffer.wrap(Monkeys.monkey("George", 10, 1))));
+        assertFalse(filter.matches(ByteBuffer.wrap(Monkeys.monkey("George", 12, 0))));
+
+        RecordFilter nested = RecordFilter.compile(document, "Monkey",
+                field("bff.water_animal").eq("ALLIGATOR")
+                        .and(field("bff.forest_animal").isNull())
+                        .and(field("name").ge("Geo")));
+        assertTrue(nested.matches(ByteBuffer.wrap(Monkeys.monkey("George", 12, 1))));
+        assertFalse(nested.matches(ByteBuffer.wrap(Monkeys.monkey("Abu", 12, 1))));
+    }
+
+    @Test
+    public void fractionalLiteralsOnIntegerFields() throws Exception {
+        DocumentNode document = parseThriftFileAst("/testmonkey.thrift").get();
+        ByteBuffer ten = ByteBuffer.wrap(Monkeys.monkey("George", 10, 1));
+        assertTrue(RecordFilter.compile(document, "Monkey", field("age").lt(10.5)).matches(ten.duplicate()));
+        assertTrue(RecordFilter.compile(document, "Monkey", field("age").gt(9.5f)).matches(ten.duplicate()));
+        assertTrue(RecordFilter.compile(document, "Monkey", field("age").ne(10.5)).matches(ten.duplicate()));
+        assertFalse(RecordFilter.compile(document, "Monkey", field("age").eq(10.5)).matches(ten.duplicate()));
+        assertFalse(RecordFilter.compile(document, "Monkey", field("age").ge(10.5)).matches(ten.duplicate()));
+        assertFalse(RecordFilter.compile(document, "Monkey", field("age").lt(-10.5)).matches(ten.duplicate()));
+        assertTrue(RecordFilter.compile(document, "Monkey", field("age").eq(10.0)).matches(ten.duplicate()));
+        assertTrue(RecordFilter.compile(document, "Monkey", field("age").le(1e300)).matches(ten.duplicate()));
+        try {
+            RecordFilter.compile(document, "Monkey", field("age").lt(Double.NaN));
+            fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void filterFile() throws Exception {
+        DocumentNode document = parseThriftFileAst("/testmonkey.thrift").get();
+        File file = RecordFileTest.writeFrames(1000);
+        RecordFilter filter = RecordFilter.compile(document, "Monkey",
+                field("age").lt(100).and(field("ancestry").eq("LESSER_API")));
+        try (RecordFile records = RecordFile.open(file.toPath())) {
+            assertEquals(50, records.stream(GenericDecoder.forStruct(document, "Monkey"), filter, true)
+                    .peek(monkey -> assertEquals("LESSER_API", monkey.get("ancestry")))
+                    .count());
+        }
+    }
+}
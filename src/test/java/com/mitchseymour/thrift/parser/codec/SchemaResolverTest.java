@@ -0,0 +1,122 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import static com.mitchseymour.thrift.parser.ThriftParser.applyAst;
+import static org.junit.Assert.*;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import org.apache.thrift.protocol.*;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class SchemaResolverTest {
+
+    static final String WRITER = "enum Family { A, B, C }\n"
+            + "struct Monkey {\n"
+            + "    1: string name,\n"
+            + "    2: i16 age,\n"
+            + "    3: Family ancestry,\n"
+            + "    4: string dropped,\n"
+            + "}\n";
+
+    static final String READER = "enum Family { C, B }\n"
+            + "struct Monkey {\n"
+            + "    1: string name,\n"
+            + "    2: i64 age,\n"
+            + "    3: Family ancestry,\n"
+            + "    5: string habitat = \"jungle\",\n"
+            + "    6: i32 legs = 4,\n"
+            + "}\n";
+
+    static byte[] write(int ancestry) throws Exception {
+        TMemoryBuffer buffer = new TMemoryBuffer(64);
+        TProtocol out = new TBinaryProtocol(buffer);
+        out.writeStructBegin(new TStruct("Monkey"));
+        out.writeFieldBegin(new TField("name", TType.STRING, (short) 1));
+        out.writeString("George");
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("age", TType.I16, (short) 2));
+        out.writeI16((short) 12);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("ancestry", TType.I32, (short) 3));
+        out.writeI32(ancestry);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("dropped", TType.STRING, (short) 4));
+        out.writeString("gone");
+        out.writeFieldEnd();
+        out.writeFieldStop();
+        out.writeStructEnd();
+        return Arrays.copyOf(buffer.getArray(), buffer.length());
+    }
+
+    @Test
+    public void resolveWriterIntoReader() throws Exception {
+        DocumentNode writer = applyAst(WRITER).get();
+        DocumentNode reader = applyAst(READER).get();
+        SchemaResolver resolver = new SchemaResolver();
+        SchemaResolver.Plan plan = resolver.plan(writer, reader, "Monkey");
+        assertSame(plan, resolver.plan(writer, reader, "Monkey"));
+        assertEquals(1, resolver.size());
+
+        GenericDecoder decoder = GenericDecoder.forStruct(reader, "Monkey");
+        Map<String, Object> monkey = decoder.decode(
+                new TBinaryProtocol(new TMemoryInputTransport(plan.resolve(write(2)))));
+        assertEquals("George", monkey.get("name"));
+        assertEquals(12L, monkey.get("age"));
+        assertEquals("C", monkey.get("ancestry"));
+        assertEquals("jungle", monkey.get("habitat"));
+        assertEquals(4, monkey.get("legs"));
+        assertFalse(monkey.containsKey("dropped"));
+
+        // A is unknown to the reader, so the field is dropped
+        monkey = plan.decoder(decoder).decode(new TBinaryProtocol(new TMemoryInputTransport(write(0))));
+        assertFalse(monkey.containsKey("ancestry"));
+    }
+
+    @Test
+    public void defaultsAreNotShared() throws Exception {
+        DocumentNode writer = applyAst(WRITER).get();
+        DocumentNode fourLegs = applyAst(READER).get();
+        DocumentNode twoLegs = applyAst(READER.replace("legs = 4", "legs = 2")).get();
+        assertNotEquals(Schema.of(fourLegs).struct("Monkey").fingerprint(),
+                Schema.of(twoLegs).struct("Monkey").fingerprint());
+
+        SchemaResolver resolver = new SchemaResolver();
+        resolver.plan(writer, fourLegs, "Monkey");
+        SchemaResolver.Plan plan = resolver.plan(writer, twoLegs, "Monkey");
+        assertEquals(2, resolver.size());
+        Map<String, Object> monkey = plan.decoder(GenericDecoder.forStruct(twoLegs, "Monkey"))
+                .decode(new TBinaryProtocol(new TMemoryInputTransport(write(2))));
+        assertEquals(2, monkey.get("legs"));
+    }
+
+    @Test
+    public void decoderReusesBuffers() throws Exception {
+        DocumentNode writer = applyAst(WRITER).get();
+        DocumentNode reader = applyAst(READER).get();
+        RecordDecoder<Map<String, Object>> decoder = new SchemaResolver().plan(writer, reader, "Monkey")
+                .decoder(GenericDecoder.forStruct(reader, "Monkey"));
+        Map<String, Object> first = decoder.decode(new TBinaryProtocol(new TMemoryInputTransport(write(2))));
+        Map<String, Object> second = decoder.decode(new TBinaryProtocol(new TMemoryInputTransport(write(1))));
+        assertEquals("C", first.get("ancestry"));
+        assertEquals("B", second.get("ancestry"));
+        assertEquals("George", first.get("name"));
+        assertEquals("jungle", second.get("habitat"));
+    }
+
+    @Test
+    public void unsupportedDefaultsFailThePlan() throws Exception {
+        DocumentNode writer = applyAst(WRITER).get();
+        DocumentNode reader = applyAst(READER.replace("legs = 4", "legs = \"four\"")).get();
+        try {
+            new SchemaResolver().plan(writer, reader, "Monkey");
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("legs"));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.mitchseymour.thrift.parser.codec;
+
+import static com.mitchseymour.thrift.parser.ThriftParser.applyAst;
+import static org.junit.Assert.*;
+
+import com.mitchseymour.thrift.parser.ast.Nodes.DocumentNode;
+import com.mitchseymour.thrift.parser.ast.Nodes.StructNode;
+import org.junit.Test;
+
+public class SchemaTest {
+
+    @Test
+    public void outOfRangeValues() throws Exception {
+        DocumentNode document = applyAst("enum Big { A = 3000000000 }\n"
+                + "enum Next { A = 2147483647, B }\n"
+                + "enum Small { A = -2147483648, B }\n"
+                + "struct Wide { 70000: i32 a }\n").get();
+        Schema schema = Schema.of(document);
+
+        assertRejected(() -> schema.enumType("Big"), "Enum value Big.A is 3000000000, which does not fit an i32");
+        assertRejected(() -> schema.enumType("Next"), "Enum value Next.B is 2147483648, which does not fit an i32");
+        assertEquals("B", schema.enumType("Small").name(-2147483647));
+        assertRejected(() -> schema.struct("Wide"), "Field Wide.a has id 70000, which does not fit an i16");
+        StructNode wide = (StructNode) document.definitions.get(3).value;
+        assertTrue(wide.fields.get(0).toString().contains("70000: "));
+    }
+
+    private static void assertRejected(Runnable resolve, String message) {
+        try {
+            resolve.run();
+            fail(message);
+        } catch (RuntimeException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.mitchseymour.thrift.parser.metrics;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import com.mitchseymour.thrift.parser.ThriftParser;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FlightRecorderEventsTest {
+
+    @Test
+    public void disabledWithoutRecording() throws Exception {
+        assertFalse(FlightRecorderEvents.recording());
+        assertFalse(FlightRecorderEvents.FILE_PARSED.begin().enabled());
+        ThriftParser.parseThriftFileAst("/testmonkey.thrift");
+    }
+
+    // jdk.jfr is not part of the Java 8 API, so the recording is driven reflectively
+    @Test
+    public void eventsAreRecorded() throws Exception {
+        assumeTrue(hasEventFactory());
+        Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        Object recording = recordingClass.getConstructor().newInstance();
+        for (String name : new String[]{"FileParsed", "ParseFailure", "IncludeResolved"}) {
+            recordingClass.getMethod("enable", String.class).invoke(recording, "com.mitchseymour.thrift." + name);
+        }
+        Path file = Files.createTempFile("thrift", ".jfr");
+        try {
+            recordingClass.getMethod("start").invoke(recording);
+            assertTrue(FlightRecorderEvents.recording());
+            ThriftParser.parseThriftFileAst("/testmonkey.thrift");
+            ThriftParser.applyAst("struct Broken {");
+            recordingClass.getMethod("stop").invoke(recording);
+            recordingClass.getMethod("dump", Path.class).invoke(recording, file);
+            assertFalse(FlightRecorderEvents.recording());
+
+            List<String> names = new ArrayList<>();
+            Class<?> recordingFile = Class.forName("jdk.jfr.consumer.RecordingFile");
+            for (Object event : (List<?>) recordingFile.getMethod("readAllEvents", Path.class).invoke(null, file)) {
+                Object type = event.getClass().getMethod("getEventType").invoke(event);
+                names.add((String) type.getClass().getMethod("getName").invoke(type));
+            }
+            assertTrue(names.contains(FlightRecorderEvents.FILE_PARSED.name()));
+            assertTrue(names.contains(FlightRecorderEvents.INCLUDE_RESOLVED.name()));
+            assertTrue(names.contains(FlightRecorderEvents.PARSE_FAILURE.name()));
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static boolean hasEventFactory() {
+        try {
+            Class.forName("jdk.jfr.EventFactory");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
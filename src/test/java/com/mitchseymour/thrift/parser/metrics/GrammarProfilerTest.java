@@ -0,0 +1,31 @@
+package com.mitchseymour.thrift.parser.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+public class GrammarProfilerTest {
+
+    @Test
+    public void profileCorpus() throws Exception {
+        GrammarProfiler profiler = new GrammarProfiler();
+        profiler.profile(Paths.get(getClass().getResource("/testmonkey.thrift").toURI()).getParent());
+        GrammarProfiler.Report report = profiler.report();
+
+        assertEquals(4, report.files);
+        GrammarProfiler.RuleStats fieldType = report.rule("FieldType");
+        assertNotNull(fieldType);
+        assertTrue(fieldType.invocations() > 0);
+        assertEquals(fieldType.invocations(), fieldType.matches() + fieldType.mismatches());
+        assertTrue(report.rules.get(0).reinvocations() >= fieldType.reinvocations());
+        assertTrue(report.print(report.rules.size()).contains("FieldType"));
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        report.writeJson(json);
+        assertTrue(new String(json.toByteArray(), StandardCharsets.UTF_8).contains("\"rule\":\"FieldType\""));
+    }
+}
@@ -0,0 +1,45 @@
+package com.mitchseymour.thrift.parser.metrics;
+
+import static org.junit.Assert.*;
+
+import com.mitchseymour.thrift.parser.ThriftParser;
+import org.junit.After;
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @After
+    public void unregister() {
+        Metrics.register(null);
+    }
+
+    @Test
+    public void parsePhasesAreMeasured() throws Exception {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        Metrics.register(metrics);
+        assertTrue(Metrics.enabled());
+
+        ThriftParser.parseThriftFileAst("/testmonkey.thrift");
+
+        assertTrue(metrics.timer(Metrics.READ).count() >= 2);
+        assertTrue(metrics.histogram(Metrics.READ_CHARS).min() > 0);
+        assertTrue(metrics.timer(Metrics.PREPROCESS).count() >= 2);
+        assertTrue(metrics.timer(Metrics.PARSE).count() >= 2);
+        assertEquals(1, metrics.timer(Metrics.INCLUDE).count());
+        assertTrue(metrics.timer(Metrics.ACTION + "pushStructNode").count() > 0);
+        assertTrue(metrics.timer(Metrics.ACTION + "pushDocumentNode").count() >= 2);
+        assertEquals(0, metrics.counter(Metrics.PARSE_ERRORS));
+
+        ThriftParser.apply("struct Broken {");
+        assertTrue(metrics.counter(Metrics.PARSE_ERRORS) > 0);
+        assertTrue(metrics.toString().contains(Metrics.PARSE));
+    }
+
+    @Test
+    public void noopByDefault() {
+        Metrics.register(null);
+        assertFalse(Metrics.enabled());
+        assertEquals(0, Metrics.start());
+        assertSame(ParseMetrics.NOOP, Metrics.get());
+    }
+}